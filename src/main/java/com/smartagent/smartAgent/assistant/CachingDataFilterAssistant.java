@@ -0,0 +1,43 @@
+package com.smartagent.smartAgent.assistant;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.smartagent.smartAgent.record.llmresponse.DataFilterAssistantResponse;
+import com.smartagent.smartAgent.utility.CacheUtility;
+import com.smartagent.smartAgent.utility.HashUtility;
+
+import java.util.Locale;
+
+/**
+ * {@link DataFilterAssistant} decorator that memoizes extraction results.
+ * <p>
+ * Results are keyed by a hash of the model name, the normalized question and the page data, so a
+ * question/page pair that recurs is answered without calling the model again. Empty extractions are
+ * cached as well, which lets known-irrelevant pages be skipped. Failed calls are not cached.
+ * </p>
+ */
+public class CachingDataFilterAssistant implements DataFilterAssistant {
+
+    private final DataFilterAssistant delegate;
+    private final String modelName;
+    private final AsyncCache<String, DataFilterAssistantResponse> cache;
+
+    public CachingDataFilterAssistant(DataFilterAssistant delegate, String modelName, AsyncCache<String, DataFilterAssistantResponse> cache) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.cache = cache;
+    }
+
+    @Override
+    public DataFilterAssistantResponse answer(String question, String data) {
+        String key = HashUtility.sha256Hex(modelName, normalizeQuestion(question), data);
+        return CacheUtility.getOrLoad(cache, key, () -> delegate.answer(question, data));
+    }
+
+    /**
+     * Lowercases the question and collapses whitespace, so trivially different spellings of the
+     * same question share a cache entry.
+     */
+    static String normalizeQuestion(String question) {
+        return question.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
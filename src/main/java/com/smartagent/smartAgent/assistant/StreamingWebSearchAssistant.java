@@ -0,0 +1,16 @@
+package com.smartagent.smartAgent.assistant;
+
+
+import dev.langchain4j.service.MemoryId;
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.UserMessage;
+
+/**
+ * Streaming variant of {@link WebSearchAssistant}: the answer is delivered token by token as the
+ * model generates it.
+ */
+public interface StreamingWebSearchAssistant {
+    @SystemMessage(WebSearchAssistant.SYSTEM_MESSAGE)
+    TokenStream answer(@MemoryId String conversationId, @UserMessage String question);
+}
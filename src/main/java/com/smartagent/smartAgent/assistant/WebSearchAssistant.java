@@ -1,10 +1,14 @@
 package com.smartagent.smartAgent.assistant;
 
 
+import dev.langchain4j.service.MemoryId;
 import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.UserMessage;
 
 public interface WebSearchAssistant {
-    @SystemMessage("You are a smart assistant, your job is to answer the question using your knowledge and the information provided." +
-            "if any more information is need use the function to search the web to get necessary information needed to answer the question")
-    String answer(String question);
+    String SYSTEM_MESSAGE = "You are a smart assistant, your job is to answer the question using your knowledge and the information provided." +
+            "if any more information is need use the function to search the web to get necessary information needed to answer the question";
+
+    @SystemMessage(SYSTEM_MESSAGE)
+    String answer(@MemoryId String conversationId, @UserMessage String question);
 }
\ No newline at end of file
@@ -0,0 +1,187 @@
+package com.smartagent.smartAgent.cache;
+
+import com.smartagent.smartAgent.record.domain.WebSearchResult;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import static com.smartagent.smartAgent.utility.VectorUtility.dot;
+import static com.smartagent.smartAgent.utility.VectorUtility.inverseNorm;
+
+/**
+ * Cache of recent answers, looked up by the meaning of the question rather than its exact text.
+ * <p>
+ * The embeddings of answered questions are normalized and packed into one {@code float[]} of
+ * {@code semantic-cache-max-entries} slots. A new question is embedded and compared to every live slot;
+ * if the best cosine similarity reaches {@code semantic-cache-min-similarity} and the answer is younger
+ * than {@code semantic-cache-ttl-minutes}, the stored answer is returned without running the agent.
+ * When the cache is full, an expired slot is reused first, otherwise the least recently used one.
+ * </p>
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+
+    @Value("${semantic-cache-enabled:true}")
+    private boolean enabled;
+
+    @Value("${semantic-cache-min-similarity:0.95}")
+    private double minSimilarity;
+
+    @Value("${semantic-cache-ttl-minutes:30}")
+    private long ttlMinutes;
+
+    @Value("${semantic-cache-max-entries:1000}")
+    private int maxEntries;
+
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter evictionCounter;
+
+    private CachedAnswer[] answers;
+    private float[] vectors;
+    private int dimension;
+    private int size;
+
+    @PostConstruct
+    void init() {
+        answers = new CachedAnswer[maxEntries];
+        hitCounter = meterRegistry.counter("semantic.answer.cache.gets", "result", "hit");
+        missCounter = meterRegistry.counter("semantic.answer.cache.gets", "result", "miss");
+        evictionCounter = meterRegistry.counter("semantic.answer.cache.evictions");
+        meterRegistry.gauge("semantic.answer.cache.size", this, cache -> cache.size);
+    }
+
+    /**
+     * Returns a cached answer to a question with the same meaning, or computes and caches a new one.
+     * <p>
+     * If the question cannot be embedded, the cache is bypassed and the answer is computed directly.
+     * </p>
+     *
+     * @param question the incoming question.
+     * @param answer   computes the answer on a cache miss.
+     * @return the cached or freshly computed answer.
+     */
+    public WebSearchResult getOrAnswer(String question, Supplier<WebSearchResult> answer) {
+        if (!enabled) {
+            return answer.get();
+        }
+
+        float[] questionVector;
+        try {
+            questionVector = normalize(embeddingModel.embed(question).content().vector());
+        } catch (Exception e) {
+            log.warn("Bypassing semantic answer cache, unable to embed question: {}", e.getMessage());
+            return answer.get();
+        }
+
+        WebSearchResult cachedResult = find(questionVector);
+        if (cachedResult != null) {
+            hitCounter.increment();
+            return cachedResult;
+        }
+        missCounter.increment();
+
+        WebSearchResult result = answer.get();
+        put(questionVector, result);
+        return result;
+    }
+
+    private synchronized WebSearchResult find(float[] questionVector) {
+        if (size == 0 || questionVector.length != dimension) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        int bestSlot = -1;
+        float bestSimilarity = (float) minSimilarity;
+        for (int slot = 0; slot < size; slot++) {
+            if (isExpired(answers[slot], now)) {
+                continue;
+            }
+            float similarity = dot(questionVector, vectors, slot * dimension, dimension);
+            if (similarity >= bestSimilarity) {
+                bestSimilarity = similarity;
+                bestSlot = slot;
+            }
+        }
+        if (bestSlot < 0) {
+            return null;
+        }
+        answers[bestSlot].lastAccessedAt = now;
+        return answers[bestSlot].result;
+    }
+
+    private synchronized void put(float[] questionVector, WebSearchResult result) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        if (vectors == null) {
+            dimension = questionVector.length;
+            vectors = new float[maxEntries * dimension];
+        } else if (questionVector.length != dimension) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        int slot = size < maxEntries ? size++ : evictionSlot(now);
+        System.arraycopy(questionVector, 0, vectors, slot * dimension, dimension);
+        answers[slot] = new CachedAnswer(result, now);
+    }
+
+    /**
+     * Picks the slot to overwrite in a full cache: the first expired one, otherwise the least
+     * recently used one.
+     */
+    private int evictionSlot(long now) {
+        int leastRecentlyUsedSlot = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (isExpired(answers[slot], now)) {
+                return slot;
+            }
+            if (answers[slot].lastAccessedAt < answers[leastRecentlyUsedSlot].lastAccessedAt) {
+                leastRecentlyUsedSlot = slot;
+            }
+        }
+        evictionCounter.increment();
+        return leastRecentlyUsedSlot;
+    }
+
+    private boolean isExpired(CachedAnswer answer, long now) {
+        return now - answer.createdAt > ttlMinutes * 60_000;
+    }
+
+    private static float[] normalize(float[] vector) {
+        float inverseNorm = inverseNorm(vector);
+        float[] normalized = Arrays.copyOf(vector, vector.length);
+        for (int i = 0; i < normalized.length; i++) {
+            normalized[i] *= inverseNorm;
+        }
+        return normalized;
+    }
+
+    private static final class CachedAnswer {
+        private final WebSearchResult result;
+        private final long createdAt;
+        private long lastAccessedAt;
+
+        private CachedAnswer(WebSearchResult result, long createdAt) {
+            this.result = result;
+            this.createdAt = createdAt;
+            this.lastAccessedAt = createdAt;
+        }
+    }
+}
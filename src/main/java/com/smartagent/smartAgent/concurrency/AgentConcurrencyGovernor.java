@@ -0,0 +1,144 @@
+package com.smartagent.smartAgent.concurrency;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the number of questions the agent answers at once.
+ * <p>
+ * Every question holds a permit while it runs on its own virtual thread. A question arriving when
+ * all permits are taken waits for one for at most the admission timeout, and is then rejected with
+ * an {@link AgentOverloadedException}. Virtual threads make blocking on the model, the search engine
+ * and page downloads cheap, so the limit reflects what the downstream services and the heap can take
+ * rather than the size of a thread pool. Work answering several questions at once, such as a batch,
+ * holds one permit per question it runs concurrently.
+ * </p>
+ * <p>
+ * Cancelling the returned {@link Future} with {@code mayInterruptIfRunning} interrupts the question's
+ * thread. The pipeline cancels its own child tasks when interrupted, and socket I/O on a virtual
+ * thread fails as soon as the thread is interrupted, so pending page downloads and model calls are
+ * abandoned too.
+ * </p>
+ */
+public class AgentConcurrencyGovernor {
+
+    private final Semaphore permits;
+    private final int maxConcurrentQuestions;
+    private final Duration admissionTimeout;
+    private final Executor executor;
+    private final LongAdder rejectedQuestions = new LongAdder();
+
+    /**
+     * @param maxConcurrentQuestions the maximum number of questions answered at once.
+     * @param admissionTimeout       the maximum time a question waits for a permit.
+     * @param executor               runs the questions; it should start a virtual thread per task.
+     */
+    public AgentConcurrencyGovernor(int maxConcurrentQuestions, Duration admissionTimeout, Executor executor) {
+        this.permits = new Semaphore(maxConcurrentQuestions, true);
+        this.maxConcurrentQuestions = maxConcurrentQuestions;
+        this.admissionTimeout = admissionTimeout;
+        this.executor = executor;
+    }
+
+    /**
+     * Waits for a permit and starts answering the question.
+     *
+     * @param question the work answering the question.
+     * @return the pending answer; cancel it to abandon the question.
+     * @throws AgentOverloadedException if no permit became available within the admission timeout.
+     * @throws InterruptedException     if interrupted while waiting for a permit.
+     */
+    public <T> Future<T> submit(Callable<T> question) throws InterruptedException {
+        return submit(1, question);
+    }
+
+    /**
+     * Waits for a permit per question and starts answering the questions.
+     *
+     * @param questionCount the number of questions the work answers at once; more permits than the
+     *                      limit are never asked for, so such work still runs, alone.
+     * @param questions     the work answering the questions.
+     * @return the pending answers; cancel them to abandon the questions.
+     * @throws AgentOverloadedException if the permits did not become available within the admission timeout.
+     * @throws InterruptedException     if interrupted while waiting for the permits.
+     */
+    public <T> Future<T> submit(int questionCount, Callable<T> questions) throws InterruptedException {
+        return submit(questionCount, admissionTimeout, questions);
+    }
+
+    /**
+     * Waits for a permit per question, for at most the given time, and starts answering the questions.
+     * <p>
+     * Background work that has already been queued, and has its own deadline, waits longer than the
+     * admission timeout meant for callers blocking on the answer.
+     * </p>
+     *
+     * @param questionCount    the number of questions the work answers at once.
+     * @param admissionTimeout the maximum time to wait for the permits.
+     * @param questions        the work answering the questions.
+     * @return the pending answers; cancel them to abandon the questions.
+     * @throws AgentOverloadedException if the permits did not become available in time.
+     * @throws InterruptedException     if interrupted while waiting for the permits.
+     */
+    public <T> Future<T> submit(int questionCount, Duration admissionTimeout, Callable<T> questions) throws InterruptedException {
+        int questionPermits = Math.clamp(questionCount, 1, maxConcurrentQuestions);
+        if (!permits.tryAcquire(questionPermits, admissionTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            rejectedQuestions.increment();
+            throw new AgentOverloadedException(maxConcurrentQuestions);
+        }
+        FutureTask<T> task = new FutureTask<>(questions);
+        try {
+            // The permits are released by the thread running the task, even when the task was cancelled
+            // before it started, so a cancelled question never leaks its permits.
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release(questionPermits);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release(questionPermits);
+            throw e;
+        }
+        return task;
+    }
+
+    /**
+     * @return the number of questions being answered.
+     */
+    public int activeQuestions() {
+        return maxConcurrentQuestions - permits.availablePermits();
+    }
+
+    /**
+     * @return the number of questions waiting for a permit.
+     */
+    public int waitingQuestions() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * @return the number of questions rejected since startup.
+     */
+    public long rejectedQuestions() {
+        return rejectedQuestions.sum();
+    }
+
+    /**
+     * Thrown when a question cannot be admitted within the admission timeout.
+     */
+    public static class AgentOverloadedException extends RuntimeException {
+
+        public AgentOverloadedException(int maxConcurrentQuestions) {
+            super("All " + maxConcurrentQuestions + " question slots are busy");
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package com.smartagent.smartAgent.config;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartagent.smartAgent.assistant.CachingDataFilterAssistant;
 import com.smartagent.smartAgent.assistant.DataFilterAssistant;
+import com.smartagent.smartAgent.record.llmresponse.DataFilterAssistantResponse;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.service.AiServices;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 public class DataFilterAssistantConfiguration {
 
@@ -15,19 +24,44 @@ public class DataFilterAssistantConfiguration {
     @Qualifier("chatLanguageModel")
     private ChatLanguageModel chatLanguageModel;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${model-name}")
+    private String llmName;
+
+    @Value("${data-filter-cache-max-chars:4000000}")
+    private long cacheMaxChars;
+
+    @Value("${data-filter-cache-ttl-minutes:60}")
+    private long cacheTtlMinutes;
+
     /**
      * Configures and provides a bean for DataFilterAssistant.
      * <p>
      * This method creates a DataFilterAssistant instance using the provided chat language model.
      * The DataFilterAssistant can be used for specialized filtering tasks in the AI system.
+     * It is wrapped in a {@link CachingDataFilterAssistant}, so repeated question/page pairs are
+     * answered from a bounded, expiring cache instead of another model call.
      * </p>
      *
      * @return an instance of {@link DataFilterAssistant} configured with the required chat language model.
      */
     @Bean
     DataFilterAssistant createDataFilterAssistant() {
-        return AiServices.builder(DataFilterAssistant.class)
+        DataFilterAssistant dataFilterAssistant = AiServices.builder(DataFilterAssistant.class)
                 .chatLanguageModel(chatLanguageModel)
                 .build();
+
+        AsyncCache<String, DataFilterAssistantResponse> cache = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxChars)
+                .weigher((String key, DataFilterAssistantResponse response) ->
+                        key.length() + (response.extractedData() == null ? 0 : response.extractedData().length()))
+                .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutes))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "data-filter");
+
+        return new CachingDataFilterAssistant(dataFilterAssistant, llmName, cache);
     }
 }
@@ -1,15 +1,30 @@
 package com.smartagent.smartAgent.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartagent.smartAgent.model.CachingEmbeddingModel;
+import com.smartagent.smartAgent.store.EmbeddingFileCache;
+import com.smartagent.smartAgent.store.HnswEmbeddingStore;
+import com.smartagent.smartAgent.store.MappedEmbeddingStore;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.mistralai.MistralAiEmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import io.micrometer.common.util.StringUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+
 @Configuration
 @Slf4j
 public class EmbeddingConfiguration {
@@ -20,18 +35,106 @@ public class EmbeddingConfiguration {
     @Value("${embedding-api-key}")
     private String apiKey;
 
+    @Value("${embedding-model-url:https://api.mistral.ai/v1}")
+    private String baseUrl;
+
+    @Value("${embedding-cache-max-bytes:67108864}")
+    private long cacheMaxBytes;
+
+    @Value("${embedding-cache-ttl-minutes:1440}")
+    private long cacheTtlMinutes;
+
+    @Value("${embedding-cache-directory:}")
+    private String cacheDirectory;
+
+    @Value("${embedding-cache-directory-max-bytes:1073741824}")
+    private long cacheDirectoryMaxBytes;
+
+    @Value("${embedding-store-directory:}")
+    private String storeDirectory;
+
+    @Value("${embedding-store-compaction-threshold:0.3}")
+    private double storeCompactionThreshold;
+
+    @Value("${embedding-store-index:flat}")
+    private String storeIndex;
+
+    @Value("${embedding-store-hnsw-m:16}")
+    private int hnswM;
+
+    @Value("${embedding-store-hnsw-ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${embedding-store-hnsw-ef-search:64}")
+    private int hnswEfSearch;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("webContentExecutor")
+    private ExecutorService webContentExecutor;
+
+    /**
+     * Configures and provides a bean for EmbeddingModel.
+     * <p>
+     * The Mistral embedding model is wrapped in a {@link CachingEmbeddingModel}, so text that was
+     * embedded before, including repeated questions, is answered from the cache. The in-memory cache is
+     * bounded by the size of its vectors and expires entries after a TTL; when
+     * {@code embedding-cache-directory} is set, vectors are also kept on disk across restarts, with the
+     * same TTL and at most {@code embedding-cache-directory-max-bytes} of files.
+     * </p>
+     *
+     * @return an instance of {@link EmbeddingModel} backed by the embedding cache.
+     */
     @Bean
     EmbeddingModel getEmbeddingModel() {
-        return MistralAiEmbeddingModel.builder()
+        EmbeddingModel embeddingModel = MistralAiEmbeddingModel.builder()
+                .baseUrl(baseUrl)
                 .apiKey(apiKey)
                 .logRequests(true)
                 .logResponses(true)
                 .modelName(modelName)
                 .build();
+
+        Cache<String, float[]> cache = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxBytes)
+                .weigher((String key, float[] vector) -> key.length() + vector.length * Float.BYTES)
+                .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "embedding");
+
+        EmbeddingFileCache fileCache = StringUtils.isBlank(cacheDirectory) ? null : new EmbeddingFileCache(Path.of(cacheDirectory), cacheDirectoryMaxBytes, Duration.ofMinutes(cacheTtlMinutes));
+        return new CachingEmbeddingModel(embeddingModel, modelName, cache, fileCache);
     }
 
+    /**
+     * Configures and provides a bean for the EmbeddingStore holding ingested documents.
+     * <p>
+     * When {@code embedding-store-directory} is set, embeddings are kept in a {@link MappedEmbeddingStore}
+     * in that directory, so an ingested knowledge base survives restarts without being embedded again.
+     * It is compacted in the background once more than {@code embedding-store-compaction-threshold} of
+     * its entries are deleted. Otherwise the store lives on the heap and is lost on restart.
+     * </p>
+     * <p>
+     * Both compare the question with every embedding. With {@code embedding-store-index=hnsw}, embeddings
+     * are instead kept in an {@link HnswEmbeddingStore}, whose approximate searches stay fast on corpora of
+     * millions of segments; it is tuned with the {@code embedding-store-hnsw-*} properties and, when
+     * {@code embedding-store-directory} is set, saved to {@code hnsw.index} in that directory on shutdown.
+     * </p>
+     *
+     * @return an instance of {@link EmbeddingStore}.
+     */
     @Bean
     EmbeddingStore<TextSegment> getEmbeddingStore() {
-        return new InMemoryEmbeddingStore<>();
+        if ("hnsw".equalsIgnoreCase(storeIndex)) {
+            Path indexFile = StringUtils.isBlank(storeDirectory) ? null : Path.of(storeDirectory, "hnsw.index");
+            return new HnswEmbeddingStore(hnswM, hnswEfConstruction, hnswEfSearch, indexFile);
+        }
+        if (StringUtils.isBlank(storeDirectory)) {
+            return new InMemoryEmbeddingStore<>();
+        }
+        return new MappedEmbeddingStore(Path.of(storeDirectory), storeCompactionThreshold, webContentExecutor);
     }
 }
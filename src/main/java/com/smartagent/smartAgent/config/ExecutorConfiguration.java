@@ -0,0 +1,76 @@
+package com.smartagent.smartAgent.config;
+
+import com.smartagent.smartAgent.concurrency.AgentConcurrencyGovernor;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class ExecutorConfiguration {
+
+    @Value("${agent-max-concurrent-questions:200}")
+    private int maxConcurrentQuestions;
+
+    @Value("${agent-admission-timeout-ms:1000}")
+    private long admissionTimeoutMillis;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Configures and provides a bean for the executor used to fetch and filter web pages.
+     * <p>
+     * Every task runs on its own virtual thread, so blocking page downloads and LLM calls do not
+     * occupy platform threads. Concurrency is bounded by the callers, not by the executor. The
+     * submitting thread's context, including the current observation, is carried over to the task, so
+     * trace spans of one question stay connected across threads.
+     * </p>
+     *
+     * @return an {@link ExecutorService} creating a new virtual thread per task.
+     */
+    @Bean(destroyMethod = "close")
+    ExecutorService webContentExecutor() {
+        return ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor(),
+                ContextSnapshotFactory.builder().build());
+    }
+
+    /**
+     * Configures and provides a bean for the governor limiting the questions answered at once.
+     * <p>
+     * At most {@code agent-max-concurrent-questions} questions run at once, each on its own virtual
+     * thread of the {@link #webContentExecutor()}; a question waits up to
+     * {@code agent-admission-timeout-ms} for a slot before it is rejected. The active, waiting and
+     * rejected questions are exported as {@code agent.questions.active}, {@code agent.questions.waiting}
+     * and {@code agent.questions.rejected}.
+     * </p>
+     * <p>
+     * Every question takes a slot: synchronous and streamed questions, each question of a batch run at
+     * once, and the background jobs, whose {@code question-job-workers} only bound their own share of
+     * the slots. The other limits are per question, so the node runs at most
+     * {@code agent-max-concurrent-questions} times {@code web-fetch-concurrency} page downloads at once,
+     * at most {@code web-fetch-per-host-concurrency} of them to the same host, and as many model calls
+     * as there are questions; the limit should be sized for the model's rate limit first.
+     * </p>
+     *
+     * @return an instance of {@link AgentConcurrencyGovernor}.
+     */
+    @Bean
+    AgentConcurrencyGovernor agentConcurrencyGovernor() {
+        AgentConcurrencyGovernor governor = new AgentConcurrencyGovernor(maxConcurrentQuestions,
+                Duration.ofMillis(admissionTimeoutMillis), webContentExecutor());
+        Gauge.builder("agent.questions.active", governor, AgentConcurrencyGovernor::activeQuestions).register(meterRegistry);
+        Gauge.builder("agent.questions.waiting", governor, AgentConcurrencyGovernor::waitingQuestions).register(meterRegistry);
+        FunctionCounter.builder("agent.questions.rejected", governor, AgentConcurrencyGovernor::rejectedQuestions).register(meterRegistry);
+        return governor;
+    }
+}
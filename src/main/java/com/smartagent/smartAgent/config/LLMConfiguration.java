@@ -1,14 +1,23 @@
 package com.smartagent.smartAgent.config;
 
+import com.smartagent.smartAgent.observability.MeteredChatModelListener;
+import com.smartagent.smartAgent.utility.TokenAccountant;
 import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.model.openai.OpenAiChatModelName;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import dev.langchain4j.model.openai.OpenAiTokenizer;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Configuration
 @Slf4j
 public class LLMConfiguration {
@@ -25,6 +34,9 @@ public class LLMConfiguration {
     @Value("${tool-model-name}")
     private String toolLLMName;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     /**
      * Configures and provides a bean for ChatLanguageModel.
      * <p>
@@ -44,6 +56,7 @@ public class LLMConfiguration {
                 .logRequests(true)
                 .logResponses(true)
                 .strictJsonSchema(true)
+                .listeners(List.of(chatModelListener()))
                 .build();
     }
 
@@ -57,9 +70,47 @@ public class LLMConfiguration {
                 .logRequests(true)
                 .logResponses(true)
                 .strictJsonSchema(true)
+                .listeners(List.of(chatModelListener()))
+                .build();
+    }
+
+    /**
+     * Configures and provides a bean for the streaming variant of the tool language model.
+     * <p>
+     * This model uses the same endpoint and tool model name as {@code ToolLanguageModel}, but delivers
+     * the generated answer token by token, which lets the answer be streamed to the client.
+     * </p>
+     *
+     * @return an instance of {@link StreamingChatLanguageModel} configured for tool use.
+     */
+    @Bean
+    StreamingChatLanguageModel toolStreamingLanguageModel() {
+        return OpenAiStreamingChatModel.builder()
+                .baseUrl(llmUrl)
+                .apiKey(llmApiKey)
+                .modelName(toolLLMName)
+                .strictTools(true)
+                .logRequests(true)
+                .logResponses(true)
+                .strictJsonSchema(true)
+                .listeners(List.of(chatModelListener()))
                 .build();
     }
 
+    /**
+     * Configures and provides a bean for the listener attached to every chat model.
+     * <p>
+     * It records the latency, outcome and token usage of each model call as metrics tagged with the
+     * model name.
+     * </p>
+     *
+     * @return an instance of {@link ChatModelListener} recording model calls.
+     */
+    @Bean
+    ChatModelListener chatModelListener() {
+        return new MeteredChatModelListener(meterRegistry);
+    }
+
     /**
      * Configures and provides a bean for OpenAiTokenizer.
      * <p>
@@ -73,4 +124,19 @@ public class LLMConfiguration {
     OpenAiTokenizer tokenizer() {
         return new OpenAiTokenizer(OpenAiChatModelName.GPT_4_O);
     }
+
+    /**
+     * Configures and provides a bean for TokenAccountant.
+     * <p>
+     * This method creates a TokenAccountant with the same GPT-4-O encoding as the {@link OpenAiTokenizer} bean.
+     * It tokenizes a text once for both counting and splitting, and memoizes counts for texts that flow through
+     * several stages of the pipeline.
+     * </p>
+     *
+     * @return an instance of {@link TokenAccountant} configured for the GPT-4-O model.
+     */
+    @Bean
+    TokenAccountant tokenAccountant() {
+        return new TokenAccountant(OpenAiChatModelName.GPT_4_O);
+    }
 }
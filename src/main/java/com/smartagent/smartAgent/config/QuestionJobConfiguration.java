@@ -0,0 +1,118 @@
+package com.smartagent.smartAgent.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartagent.smartAgent.concurrency.AgentConcurrencyGovernor;
+import com.smartagent.smartAgent.job.QuestionJobQueue;
+import com.smartagent.smartAgent.job.WebhookNotifier;
+import com.smartagent.smartAgent.mapper.QuestionJobMapper;
+import com.smartagent.smartAgent.record.domain.WebSearchResult;
+import com.smartagent.smartAgent.service.WebSearchAgentService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Set;
+
+@Configuration
+public class QuestionJobConfiguration {
+
+    @Value("${question-job-workers:16}")
+    private int workers;
+
+    @Value("${question-job-queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${question-job-ttl-minutes:30}")
+    private long ttlMinutes;
+
+    @Value("${question-job-max-entries:10000}")
+    private long maxEntries;
+
+    @Value("${agent-question-timeout-ms:90000}")
+    private long questionTimeoutMillis;
+
+    @Value("${question-job-webhook-allowed-hosts:localhost,127.0.0.1,[::1]}")
+    private Set<String> webhookAllowedHosts;
+
+    @Value("${question-job-webhook-timeout-ms:5000}")
+    private long webhookTimeoutMillis;
+
+    @Autowired
+    private WebSearchAgentService webSearchAgentService;
+
+    @Autowired
+    private AgentConcurrencyGovernor agentConcurrencyGovernor;
+
+    @Autowired
+    private QuestionJobMapper questionJobMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Configures and provides a bean for the notifier posting finished jobs to their webhook.
+     * <p>
+     * Webhooks may only point to the hosts of {@code question-job-webhook-allowed-hosts}. The client does
+     * not follow redirects, so a webhook cannot be redirected to another host.
+     * </p>
+     *
+     * @return an instance of {@link WebhookNotifier}.
+     */
+    @Bean
+    WebhookNotifier webhookNotifier() {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofMillis(webhookTimeoutMillis))
+                .build();
+        return new WebhookNotifier(httpClient, objectMapper, webhookAllowedHosts,
+                Duration.ofMillis(webhookTimeoutMillis), Duration.ofSeconds(1));
+    }
+
+    /**
+     * Configures and provides a bean for the queue answering questions in the background.
+     * <p>
+     * {@code question-job-workers} questions are answered at once and up to
+     * {@code question-job-queue-capacity} more wait for a worker; further questions are rejected.
+     * Each worker answers through the {@link AgentConcurrencyGovernor}, so running jobs hold question
+     * slots of {@code agent-max-concurrent-questions} like any other question, and the workers should
+     * be fewer than the slots. A question is cancelled and its job failed after
+     * {@code agent-question-timeout-ms}, waiting for a slot included, as for a synchronous question. Finished jobs are kept for {@code question-job-ttl-minutes}, at most
+     * {@code question-job-max-entries} of them, and posted to their webhook, if any.
+     * The queued, active and rejected jobs are exported as {@code question.jobs.queued},
+     * {@code question.jobs.active} and {@code question.jobs.rejected}.
+     * </p>
+     *
+     * @return an instance of {@link QuestionJobQueue}.
+     */
+    @Bean(destroyMethod = "close")
+    QuestionJobQueue questionJobQueue() {
+        WebhookNotifier webhookNotifier = webhookNotifier();
+        QuestionJobQueue queue = new QuestionJobQueue(
+                (question, conversationId) -> {
+                    WebSearchResult result = webSearchAgentService.agentReplyWithWebSearchData(question, conversationId);
+                    if (result == null || result.result() == null) {
+                        throw new IllegalStateException("No answer was produced");
+                    }
+                    return result.result();
+                },
+                agentConcurrencyGovernor, workers, queueCapacity, Duration.ofMillis(questionTimeoutMillis), Duration.ofMinutes(ttlMinutes), maxEntries,
+                job -> {
+                    if (job.callbackUrl() != null) {
+                        webhookNotifier.deliver(job.callbackUrl(), questionJobMapper.mapQuestionJobToQuestionJobDto(job));
+                    }
+                });
+        Gauge.builder("question.jobs.queued", queue, QuestionJobQueue::queuedJobs).register(meterRegistry);
+        Gauge.builder("question.jobs.active", queue, QuestionJobQueue::activeJobs).register(meterRegistry);
+        FunctionCounter.builder("question.jobs.rejected", queue, QuestionJobQueue::rejectedJobs).register(meterRegistry);
+        return queue;
+    }
+}
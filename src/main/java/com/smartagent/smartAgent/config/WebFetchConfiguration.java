@@ -0,0 +1,66 @@
+package com.smartagent.smartAgent.config;
+
+import com.smartagent.smartAgent.fetcher.WebPageFetcher;
+import org.jsoup.helper.HttpConnection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+
+@Configuration
+public class WebFetchConfiguration {
+
+    @Value("${web-fetch-connect-timeout-ms:3000}")
+    private long connectTimeoutMillis;
+
+    @Value("${web-fetch-response-timeout-ms:8000}")
+    private long responseTimeoutMillis;
+
+    @Value("${web-fetch-url-timeout-ms:10000}")
+    private long urlTimeoutMillis;
+
+    @Value("${web-fetch-per-host-concurrency:4}")
+    private int perHostConcurrency;
+
+    @Value("${web-page-max-body-bytes:2097152}")
+    private int maxBodyBytes;
+
+    @Autowired
+    @Qualifier("webContentExecutor")
+    private ExecutorService webContentExecutor;
+
+    /**
+     * Configures and provides a bean for the HTTP client used to download web pages.
+     * <p>
+     * One client is shared by all fetches, so connections are pooled and kept alive between requests,
+     * and HTTP/2 is used where the server supports it.
+     * </p>
+     *
+     * @return an instance of {@link HttpClient}.
+     */
+    @Bean
+    HttpClient webFetchHttpClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .executor(webContentExecutor)
+                .build();
+    }
+
+    /**
+     * Configures and provides a bean for the web page fetcher.
+     *
+     * @return an instance of {@link WebPageFetcher}.
+     */
+    @Bean
+    WebPageFetcher webPageFetcher() {
+        return new WebPageFetcher(webFetchHttpClient(), webContentExecutor, HttpConnection.DEFAULT_UA,
+                Duration.ofMillis(responseTimeoutMillis), Duration.ofMillis(urlTimeoutMillis), maxBodyBytes, perHostConcurrency);
+    }
+}
@@ -1,10 +1,11 @@
 package com.smartagent.smartAgent.config;
 
 import com.smartagent.smartAgent.assistant.WebSearchAssistant;
+import com.smartagent.smartAgent.memory.ConversationChatMemoryProvider;
 import com.smartagent.smartAgent.retriever.PreprocessingContentRetriever;
+import com.smartagent.smartAgent.tooluse.ConcurrentToolCalls;
 import com.smartagent.smartAgent.tooluse.WebSearchTool;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.rag.DefaultRetrievalAugmentor;
@@ -15,9 +16,13 @@ import dev.langchain4j.service.AiServices;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
 @Configuration
 public class WebSearchAssistantConfiguration {
     @Autowired
@@ -40,12 +45,26 @@ public class WebSearchAssistantConfiguration {
     @Autowired
     private WebSearchTool webSearchTool;
 
+    @Autowired
+    private ConversationChatMemoryProvider conversationChatMemoryProvider;
+
+    @Autowired
+    @Qualifier("webContentExecutor")
+    private ExecutorService webContentExecutor;
+
+    @Value("${tool-call-max-concurrency:4}")
+    private int toolCallMaxConcurrency;
+
     /**
      * Configures and provides a bean for WebSearchAssistant.
      * <p>
      * This method creates a WebSearchAssistant instance, integrating various components such as the chat language model,
-     * a query router for preprocessing content, and a retrieval augmenter. Additionally, it sets up a message window
-     * chat memory to manage chat history with a limit of 20 messages.
+     * a query router for preprocessing content, and a retrieval augmenter. Additionally, it sets up a chat memory
+     * provider that keeps a separate, bounded message window for every conversation id.
+     * </p>
+     * <p>
+     * When the model requests several web searches in one turn, they run concurrently, at most
+     * {@code tool-call-max-concurrency} at a time, see {@link ConcurrentToolCalls}.
      * </p>
      *
      * @return an instance of {@link WebSearchAssistant} configured with the required services and augmenters.
@@ -75,11 +94,13 @@ public class WebSearchAssistantConfiguration {
 //                .contentInjector()
                 .build();
 
+        ConcurrentToolCalls concurrentToolCalls = new ConcurrentToolCalls(List.of(webSearchTool), webContentExecutor, toolCallMaxConcurrency);
+
         return AiServices.builder(WebSearchAssistant.class)
-                .chatLanguageModel(toolLanguageModel)
+                .chatLanguageModel(concurrentToolCalls.decorate(toolLanguageModel))
 //                .retrievalAugmentor(retrievalAugmentor)
-                .tools(webSearchTool)
-                .chatMemory(MessageWindowChatMemory.withMaxMessages(20))
+                .tools(concurrentToolCalls.tools())
+                .chatMemoryProvider(conversationChatMemoryProvider)
                 .build();
     }
 }
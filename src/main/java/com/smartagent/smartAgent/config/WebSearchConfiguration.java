@@ -1,43 +1,114 @@
 package com.smartagent.smartAgent.config;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartagent.smartAgent.search.CachingWebSearchEngine;
+import com.smartagent.smartAgent.search.CompositeWebSearchEngine;
 import dev.langchain4j.community.web.search.searxng.SearXNGWebSearchEngine;
 import dev.langchain4j.rag.content.retriever.WebSearchContentRetriever;
 import dev.langchain4j.web.search.WebSearchEngine;
+import dev.langchain4j.web.search.WebSearchResults;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
 
 @Configuration
 public class WebSearchConfiguration {
 
-    @Value("${search-engine-url}")
-    private String searchEngineUrl;
+    @Value("${search-engine-urls:${search-engine-url}}")
+    private List<String> searchEngineUrls;
+
+    @Value("${search-engine-mode:hedged}")
+    private String searchEngineMode;
+
+    @Value("${search-engine-timeout-ms:5000}")
+    private long searchEngineTimeoutMillis;
+
+    @Value("${search-hedge-percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${search-hedge-initial-delay-ms:1000}")
+    private long initialHedgeDelayMillis;
+
+    @Value("${search-max-results:3}")
+    private int maxResults;
+
+    @Value("${search-cache-max-entries:1000}")
+    private long searchCacheMaxEntries;
+
+    @Value("${search-cache-ttl-minutes:10}")
+    private long searchCacheTtlMinutes;
+
+    @Autowired
+    @Qualifier("webContentExecutor")
+    private ExecutorService webContentExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Configures and provides a bean for the WebSearchEngine.
+     * <p>
+     * One SearXNG engine is created for every URL in {@code search-engine-urls}, each with a timeout of
+     * {@code search-engine-timeout-ms} and request and response logging. They are combined by a
+     * {@link CompositeWebSearchEngine}, which either merges the results of all instances or hedges
+     * slow searches to the next instance, depending on {@code search-engine-mode}. In front of them, a
+     * {@link CachingWebSearchEngine} answers repeated queries for {@code search-cache-ttl-minutes}.
+     * </p>
+     *
+     * @return an instance of {@link WebSearchEngine} backed by the configured SearXNG instances.
+     */
+    @Bean
+    WebSearchEngine webSearchEngine() {
+        Duration timeout = Duration.ofMillis(searchEngineTimeoutMillis);
+        List<WebSearchEngine> engines = searchEngineUrls.stream()
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .<WebSearchEngine>map(url -> SearXNGWebSearchEngine.builder()
+                        .baseUrl(url)
+                        .duration(timeout)
+                        .logRequests(true)
+                        .logResponses(true)
+                        .build())
+                .toList();
+
+        WebSearchEngine compositeEngine = new CompositeWebSearchEngine(engines,
+                CompositeWebSearchEngine.Mode.valueOf(searchEngineMode.trim().toUpperCase(Locale.ROOT)),
+                webContentExecutor, timeout, hedgePercentile, Duration.ofMillis(initialHedgeDelayMillis));
+
+        AsyncCache<String, WebSearchResults> cache = Caffeine.newBuilder()
+                .maximumSize(searchCacheMaxEntries)
+                .expireAfterWrite(Duration.ofMinutes(searchCacheTtlMinutes))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "web-search");
+
+        return new CachingWebSearchEngine(compositeEngine, cache);
+    }
 
     /**
      * Configures and provides a bean for WebSearchContentRetriever.
      * <p>
-     * This method creates a WebSearchContentRetriever instance by setting up a WebSearchEngine with the specified
-     * search engine URL. It configures the engine with a timeout duration of 5 seconds and enables logging for
-     * requests and responses. The retriever is further configured to return a maximum of 10 results.
+     * The retriever searches with the {@link #webSearchEngine()} and returns at most
+     * {@code search-max-results} results.
      * </p>
      *
      * @return an instance of {@link WebSearchContentRetriever} configured for web search integration.
      */
     @Bean
     WebSearchContentRetriever getWebSearchContentRetriever() {
-        WebSearchEngine webSearchEngine = SearXNGWebSearchEngine.builder()
-                .baseUrl(searchEngineUrl)
-                .duration(Duration.ofSeconds(5))
-                .logRequests(true)
-                .logResponses(true)
-                .build();
-
         return WebSearchContentRetriever.builder()
-                .webSearchEngine(webSearchEngine)
-                //TODO: need to decided if it need to be configurable or hardcoded and value need to be changed
-                .maxResults(3)
+                .webSearchEngine(webSearchEngine())
+                .maxResults(maxResults)
                 .build();
     }
 }
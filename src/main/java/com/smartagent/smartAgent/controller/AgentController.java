@@ -1,13 +1,38 @@
 package com.smartagent.smartAgent.controller;
 
+import com.smartagent.smartAgent.concurrency.AgentConcurrencyGovernor;
 import com.smartagent.smartAgent.mapper.WebSearchMapper;
+import com.smartagent.smartAgent.record.domain.WebSearchResult;
+import com.smartagent.smartAgent.record.dto.request.WebSearchBatchRequestDto;
+import com.smartagent.smartAgent.record.dto.response.AgentProgressEventDto;
+import com.smartagent.smartAgent.record.dto.response.WebSearchBatchAnswerDto;
+import com.smartagent.smartAgent.record.dto.response.WebSearchBatchResponseDto;
 import com.smartagent.smartAgent.record.dto.response.WebSearchResponseDto;
 import com.smartagent.smartAgent.service.WebSearchAgentService;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 
 /**
  * REST Controller for handling web search queries using the WebSearchAgentService.
@@ -16,12 +41,32 @@ import org.springframework.web.bind.annotation.RestController;
  * users to send questions and receive responses with web search data.
  * </p>
  */
+@Slf4j
 @RestController
 public class AgentController {
     @Autowired
     private WebSearchAgentService webSearchAgentService;
     @Autowired
     private WebSearchMapper webSearchMapper;
+    @Autowired
+    private ObservationRegistry observationRegistry;
+    @Autowired
+    private AgentConcurrencyGovernor agentConcurrencyGovernor;
+
+    @Value("${agent-question-timeout-ms:90000}")
+    private long questionTimeoutMillis;
+
+    @Value("${batch-max-questions:50}")
+    private int batchMaxQuestions;
+
+    @Value("${batch-question-concurrency:8}")
+    private int batchQuestionConcurrency;
+
+    @Value("${batch-timeout-ms:300000}")
+    private long batchTimeoutMillis;
+
+    @Value("${stream-timeout-ms:120000}")
+    private long streamTimeoutMillis;
 
     /**
      * Handles HTTP GET requests to the /web-search-agent endpoint.
@@ -29,18 +74,266 @@ public class AgentController {
      * This method takes a question as a query parameter, processes it using the
      * WebSearchAgentService, and returns a response containing web search results.
      * </p>
+     * <p>
+     * The question is admitted by the {@link AgentConcurrencyGovernor} and answered on its own virtual
+     * thread. If no slot frees up within the admission timeout, or the request is interrupted while
+     * waiting for one, the response is {@code 503 Service Unavailable}. If the answer takes longer than
+     * {@code agent-question-timeout-ms}, or the client disconnects, the question is cancelled, which also
+     * cancels its pending page downloads and model calls; a timed out question gets a
+     * {@code 504 Gateway Timeout}. Searches, pages and filter results the question was loading for other
+     * questions as well are not failed by its cancellation: the other questions load them again.
+     * </p>
      *
-     * @param question the user's question to process and search for.
-     * @return a {@link ResponseEntity} containing a {@link WebSearchResponseDto}
+     * @param question       the user's question to process and search for.
+     * @param conversationId optional id of the conversation to continue; without it the question is answered on its own.
+     * @return a {@link DeferredResult} completed with a {@link ResponseEntity} containing a {@link WebSearchResponseDto}
      * with the search results or an error message.
      */
     @GetMapping("/web-search-agent")
-    ResponseEntity<WebSearchResponseDto> webSearchAgent(@RequestParam String question) {
+    DeferredResult<ResponseEntity<WebSearchResponseDto>> webSearchAgent(@RequestParam String question, @RequestParam(required = false) String conversationId) {
+        DeferredResult<ResponseEntity<WebSearchResponseDto>> result = new DeferredResult<>(questionTimeoutMillis);
+        Future<?> answer = submit(() -> result.setResult(answerQuestion(question, conversationId)),
+                () -> result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body(new WebSearchResponseDto("The agent is busy. Please try again shortly."))));
+        if (answer == null) {
+            return result;
+        }
+
+        result.onTimeout(() -> {
+            log.warn("Cancelling question that exceeded the timeout of {} ms", questionTimeoutMillis);
+            answer.cancel(true);
+            result.setResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                    .body(new WebSearchResponseDto("The question took too long to answer. Please try again.")));
+        });
+        result.onError(error -> {
+            log.debug("Cancelling question after the request failed, the client has probably disconnected: {}", error.getMessage());
+            answer.cancel(true);
+        });
+        return result;
+    }
+
+    private ResponseEntity<WebSearchResponseDto> answerQuestion(String question, String conversationId) {
         try {
-            WebSearchResponseDto response = webSearchMapper.mapWebSearchResultToWebSearchResponseDto(webSearchAgentService.agentReplyWithWebSearchData(question));
+            WebSearchResponseDto response = webSearchMapper.mapWebSearchResultToWebSearchResponseDto(webSearchAgentService.agentReplyWithWebSearchData(question, conversationId));
             return ResponseEntity.ok(response);
         } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(new WebSearchResponseDto("The question was cancelled. Please try again."));
+            }
             return ResponseEntity.badRequest().body(new WebSearchResponseDto("Error during web searching. Please try again."));
         }
     }
+
+    /**
+     * Handles HTTP POST requests to the /web-search-agent/batch endpoint.
+     * <p>
+     * This method answers a batch of up to {@code batch-max-questions} one-off questions together, see
+     * {@link WebSearchAgentService#agentReplyWithWebSearchData(List)}. The questions share their web
+     * searches, page downloads and embeddings, so the cost of a batch grows with its unique pages rather
+     * than with its number of questions. The batch takes a slot of the {@link AgentConcurrencyGovernor}
+     * for each question it answers at once, at most {@code batch-question-concurrency}, and is
+     * cancelled after {@code batch-timeout-ms}.
+     * </p>
+     *
+     * @param request the questions to answer.
+     * @return a {@link DeferredResult} completed with a {@link ResponseEntity} containing a {@link WebSearchBatchResponseDto}
+     * with an answer or an error message per question.
+     */
+    @PostMapping("/web-search-agent/batch")
+    DeferredResult<ResponseEntity<WebSearchBatchResponseDto>> webSearchAgentBatch(@RequestBody WebSearchBatchRequestDto request) {
+        DeferredResult<ResponseEntity<WebSearchBatchResponseDto>> result = new DeferredResult<>(batchTimeoutMillis);
+        List<String> questions = request == null || request.questions() == null ? List.of() : request.questions();
+        if (questions.isEmpty() || questions.size() > batchMaxQuestions || questions.stream().anyMatch(question -> question == null || question.isBlank())) {
+            result.setResult(ResponseEntity.badRequest()
+                    .body(WebSearchBatchResponseDto.failed("A batch must contain between 1 and " + batchMaxQuestions + " non-blank questions.")));
+            return result;
+        }
+
+        Future<?> answers = submit(Math.min(questions.size(), batchQuestionConcurrency), () -> result.setResult(answerQuestions(questions)),
+                () -> result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body(WebSearchBatchResponseDto.failed("The agent is busy. Please try again shortly."))));
+        if (answers == null) {
+            return result;
+        }
+
+        result.onTimeout(() -> {
+            log.warn("Cancelling batch of {} questions that exceeded the timeout of {} ms", questions.size(), batchTimeoutMillis);
+            answers.cancel(true);
+            result.setResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                    .body(WebSearchBatchResponseDto.failed("The batch took too long to answer. Please try again.")));
+        });
+        result.onError(error -> {
+            log.debug("Cancelling batch after the request failed, the client has probably disconnected: {}", error.getMessage());
+            answers.cancel(true);
+        });
+        return result;
+    }
+
+    private ResponseEntity<WebSearchBatchResponseDto> answerQuestions(List<String> questions) {
+        try {
+            List<WebSearchResult> results = webSearchAgentService.agentReplyWithWebSearchData(questions);
+            List<WebSearchBatchAnswerDto> answers = new ArrayList<>(questions.size());
+            for (int i = 0; i < questions.size(); i++) {
+                WebSearchResult webSearchResult = results.get(i);
+                answers.add(new WebSearchBatchAnswerDto(questions.get(i),
+                        webSearchResult != null ? webSearchMapper.mapWebSearchResultToWebSearchResponseDto(webSearchResult).answer() : "Error during web searching. Please try again."));
+            }
+            return ResponseEntity.ok(new WebSearchBatchResponseDto(answers, null));
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(WebSearchBatchResponseDto.failed("The batch was cancelled. Please try again."));
+            }
+            return ResponseEntity.badRequest().body(WebSearchBatchResponseDto.failed("Error during web searching. Please try again."));
+        }
+    }
+
+    /**
+     * Submits work answering one question to the {@link AgentConcurrencyGovernor}, see
+     * {@link #submit(int, Callable, Runnable)}.
+     */
+    private Future<?> submit(Callable<?> work, Runnable onUnavailable) {
+        return submit(1, work, onUnavailable);
+    }
+
+    /**
+     * Submits work answering {@code questionCount} questions at once to the {@link AgentConcurrencyGovernor},
+     * running {@code onUnavailable} if it is rejected or the request is interrupted while waiting for slots.
+     *
+     * @return the pending work, or null if it was not admitted.
+     */
+    private Future<?> submit(int questionCount, Callable<?> work, Runnable onUnavailable) {
+        try {
+            return agentConcurrencyGovernor.submit(questionCount, work);
+        } catch (AgentConcurrencyGovernor.AgentOverloadedException e) {
+            log.warn("Rejecting question: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            log.debug("Interrupted while waiting for a question slot");
+            Thread.currentThread().interrupt();
+        }
+        onUnavailable.run();
+        return null;
+    }
+
+    /**
+     * Handles HTTP GET requests to the /web-search-agent/stream endpoint.
+     * <p>
+     * This method streams the answer as Server-Sent Events while it is generated. {@code progress}
+     * events carry an {@link AgentProgressEventDto} for each completed search, fetch and filter step,
+     * {@code token} events carry the generated text, and the stream ends with a {@code done} event
+     * containing the full {@link WebSearchResponseDto}, or an {@code error} event. The stream is
+     * observed as {@code agent.answer} until its last event; the stream is started in the scope of that
+     * observation, so that it is the parent of the observations of the answer's web searches.
+     * </p>
+     * <p>
+     * Like other questions, a stream is admitted by the {@link AgentConcurrencyGovernor} and holds its
+     * slot until its last event; if no slot frees up within the admission timeout, the response is
+     * {@code 503 Service Unavailable}. When the stream times out after {@code stream-timeout-ms}, fails
+     * or the client disconnects, the answer is cancelled: no more events are sent, and no further web
+     * searches or model requests are started for it.
+     * </p>
+     *
+     * @param question       the user's question to process and search for.
+     * @param conversationId optional id of the conversation to continue; without it the question is answered on its own.
+     * @return a {@link ResponseEntity} with an {@link SseEmitter} streaming the answer.
+     */
+    @GetMapping(value = "/web-search-agent/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    ResponseEntity<SseEmitter> streamWebSearchAgent(@RequestParam String question, @RequestParam(required = false) String conversationId) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        Observation observation = Observation.createNotStarted("agent.answer", observationRegistry)
+                .lowCardinalityKeyValue("mode", "stream")
+                .lowCardinalityKeyValue("conversation", String.valueOf(conversationId != null))
+                .start();
+        // Completed by whichever of the answer, the timeout or the connection ends the stream first,
+        // which then stops the observation; the rest of the answer is cancelled and the slot released.
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        emitter.onTimeout(() -> {
+            if (finished.complete(null)) {
+                log.warn("Cancelling streamed answer that exceeded the timeout of {} ms", streamTimeoutMillis);
+                observation.error(new TimeoutException("The stream exceeded " + streamTimeoutMillis + " ms"));
+                observation.stop();
+                sendEvent(emitter, "error", new WebSearchResponseDto("The question took too long to answer. Please try again."));
+                emitter.complete();
+            }
+        });
+        emitter.onError(error -> {
+            if (finished.complete(null)) {
+                log.debug("Cancelling streamed answer after the request failed, the client has probably disconnected: {}", error.getMessage());
+                observation.error(error);
+                observation.stop();
+            }
+        });
+        emitter.onCompletion(() -> {
+            if (finished.complete(null)) {
+                observation.stop();
+            }
+        });
+
+        Future<?> stream = submit(() -> {
+            streamAnswer(question, conversationId, emitter, observation, finished);
+            // Keeps the slot until the stream ends
+            return finished.get();
+        }, () -> {
+            finished.complete(null);
+            observation.stop();
+        });
+        if (stream == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    private void streamAnswer(String question, String conversationId, SseEmitter emitter, Observation observation, CompletableFuture<Void> finished) {
+        try (Observation.Scope scope = observation.openScope()) {
+            webSearchAgentService.streamAgentReplyWithWebSearchData(question, conversationId,
+                            (stage, detail) -> {
+                                if (!finished.isDone()) {
+                                    sendEvent(emitter, "progress", new AgentProgressEventDto(stage.name(), detail));
+                                }
+                            }, finished::isDone)
+                    .onPartialResponse(token -> {
+                        if (!finished.isDone()) {
+                            sendEvent(emitter, "token", token);
+                        }
+                    })
+                    .onCompleteResponse(response -> {
+                        if (finished.complete(null)) {
+                            sendEvent(emitter, "done", new WebSearchResponseDto(response.aiMessage().text()));
+                            emitter.complete();
+                            observation.stop();
+                        }
+                    })
+                    .onError(error -> {
+                        if (finished.complete(null)) {
+                            log.error("Error in streamWebSearchAgent: {}", error.getMessage());
+                            observation.error(error);
+                            observation.stop();
+                            sendEvent(emitter, "error", new WebSearchResponseDto("Error during web searching. Please try again."));
+                            emitter.complete();
+                        }
+                    })
+                    .start();
+        } catch (Exception e) {
+            if (finished.complete(null)) {
+                log.error("Error in streamWebSearchAgent: {}", e.getMessage());
+                observation.error(e);
+                observation.stop();
+                sendEvent(emitter, "error", new WebSearchResponseDto("Error during web searching. Please try again."));
+                emitter.complete();
+            }
+        }
+    }
+
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Unable to send {} event, the client has probably disconnected: {}", name, e.getMessage());
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package com.smartagent.smartAgent.controller;
+
+import com.smartagent.smartAgent.job.QuestionJobQueue;
+import com.smartagent.smartAgent.job.WebhookNotifier;
+import com.smartagent.smartAgent.mapper.QuestionJobMapper;
+import com.smartagent.smartAgent.record.domain.QuestionJob;
+import com.smartagent.smartAgent.record.dto.response.QuestionJobDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * REST Controller for answering questions in the background.
+ * <p>
+ * A question is submitted as a job, answered by the {@link QuestionJobQueue}, and its result is then
+ * polled, or long-polled, by job id. This keeps no request and no client connection open while the
+ * agent searches the web. A job can also be given a webhook URL the finished job is posted to.
+ * </p>
+ */
+@Slf4j
+@RestController
+public class QuestionJobController {
+    @Autowired
+    private QuestionJobQueue questionJobQueue;
+    @Autowired
+    private WebhookNotifier webhookNotifier;
+    @Autowired
+    private QuestionJobMapper questionJobMapper;
+
+    @Value("${question-job-max-wait-ms:30000}")
+    private long maxWaitMillis;
+
+    /**
+     * Handles HTTP POST requests to the /web-search-agent/jobs endpoint.
+     * <p>
+     * The question is queued and the response is {@code 202 Accepted}, with the job's URL in the
+     * {@code Location} header. If every worker is busy and the queue is full, the response is
+     * {@code 429 Too Many Requests}. An invalid or disallowed webhook URL gives a {@code 400 Bad Request}.
+     * </p>
+     *
+     * @param question       the user's question to process and search for.
+     * @param conversationId optional id of the conversation to continue; without it the question is answered on its own.
+     * @param callbackUrl    optional URL the finished job is posted to.
+     * @return a {@link ResponseEntity} containing the queued {@link QuestionJobDto} or an error message.
+     */
+    @PostMapping("/web-search-agent/jobs")
+    ResponseEntity<QuestionJobDto> submitQuestionJob(@RequestParam String question, @RequestParam(required = false) String conversationId,
+                                                     @RequestParam(required = false) String callbackUrl) {
+        URI callbackUri = null;
+        if (callbackUrl != null && !callbackUrl.isBlank()) {
+            try {
+                callbackUri = URI.create(callbackUrl);
+                webhookNotifier.validate(callbackUri);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(QuestionJobDto.rejected("Invalid callback URL: " + e.getMessage()));
+            }
+        }
+
+        QuestionJob job;
+        try {
+            job = questionJobQueue.submit(question, conversationId, callbackUri);
+        } catch (RejectedExecutionException e) {
+            log.warn("Rejecting question job, the queue is full");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(QuestionJobDto.rejected("The agent is busy. Please try again shortly."));
+        }
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{jobId}")
+                .buildAndExpand(job.id())
+                .toUri();
+        return ResponseEntity.accepted()
+                .location(location)
+                .body(questionJobMapper.mapQuestionJobToQuestionJobDto(job));
+    }
+
+    /**
+     * Handles HTTP GET requests to the /web-search-agent/jobs/{jobId} endpoint.
+     * <p>
+     * Without {@code waitMs}, the current state of the job is returned at once. With it, the response
+     * is held until the job succeeded or failed, or until {@code waitMs} elapsed, at most
+     * {@code question-job-max-wait-ms}, and the state at that moment is returned. The wait holds no
+     * thread. An unknown or expired job gives a {@code 404 Not Found}.
+     * </p>
+     *
+     * @param jobId  the id of the job.
+     * @param waitMs optional maximum time to wait for the job to finish, in milliseconds.
+     * @return a {@link DeferredResult} completed with a {@link ResponseEntity} containing the {@link QuestionJobDto}.
+     */
+    @GetMapping("/web-search-agent/jobs/{jobId}")
+    DeferredResult<ResponseEntity<QuestionJobDto>> getQuestionJob(@PathVariable String jobId, @RequestParam(defaultValue = "0") long waitMs) {
+        long wait = Math.min(Math.max(waitMs, 0), maxWaitMillis);
+        DeferredResult<ResponseEntity<QuestionJobDto>> result = new DeferredResult<>(wait > 0 ? wait : null);
+        Optional<QuestionJob> job = questionJobQueue.get(jobId);
+        Optional<CompletableFuture<QuestionJob>> completion = questionJobQueue.completion(jobId);
+        if (job.isEmpty() || completion.isEmpty()) {
+            result.setResult(ResponseEntity.status(HttpStatus.NOT_FOUND).body(QuestionJobDto.rejected("Unknown job " + jobId)));
+            return result;
+        }
+        if (wait == 0 || job.get().status().isDone()) {
+            result.setResult(ResponseEntity.ok(questionJobMapper.mapQuestionJobToQuestionJobDto(job.get())));
+            return result;
+        }
+
+        completion.get().thenAccept(completedJob -> result.setResult(ResponseEntity.ok(questionJobMapper.mapQuestionJobToQuestionJobDto(completedJob))));
+        result.onTimeout(() -> result.setResult(questionJobQueue.get(jobId)
+                .map(currentJob -> ResponseEntity.ok(questionJobMapper.mapQuestionJobToQuestionJobDto(currentJob)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(QuestionJobDto.rejected("Unknown job " + jobId)))));
+        return result;
+    }
+}
@@ -0,0 +1,245 @@
+package com.smartagent.smartAgent.fetcher;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.Elements;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts the main content of an HTML page as paragraph-structured text.
+ * <p>
+ * Boilerplate is removed first: scripts, styles, form controls, navigation, sidebars, the header and
+ * footer of the page and elements whose class or id contain a word such as menu, banner or share. The
+ * header and footer of an article or section, which hold its title or byline, are kept, and so are
+ * forms, since some sites wrap their whole page in one. The main content is then the largest
+ * {@code <main>}/{@code <article>} element if the page has one, otherwise it is found with a
+ * readability-style score: every paragraph gets points for its length and commas, discounted by the
+ * share of link text. The best candidate is the element whose paragraphs, and half of whose
+ * grandchild paragraphs, score highest. When the candidate holds less than half of the score of an
+ * ancestor's whole subtree, as one post of a forum thread does, the ancestor is taken instead. The output
+ * has one block element per paragraph, separated by blank lines.
+ * </p>
+ */
+public final class HtmlTextExtractor {
+
+    private static final String BOILERPLATE_TAGS = "script, style, noscript, template, svg, canvas, iframe, object, "
+            + "button, input, select, textarea, nav, aside, menu, dialog, "
+            + "[hidden], [aria-hidden=true], [role=navigation], [role=banner], [role=contentinfo], "
+            + "[role=complementary], [role=search], [role=dialog]";
+
+    /**
+     * Boilerplate words, matched only as whole words of a class or id delimited by {@code -}, {@code _},
+     * spaces or its ends, so that names such as {@code shareholders} or {@code commentary-body} are kept.
+     */
+    private static final Pattern BOILERPLATE_NAME = Pattern.compile(
+            "(?<![a-z0-9])(?:nav|navbar|navigation|menus?|footer|sidebar|comments?|cookies?|consent|banner|"
+                    + "breadcrumbs?|share|sharing|social|related|adverts?|advertisement|promo|sponsor|sponsored|"
+                    + "subscribe|newsletter|popup|modal|masthead|skip-link)(?![a-z0-9])",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Sectioning elements whose own {@code <header>} and {@code <footer>} are content, not page chrome.
+     */
+    private static final String SECTIONING_CONTENT = "article, main, section, [role=main]";
+
+    private static final Pattern CONTENT_NAME = Pattern.compile(
+            "article|content|main|post|entry|story|body|text|blog",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Set<String> PARAGRAPH_TAGS = Set.of("p", "pre", "blockquote", "li", "td", "dd");
+
+    private static final Set<String> BLOCK_TAGS = Set.of(
+            "p", "div", "section", "article", "main", "pre", "blockquote", "ul", "ol", "li", "dl", "dt", "dd",
+            "table", "tr", "td", "th", "h1", "h2", "h3", "h4", "h5", "h6", "figcaption", "address", "hr", "br");
+
+    private static final int MIN_PARAGRAPH_CHARS = 25;
+    private static final int MIN_MAIN_CONTENT_CHARS = 250;
+    /**
+     * Share of an ancestor's subtree score below which the candidate is replaced by that ancestor.
+     */
+    private static final double MIN_MAIN_CONTENT_SHARE = 0.5;
+
+    private HtmlTextExtractor() {
+    }
+
+    /**
+     * Extracts the main content of the document. The document is modified: boilerplate elements are
+     * removed from it.
+     *
+     * @param document the parsed page.
+     * @return the main content, one paragraph per block separated by blank lines.
+     */
+    public static String extractMainText(Document document) {
+        Element body = document.body();
+        if (body == null) {
+            return "";
+        }
+        removeBoilerplate(body);
+
+        Element mainContent = findMainContent(body);
+        String text = toParagraphText(mainContent);
+        if (mainContent != body && text.length() < MIN_MAIN_CONTENT_CHARS) {
+            text = toParagraphText(body);
+        }
+        return text;
+    }
+
+    private static void removeBoilerplate(Element body) {
+        body.select(BOILERPLATE_TAGS).remove();
+        for (Element element : body.select("header, footer")) {
+            if (element.parent().closest(SECTIONING_CONTENT) == null) {
+                element.remove();
+            }
+        }
+        for (Element element : body.select("[class], [id]")) {
+            String name = element.className() + " " + element.id();
+            if (element != body && BOILERPLATE_NAME.matcher(name).find() && !CONTENT_NAME.matcher(name).find()) {
+                element.remove();
+            }
+        }
+    }
+
+    private static Element findMainContent(Element body) {
+        Element explicitContent = longest(body.select("main, article, [role=main]"));
+        if (explicitContent != null) {
+            return explicitContent;
+        }
+
+        Map<Element, Double> scores = new HashMap<>();
+        Map<Element, Double> subtreeScores = new HashMap<>();
+        for (Element paragraph : body.select(String.join(", ", PARAGRAPH_TAGS))) {
+            String text = paragraph.text();
+            if (text.length() < MIN_PARAGRAPH_CHARS) {
+                continue;
+            }
+            double score = 1 + countCommas(text) + Math.min(text.length() / 100, 3);
+            score *= 1 - linkDensity(paragraph, text.length());
+
+            Element parent = paragraph.parent();
+            if (parent != null) {
+                scores.merge(parent, score, Double::sum);
+                Element grandparent = parent.parent();
+                if (grandparent != null) {
+                    scores.merge(grandparent, score / 2, Double::sum);
+                }
+            }
+            for (Element ancestor = parent; ancestor != null; ancestor = ancestor.parent()) {
+                subtreeScores.merge(ancestor, score, Double::sum);
+            }
+        }
+
+        Element mainContent = scores.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(body);
+        // Content split into sibling blocks, such as the posts of a thread, spreads its score over the
+        // siblings; climb to the ancestor that holds most of it, up to the body.
+        for (Element ancestor = mainContent.parent(); ancestor != null && ancestor != body.parent(); ancestor = ancestor.parent()) {
+            if (subtreeScores.getOrDefault(mainContent, 0.0) < MIN_MAIN_CONTENT_SHARE * subtreeScores.getOrDefault(ancestor, 0.0)) {
+                mainContent = ancestor;
+            }
+        }
+        return mainContent;
+    }
+
+    private static Element longest(Elements elements) {
+        Element longest = null;
+        int longestLength = 0;
+        for (Element element : elements) {
+            int length = element.text().length();
+            if (length > longestLength) {
+                longest = element;
+                longestLength = length;
+            }
+        }
+        return longest;
+    }
+
+    private static double linkDensity(Element element, int textLength) {
+        if (textLength == 0) {
+            return 0;
+        }
+        int linkTextLength = 0;
+        for (Element link : element.select("a")) {
+            linkTextLength += link.text().length();
+        }
+        return Math.min(1.0, (double) linkTextLength / textLength);
+    }
+
+    private static int countCommas(String text) {
+        int commas = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == ',') {
+                commas++;
+            }
+        }
+        return commas;
+    }
+
+    /**
+     * Renders the element's text with a blank line between block elements and collapsed whitespace
+     * within each block.
+     */
+    private static String toParagraphText(Element root) {
+        StringBuilder text = new StringBuilder();
+        StringBuilder paragraph = new StringBuilder();
+        NodeTraversor.traverse(new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                if (node instanceof TextNode textNode) {
+                    appendCollapsed(paragraph, textNode.getWholeText());
+                } else if (node instanceof Element element && BLOCK_TAGS.contains(element.normalName())) {
+                    flushParagraph(text, paragraph);
+                    if ("li".equals(element.normalName())) {
+                        paragraph.append("- ");
+                    }
+                }
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+                if (node instanceof Element element && BLOCK_TAGS.contains(element.normalName())) {
+                    flushParagraph(text, paragraph);
+                }
+            }
+        }, root);
+        flushParagraph(text, paragraph);
+        return text.toString();
+    }
+
+    private static void appendCollapsed(StringBuilder paragraph, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || c == '\u00A0') {
+                if (!paragraph.isEmpty() && paragraph.charAt(paragraph.length() - 1) != ' ') {
+                    paragraph.append(' ');
+                }
+            } else {
+                paragraph.append(c);
+            }
+        }
+    }
+
+    private static void flushParagraph(StringBuilder text, StringBuilder paragraph) {
+        int end = paragraph.length();
+        while (end > 0 && paragraph.charAt(end - 1) == ' ') {
+            end--;
+        }
+        boolean emptyListItem = end == 1 && paragraph.charAt(0) == '-';
+        if (end > 0 && !emptyListItem) {
+            if (!text.isEmpty()) {
+                text.append("\n\n");
+            }
+            text.append(paragraph, 0, end);
+        }
+        paragraph.setLength(0);
+    }
+}
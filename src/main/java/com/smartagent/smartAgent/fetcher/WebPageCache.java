@@ -0,0 +1,199 @@
+package com.smartagent.smartAgent.fetcher;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartagent.smartAgent.utility.CacheUtility;
+import com.smartagent.smartAgent.utility.UrlUtility;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.HttpStatusException;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Cache of extracted web page text, keyed by normalized URL.
+ * <p>
+ * Entries are served as-is while they are younger than {@code web-page-cache-ttl-minutes}. Older
+ * entries are kept until {@code web-page-cache-max-age-minutes} and revalidated with
+ * {@code If-None-Match}/{@code If-Modified-Since}, so an unchanged page costs a 304 instead of a full
+ * download and parse. Concurrent requests for the same URL share one in-flight fetch, and wait for it
+ * at most {@code web-fetch-url-timeout-ms}. A fetch failing because the request that started it was
+ * cancelled is not shared: the waiting requests fetch the page again.
+ * </p>
+ * <p>
+ * Pages are downloaded by the {@link WebPageFetcher}, which caps their size. Only the main content of
+ * the page is kept, see {@link HtmlTextExtractor}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class WebPageCache {
+
+    @Value("${web-page-cache-max-entries:1000}")
+    private long maxEntries;
+
+    @Value("${web-page-cache-ttl-minutes:10}")
+    private long ttlMinutes;
+
+    @Value("${web-page-cache-max-age-minutes:1440}")
+    private long maxAgeMinutes;
+
+    @Value("${web-fetch-url-timeout-ms:10000}")
+    private long fetchTimeoutMillis;
+
+    @Autowired
+    private WebPageFetcher webPageFetcher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    private final ConcurrentHashMap<String, CompletableFuture<CachedWebPage>> inFlightFetches = new ConcurrentHashMap<>();
+
+    private Cache<String, CachedWebPage> cache;
+
+    @PostConstruct
+    void initCache() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMinutes(maxAgeMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "web-page");
+    }
+
+    /**
+     * Returns the text of the web page at the given URL, fetching or revalidating it when needed.
+     *
+     * @param url the URL of the page.
+     * @return the text of the page.
+     * @throws IOException if the page cannot be fetched.
+     */
+    public String getPageText(String url) throws IOException {
+        String key = UrlUtility.normalizeUrl(url);
+        CachedWebPage cachedPage = cache.getIfPresent(key);
+        if (cachedPage != null && cachedPage.fetchedAt().plus(Duration.ofMinutes(ttlMinutes)).isAfter(Instant.now())) {
+            return cachedPage.text();
+        }
+
+        CompletableFuture<CachedWebPage> fetch = new CompletableFuture<>();
+        CompletableFuture<CachedWebPage> inFlightFetch = inFlightFetches.putIfAbsent(key, fetch);
+        if (inFlightFetch != null) {
+            CachedWebPage page = awaitFetch(url, inFlightFetch);
+            // A fetch abandoned by its interrupted caller is started again
+            return page != null ? page.text() : getPageText(url);
+        }
+
+        try {
+            CachedWebPage page = fetchPage(url, cachedPage);
+            cache.put(key, page);
+            inFlightFetches.remove(key, fetch);
+            fetch.complete(page);
+            return page.text();
+        } catch (Throwable e) {
+            inFlightFetches.remove(key, fetch);
+            if (CacheUtility.isInterruption(e)) {
+                fetch.cancel(false);
+            } else {
+                fetch.completeExceptionally(e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Downloads the page, or revalidates the stale copy when one is available.
+     *
+     * @param url        the URL of the page.
+     * @param stalePage  the expired cache entry, or null if there is none.
+     * @return the fresh cache entry.
+     */
+    private CachedWebPage fetchPage(String url, CachedWebPage stalePage) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        if (stalePage != null && stalePage.etag() != null) {
+            headers.put("If-None-Match", stalePage.etag());
+        }
+        if (stalePage != null && stalePage.lastModified() != null) {
+            headers.put("If-Modified-Since", stalePage.lastModified());
+        }
+
+        WebPageResponse response = Observation.createNotStarted("agent.pipeline.fetch", observationRegistry)
+                .highCardinalityKeyValue("url", url)
+                .observeChecked(() -> webPageFetcher.fetch(url, headers));
+        if (response.statusCode() == 304 && stalePage != null) {
+            meterRegistry.counter("web.page.revalidations", "result", "not-modified").increment();
+            return new CachedWebPage(stalePage.text(), stalePage.etag(), stalePage.lastModified(), Instant.now());
+        }
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            throw new HttpStatusException("HTTP error fetching URL", response.statusCode(), url);
+        }
+        if (!response.isText()) {
+            throw new UnsupportedMimeTypeException("Unhandled content type", response.header("Content-Type").orElse(""), url);
+        }
+        if (stalePage != null) {
+            meterRegistry.counter("web.page.revalidations", "result", "modified").increment();
+        }
+
+        String text = Observation.createNotStarted("agent.pipeline.extract", observationRegistry)
+                .highCardinalityKeyValue("url", url)
+                .observeChecked(() -> HtmlTextExtractor.extractMainText(response.parse()));
+        return new CachedWebPage(text, response.header("ETag").orElse(null), response.header("Last-Modified").orElse(null), Instant.now());
+    }
+
+    /**
+     * @return the fetched page, or null if the fetch was abandoned because its thread was interrupted.
+     */
+    private CachedWebPage awaitFetch(String url, CompletableFuture<CachedWebPage> fetch) throws IOException {
+        try {
+            return fetch.get(fetchTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (CancellationException e) {
+            return null;
+        } catch (TimeoutException e) {
+            throw new SocketTimeoutException("Timed out waiting for an in-flight fetch of " + url);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an in-flight fetch");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * A cached page.
+     *
+     * @param text         the extracted text of the page.
+     * @param etag         the {@code ETag} response header, or null.
+     * @param lastModified the {@code Last-Modified} response header, or null.
+     * @param fetchedAt    when the page was last downloaded or revalidated.
+     */
+    private record CachedWebPage(String text, String etag, String lastModified, Instant fetchedAt) {
+    }
+}
@@ -0,0 +1,294 @@
+package com.smartagent.smartAgent.fetcher;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.brotli.dec.BrotliInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Downloads web pages over a shared, pooled {@link HttpClient}.
+ * <p>
+ * The client negotiates HTTP/2 where the server supports it and keeps connections alive between
+ * requests. On top of it the fetcher enforces:
+ * <ul>
+ *     <li>a limit on concurrent requests per host, so one slow site cannot take every slot;</li>
+ *     <li>a timeout until the response headers arrive, and a total timeout including the body;</li>
+ *     <li>a maximum body size, counted after decompression, beyond which the body is cut off;</li>
+ *     <li>{@code gzip}, {@code deflate} and {@code br} content encodings.</li>
+ * </ul>
+ * Requests run on the given executor; with virtual threads, waiting for a host permit or a response
+ * does not hold a platform thread, so hundreds of fetches can be in flight at once.
+ * </p>
+ */
+@Slf4j
+public class WebPageFetcher {
+
+    private static final String ACCEPT_ENCODING = "gzip, deflate, br";
+
+    private final HttpClient httpClient;
+    private final Executor executor;
+    private final String userAgent;
+    private final Duration responseTimeout;
+    private final Duration totalTimeout;
+    private final int maxBodyBytes;
+    private final int perHostConcurrency;
+
+    /**
+     * Per-host permits. An idle host's semaphore expires; if that happens while one of its requests is
+     * still running, the host can briefly exceed its limit by that request.
+     */
+    private final Cache<String, Semaphore> hostPermits = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+
+    /**
+     * @param httpClient         the shared client.
+     * @param executor           runs the requests, including waiting for a host permit.
+     * @param userAgent          the {@code User-Agent} header sent with every request.
+     * @param responseTimeout    the maximum time until the response headers arrive.
+     * @param totalTimeout       the maximum time for the whole request, including the body.
+     * @param maxBodyBytes       the maximum decoded body size.
+     * @param perHostConcurrency the maximum number of concurrent requests per host.
+     */
+    public WebPageFetcher(HttpClient httpClient, Executor executor, String userAgent, Duration responseTimeout,
+                          Duration totalTimeout, int maxBodyBytes, int perHostConcurrency) {
+        this.httpClient = httpClient;
+        this.executor = executor;
+        this.userAgent = userAgent;
+        this.responseTimeout = responseTimeout;
+        this.totalTimeout = totalTimeout;
+        this.maxBodyBytes = maxBodyBytes;
+        this.perHostConcurrency = perHostConcurrency;
+    }
+
+    /**
+     * Fetches a page asynchronously.
+     *
+     * @param url     the URL of the page.
+     * @param headers extra request headers, such as conditional request headers.
+     * @return the response, or a future failed with an {@link IOException}.
+     */
+    public CompletableFuture<WebPageResponse> fetchAsync(String url, Map<String, String> headers) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return fetch(url, headers);
+            } catch (IOException e) {
+                throw new FetchException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Fetches a page, blocking the calling thread until the response is complete.
+     *
+     * @param url     the URL of the page.
+     * @param headers extra request headers, such as conditional request headers.
+     * @return the response.
+     * @throws IOException if the page cannot be fetched within the timeouts.
+     */
+    public WebPageResponse fetch(String url, Map<String, String> headers) throws IOException {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid URL " + url, e);
+        }
+        if (uri.getHost() == null) {
+            throw new IOException("Invalid URL " + url);
+        }
+
+        long deadline = System.nanoTime() + totalTimeout.toNanos();
+        Semaphore permits = hostPermits.get(uri.getHost().toLowerCase(Locale.ROOT), host -> new Semaphore(perHostConcurrency));
+        try {
+            if (!permits.tryAcquire(remainingNanos(deadline), TimeUnit.NANOSECONDS)) {
+                throw new HttpTimeoutException("Timed out waiting for a connection slot to " + uri.getHost());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection slot");
+        }
+
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                    .timeout(responseTimeout)
+                    .header("User-Agent", userAgent)
+                    .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
+                    .header("Accept-Encoding", ACCEPT_ENCODING)
+                    .GET();
+            headers.forEach(request::header);
+
+            CompletableFuture<HttpResponse<CappedBody>> response = httpClient.sendAsync(request.build(), responseInfo -> new CappedBodySubscriber(maxBodyBytes));
+            try {
+                HttpResponse<CappedBody> httpResponse = response.get(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+                String contentEncoding = httpResponse.headers().firstValue("Content-Encoding").orElse("identity");
+                CappedBody body = decode(httpResponse.body(), contentEncoding);
+                return new WebPageResponse(httpResponse.uri().toString(), httpResponse.statusCode(), httpResponse.headers(), body.bytes(), body.truncated());
+            } catch (TimeoutException e) {
+                throw new HttpTimeoutException("Timed out fetching " + url);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while fetching " + url);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException ioException) {
+                    throw ioException;
+                }
+                throw new IOException("Error fetching " + url, e.getCause());
+            } finally {
+                response.cancel(true);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * Decodes a compressed body, stopping at the maximum body size. A body that was already cut off
+     * ends mid-stream, so a decoding error after it is treated as the end of the body.
+     */
+    private CappedBody decode(CappedBody body, String contentEncoding) throws IOException {
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        if (body.bytes().length == 0 || encoding.isEmpty() || encoding.equals("identity")) {
+            return body;
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(Math.min(body.bytes().length * 4, maxBodyBytes));
+        boolean truncated = body.truncated();
+        try (InputStream input = decodingStream(new ByteArrayInputStream(body.bytes()), encoding)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                if (output.size() + read > maxBodyBytes) {
+                    output.write(buffer, 0, maxBodyBytes - output.size());
+                    truncated = true;
+                    break;
+                }
+                output.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            if (!body.truncated()) {
+                throw e;
+            }
+            log.debug("Truncated {} body ended mid-stream: {}", encoding, e.getMessage());
+        }
+        return new CappedBody(output.toByteArray(), truncated);
+    }
+
+    private static InputStream decodingStream(InputStream input, String encoding) throws IOException {
+        return switch (encoding) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(input);
+            case "deflate" -> new InflaterInputStream(input);
+            case "br" -> new BrotliInputStream(input);
+            default -> throw new IOException("Unsupported content encoding " + encoding);
+        };
+    }
+
+    /**
+     * A response body, possibly cut off.
+     */
+    private record CappedBody(byte[] bytes, boolean truncated) {
+    }
+
+    /**
+     * Collects the body until it reaches the maximum size, then cancels the rest of the download.
+     */
+    private static final class CappedBodySubscriber implements HttpResponse.BodySubscriber<CappedBody> {
+
+        private final int maxBytes;
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final CompletableFuture<CappedBody> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        private CappedBodySubscriber(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public CompletionStage<CappedBody> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            for (ByteBuffer buffer : buffers) {
+                if (!buffer.hasRemaining()) {
+                    continue;
+                }
+                if (output.size() >= maxBytes) {
+                    subscription.cancel();
+                    result.complete(new CappedBody(output.toByteArray(), true));
+                    return;
+                }
+                byte[] bytes = new byte[Math.min(buffer.remaining(), maxBytes - output.size())];
+                buffer.get(bytes);
+                output.write(bytes, 0, bytes.length);
+                if (buffer.hasRemaining()) {
+                    subscription.cancel();
+                    result.complete(new CappedBody(output.toByteArray(), true));
+                    return;
+                }
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(new CappedBody(output.toByteArray(), false));
+        }
+    }
+
+    /**
+     * Carries an {@link IOException} out of {@link #fetchAsync(String, Map)}.
+     */
+    public static final class FetchException extends RuntimeException {
+
+        private FetchException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.smartagent.smartAgent.fetcher;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * A response downloaded by {@link WebPageFetcher}.
+ *
+ * @param url        the final URL, after redirects.
+ * @param statusCode the HTTP status code.
+ * @param headers    the response headers.
+ * @param body       the decoded body, cut off at the fetcher's maximum body size.
+ * @param truncated  whether the body was cut off.
+ */
+public record WebPageResponse(String url, int statusCode, HttpHeaders headers, byte[] body, boolean truncated) {
+
+    public Optional<String> header(String name) {
+        return headers.firstValue(name);
+    }
+
+    /**
+     * Whether the response declares an HTML, XML or plain text body, or no content type at all.
+     */
+    public boolean isText() {
+        String contentType = header("Content-Type").orElse("").toLowerCase(Locale.ROOT);
+        return contentType.isEmpty()
+                || contentType.startsWith("text/")
+                || contentType.contains("html")
+                || contentType.contains("xml");
+    }
+
+    /**
+     * Parses the body as HTML, using the charset of the {@code Content-Type} header if present and
+     * otherwise letting Jsoup detect it from the document.
+     *
+     * @return the parsed document.
+     * @throws IOException if the body cannot be decoded.
+     */
+    public Document parse() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(body), charset(), url);
+    }
+
+    private String charset() {
+        String contentType = header("Content-Type").orElse("");
+        for (String parameter : contentType.split(";")) {
+            String[] nameAndValue = parameter.trim().split("=", 2);
+            if (nameAndValue.length == 2 && nameAndValue[0].trim().equalsIgnoreCase("charset")) {
+                return nameAndValue[1].trim().replace("\"", "");
+            }
+        }
+        return null;
+    }
+}
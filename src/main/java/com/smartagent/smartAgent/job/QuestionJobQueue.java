@@ -0,0 +1,203 @@
+package com.smartagent.smartAgent.job;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartagent.smartAgent.concurrency.AgentConcurrencyGovernor;
+import com.smartagent.smartAgent.record.domain.QuestionJob;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Answers questions in the background.
+ * <p>
+ * Submitted questions wait in a bounded queue until one of a fixed number of workers is free. Each
+ * worker is a virtual thread, so the worker count bounds how many questions are answered at once,
+ * not how many threads block. When every worker is busy and the queue is full, a submission is
+ * rejected with a {@link RejectedExecutionException} instead of piling up more work.
+ * </p>
+ * <p>
+ * A worker answers its question through the {@link AgentConcurrencyGovernor}, like the synchronous
+ * endpoints, so a running job holds one of its question slots and is counted in its gauges, and the
+ * worker count only bounds the share of those slots background jobs may take. A worker waits for a
+ * slot for at most the answer timeout.
+ * </p>
+ * <p>
+ * A question that is not answered within the answer timeout, waiting for a slot included, is
+ * cancelled and its job fails, and so does a job whose answer throws anything, errors included, so
+ * every job completes.
+ * </p>
+ * <p>
+ * Jobs are kept for the result TTL after they were submitted, and again after they completed, so a
+ * finished job can be polled for that long. At most {@code maxJobs} jobs are kept; beyond that the
+ * least recently used ones are dropped.
+ * </p>
+ */
+@Slf4j
+public class QuestionJobQueue implements AutoCloseable {
+
+    private final BiFunction<String, String, String> answerer;
+    private final Consumer<QuestionJob> completionListener;
+    private final AgentConcurrencyGovernor governor;
+    private final ThreadPoolExecutor workers;
+    private final Duration answerTimeout;
+    private final Cache<String, JobEntry> jobs;
+    private final LongAdder rejectedJobs = new LongAdder();
+
+    /**
+     * @param answerer           answers a question, given the question and its conversation id.
+     * @param governor           admits the questions and runs them on their own threads.
+     * @param workerCount        the number of questions answered at once.
+     * @param queueCapacity      the number of questions that may wait for a worker.
+     * @param answerTimeout      how long a question may take before it is cancelled.
+     * @param resultTtl          how long a job is kept after it was submitted or completed.
+     * @param maxJobs            the maximum number of jobs kept.
+     * @param completionListener notified on the worker thread once a job succeeded or failed.
+     */
+    public QuestionJobQueue(BiFunction<String, String, String> answerer, AgentConcurrencyGovernor governor, int workerCount,
+                            int queueCapacity, Duration answerTimeout, Duration resultTtl, long maxJobs,
+                            Consumer<QuestionJob> completionListener) {
+        this.answerer = answerer;
+        this.governor = governor;
+        this.answerTimeout = answerTimeout;
+        this.completionListener = completionListener;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), Thread.ofVirtual().name("question-job-", 0).factory());
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterWrite(resultTtl)
+                .maximumSize(maxJobs)
+                .build();
+    }
+
+    /**
+     * Queues a question.
+     *
+     * @param question       the question to answer.
+     * @param conversationId the conversation the question belongs to, or null for a one-off question.
+     * @param callbackUrl    the URL the finished job is posted to, or null.
+     * @return the queued job.
+     * @throws RejectedExecutionException if every worker is busy and the queue is full.
+     */
+    public QuestionJob submit(String question, String conversationId, URI callbackUrl) {
+        QuestionJob job = QuestionJob.queued(UUID.randomUUID().toString(), question, conversationId, callbackUrl, Instant.now());
+        JobEntry entry = new JobEntry(job);
+        jobs.put(job.id(), entry);
+        try {
+            workers.execute(() -> run(entry));
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.id());
+            rejectedJobs.increment();
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * @param jobId the id of the job.
+     * @return the current state of the job, or empty if it is unknown or expired.
+     */
+    public Optional<QuestionJob> get(String jobId) {
+        return Optional.ofNullable(jobs.getIfPresent(jobId)).map(entry -> entry.job);
+    }
+
+    /**
+     * @param jobId the id of the job.
+     * @return a future completed with the job once it succeeded or failed, or empty if it is unknown or expired.
+     */
+    public Optional<CompletableFuture<QuestionJob>> completion(String jobId) {
+        return Optional.ofNullable(jobs.getIfPresent(jobId)).map(entry -> entry.completion);
+    }
+
+    /**
+     * @return the number of questions waiting for a worker.
+     */
+    public int queuedJobs() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * @return the number of questions being answered.
+     */
+    public int activeJobs() {
+        return workers.getActiveCount();
+    }
+
+    /**
+     * @return the number of questions rejected since startup.
+     */
+    public long rejectedJobs() {
+        return rejectedJobs.sum();
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    private void run(JobEntry entry) {
+        entry.job = entry.job.running();
+        QuestionJob completedJob;
+        Future<String> answer = null;
+        try {
+            QuestionJob job = entry.job;
+            long deadline = System.nanoTime() + answerTimeout.toNanos();
+            answer = governor.submit(1, answerTimeout, () -> answerer.apply(job.question(), job.conversationId()));
+            completedJob = job.succeeded(answer.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS), Instant.now());
+        } catch (TimeoutException e) {
+            log.warn("Cancelling question job {} that exceeded the timeout of {} ms", entry.job.id(), answerTimeout.toMillis());
+            completedJob = entry.job.failed("The question exceeded the timeout of " + answerTimeout.toMillis() + " ms", Instant.now());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            completedJob = entry.job.failed("The question was cancelled", Instant.now());
+        } catch (ExecutionException e) {
+            completedJob = failed(entry.job, e.getCause());
+        } catch (Throwable e) {
+            completedJob = failed(entry.job, e);
+        } finally {
+            if (answer != null) {
+                answer.cancel(true);
+            }
+        }
+        entry.job = completedJob;
+        jobs.put(completedJob.id(), entry);
+        entry.completion.complete(completedJob);
+        try {
+            completionListener.accept(completedJob);
+        } catch (RuntimeException e) {
+            log.error("Error notifying the completion of question job {}: {}", completedJob.id(), e.getMessage(), e);
+        }
+    }
+
+    private static QuestionJob failed(QuestionJob job, Throwable error) {
+        log.error("Question job {} failed: {}", job.id(), error.getMessage());
+        return job.failed(error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName(), Instant.now());
+    }
+
+    /**
+     * The latest state of a job and the future completed when it is done.
+     */
+    private static final class JobEntry {
+
+        private final CompletableFuture<QuestionJob> completion = new CompletableFuture<>();
+        private volatile QuestionJob job;
+
+        private JobEntry(QuestionJob job) {
+            this.job = job;
+        }
+    }
+}
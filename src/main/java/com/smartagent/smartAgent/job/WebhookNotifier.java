@@ -0,0 +1,113 @@
+package com.smartagent.smartAgent.job;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Posts JSON payloads to webhook URLs.
+ * <p>
+ * Only {@code http} and {@code https} URLs on an allowed host are accepted, by default only the local
+ * machine, so the webhook cannot be used to make the server call arbitrary addresses. A delivery that
+ * fails or gets a non-2xx response is retried with a growing delay, up to {@link #MAX_ATTEMPTS} times.
+ * Deliveries are asynchronous and never block the caller.
+ * </p>
+ */
+@Slf4j
+public class WebhookNotifier {
+
+    static final int MAX_ATTEMPTS = 3;
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Set<String> allowedHosts;
+    private final Duration timeout;
+    private final Duration retryDelay;
+
+    /**
+     * @param httpClient   the client posting the payloads.
+     * @param objectMapper serializes the payloads.
+     * @param allowedHosts the hosts webhooks may point to.
+     * @param timeout      the maximum time for one delivery attempt.
+     * @param retryDelay   the delay before the second attempt, doubled for every further attempt.
+     */
+    public WebhookNotifier(HttpClient httpClient, ObjectMapper objectMapper, Set<String> allowedHosts, Duration timeout, Duration retryDelay) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.allowedHosts = allowedHosts.stream()
+                .map(host -> host.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+        this.timeout = timeout;
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Checks that a webhook URL may be used.
+     *
+     * @param url the webhook URL.
+     * @throws IllegalArgumentException if the URL is not an {@code http} or {@code https} URL on an allowed host.
+     */
+    public void validate(URI url) {
+        String scheme = url.getScheme() == null ? "" : url.getScheme().toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            throw new IllegalArgumentException("Webhook URL must use http or https");
+        }
+        if (url.getHost() == null || !allowedHosts.contains(url.getHost().toLowerCase(Locale.ROOT))) {
+            throw new IllegalArgumentException("Webhook host " + url.getHost() + " is not allowed");
+        }
+    }
+
+    /**
+     * Posts the payload as JSON.
+     *
+     * @param url     the webhook URL, checked with {@link #validate(URI)}.
+     * @param payload the object to post.
+     * @return a future completed with whether the webhook accepted the payload.
+     */
+    public CompletableFuture<Boolean> deliver(URI url, Object payload) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            log.error("Unable to serialize webhook payload: {}", e.getMessage());
+            return CompletableFuture.completedFuture(false);
+        }
+        return attempt(url, body, 1);
+    }
+
+    private CompletableFuture<Boolean> attempt(URI url, byte[] body, int attempt) {
+        HttpRequest request = HttpRequest.newBuilder(url)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    if (error == null && response.statusCode() / 100 == 2) {
+                        return true;
+                    }
+                    log.warn("Webhook delivery {} of {} to {} failed: {}", attempt, MAX_ATTEMPTS, url,
+                            error != null ? error.getMessage() : "status " + response.statusCode());
+                    return false;
+                })
+                .thenCompose(delivered -> {
+                    if (delivered || attempt >= MAX_ATTEMPTS) {
+                        return CompletableFuture.completedFuture(delivered);
+                    }
+                    long delayMillis = retryDelay.toMillis() << (attempt - 1);
+                    return CompletableFuture.supplyAsync(() -> attempt + 1, CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS))
+                            .thenCompose(nextAttempt -> attempt(url, body, nextAttempt));
+                });
+    }
+}
@@ -0,0 +1,12 @@
+package com.smartagent.smartAgent.mapper;
+
+import com.smartagent.smartAgent.record.domain.QuestionJob;
+import com.smartagent.smartAgent.record.dto.response.QuestionJobDto;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring")
+public interface QuestionJobMapper {
+    @Mapping(target = "jobId", source = "id")
+    QuestionJobDto mapQuestionJobToQuestionJobDto(QuestionJob job);
+}
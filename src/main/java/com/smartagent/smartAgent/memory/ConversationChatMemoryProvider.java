@@ -0,0 +1,69 @@
+package com.smartagent.smartAgent.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * {@link ChatMemoryProvider} that keeps a separate message window per conversation.
+ * <p>
+ * Each conversation id gets its own {@link MessageWindowChatMemory} of at most
+ * {@code chat-memory-max-messages} messages, so a prompt only carries its own conversation's history.
+ * Conversations idle for longer than {@code chat-memory-idle-minutes} are dropped, and at most
+ * {@code chat-memory-max-conversations} are kept at once.
+ * </p>
+ */
+@Component
+public class ConversationChatMemoryProvider implements ChatMemoryProvider {
+
+    @Value("${chat-memory-max-messages:20}")
+    private int maxMessages;
+
+    @Value("${chat-memory-idle-minutes:30}")
+    private long idleMinutes;
+
+    @Value("${chat-memory-max-conversations:10000}")
+    private long maxConversations;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<Object, ChatMemory> chatMemories;
+
+    @PostConstruct
+    void initCache() {
+        chatMemories = Caffeine.newBuilder()
+                .maximumSize(maxConversations)
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, chatMemories, "chat-memory");
+    }
+
+    @Override
+    public ChatMemory get(Object memoryId) {
+        return chatMemories.get(memoryId, id -> MessageWindowChatMemory.builder()
+                .id(id)
+                .maxMessages(maxMessages)
+                .build());
+    }
+
+    /**
+     * Drops the memory of a conversation that will not be continued.
+     *
+     * @param memoryId the conversation id.
+     */
+    public void evict(Object memoryId) {
+        chatMemories.invalidate(memoryId);
+    }
+}
@@ -0,0 +1,106 @@
+package com.smartagent.smartAgent.model;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.smartagent.smartAgent.store.EmbeddingFileCache;
+import com.smartagent.smartAgent.utility.HashUtility;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link EmbeddingModel} decorator that caches vectors by a hash of the model name and the text.
+ * <p>
+ * Vectors are kept as primitive {@code float[]} in a bounded in-memory cache, optionally backed by an
+ * {@link EmbeddingFileCache} that survives restarts. Only the texts missing from both tiers are sent to
+ * the delegate, in a single {@link #embedAll(List)} call. Hit, miss and eviction counts are recorded by
+ * the in-memory cache.
+ * </p>
+ * <p>
+ * Vectors read from disk must have the dimension of the delegate, which is asked once and then
+ * remembered, or taken from the first vector it computes.
+ * </p>
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final String modelName;
+    private final Cache<String, float[]> cache;
+    private final EmbeddingFileCache fileCache;
+    private volatile int dimension;
+
+    /**
+     * @param delegate  the model computing embeddings on a cache miss.
+     * @param modelName the delegate's model name, part of every cache key.
+     * @param cache     the in-memory cache of vectors.
+     * @param fileCache the on-disk tier, or null to keep the cache in memory only.
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, String modelName, Cache<String, float[]> cache, EmbeddingFileCache fileCache) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.cache = cache;
+        this.fileCache = fileCache;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        List<String> keys = textSegments.stream()
+                .map(segment -> HashUtility.sha256Hex(modelName, segment.text()))
+                .toList();
+
+        Map<String, float[]> vectors = new LinkedHashMap<>(cache.getAllPresent(keys));
+        Map<String, TextSegment> missingSegments = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            if (vectors.containsKey(key) || missingSegments.containsKey(key)) {
+                continue;
+            }
+            float[] vector = fileCache == null ? null : fileCache.get(key, dimension());
+            if (vector != null) {
+                cache.put(key, vector);
+                vectors.put(key, vector);
+            } else {
+                missingSegments.put(key, textSegments.get(i));
+            }
+        }
+
+        TokenUsage tokenUsage = null;
+        if (!missingSegments.isEmpty()) {
+            Response<List<Embedding>> response = delegate.embedAll(new ArrayList<>(missingSegments.values()));
+            tokenUsage = response.tokenUsage();
+            int i = 0;
+            for (String key : missingSegments.keySet()) {
+                float[] vector = response.content().get(i++).vector();
+                if (dimension == 0) {
+                    dimension = vector.length;
+                }
+                cache.put(key, vector);
+                if (fileCache != null) {
+                    fileCache.put(key, vector);
+                }
+                vectors.put(key, vector);
+            }
+        }
+
+        List<Embedding> embeddings = keys.stream()
+                .map(key -> Embedding.from(vectors.get(key).clone()))
+                .toList();
+        return Response.from(embeddings, tokenUsage);
+    }
+
+    @Override
+    public int dimension() {
+        int knownDimension = dimension;
+        if (knownDimension == 0) {
+            knownDimension = delegate.dimension();
+            dimension = knownDimension;
+        }
+        return knownDimension;
+    }
+}
@@ -0,0 +1,112 @@
+package com.smartagent.smartAgent.model;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * {@link StreamingChatLanguageModel} decorator that stops a streamed answer once it is cancelled.
+ * <p>
+ * A {@link dev.langchain4j.service.TokenStream} cannot be stopped once started: its model keeps
+ * streaming, and every tool call it asks for starts another model request. Once cancelled, this
+ * decorator drops the remaining responses of the current request, so the tool loop does not continue,
+ * and fails any new request without sending it. The HTTP response already in flight is read to its
+ * end by the delegate.
+ * </p>
+ */
+public class CancellableStreamingChatModel implements StreamingChatLanguageModel {
+
+    private final StreamingChatLanguageModel delegate;
+    private final BooleanSupplier cancelled;
+
+    /**
+     * @param delegate  the model streaming the answer.
+     * @param cancelled true once the answer is no longer wanted.
+     */
+    public CancellableStreamingChatModel(StreamingChatLanguageModel delegate, BooleanSupplier cancelled) {
+        this.delegate = delegate;
+        this.cancelled = cancelled;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        if (cancelled.getAsBoolean()) {
+            handler.onError(new CancellationException("The answer was cancelled"));
+            return;
+        }
+        delegate.chat(chatRequest, new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                if (!cancelled.getAsBoolean()) {
+                    handler.onPartialResponse(partialResponse);
+                }
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                if (!cancelled.getAsBoolean()) {
+                    handler.onCompleteResponse(completeResponse);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                if (!cancelled.getAsBoolean()) {
+                    handler.onError(error);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void generate(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+        if (cancelled.getAsBoolean()) {
+            handler.onError(new CancellationException("The answer was cancelled"));
+            return;
+        }
+        delegate.generate(messages, new StreamingResponseHandler<>() {
+            @Override
+            public void onNext(String token) {
+                if (!cancelled.getAsBoolean()) {
+                    handler.onNext(token);
+                }
+            }
+
+            @Override
+            public void onComplete(Response<AiMessage> response) {
+                if (!cancelled.getAsBoolean()) {
+                    handler.onComplete(response);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                if (!cancelled.getAsBoolean()) {
+                    handler.onError(error);
+                }
+            }
+        });
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
@@ -0,0 +1,69 @@
+package com.smartagent.smartAgent.observability;
+
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChatModelListener} recording the calls made to a chat model.
+ * <p>
+ * Every call is timed in {@code llm.requests}, tagged with the model and whether it succeeded, and
+ * the input and output tokens reported by the provider are added to {@code llm.tokens}.
+ * </p>
+ */
+public class MeteredChatModelListener implements ChatModelListener {
+
+    private static final String START_TIME_ATTRIBUTE = MeteredChatModelListener.class.getName() + ".start";
+
+    private final MeterRegistry meterRegistry;
+
+    public MeteredChatModelListener(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void onRequest(ChatModelRequestContext requestContext) {
+        requestContext.attributes().put(START_TIME_ATTRIBUTE, System.nanoTime());
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext responseContext) {
+        String model = responseContext.response().model() != null
+                ? responseContext.response().model()
+                : responseContext.request().model();
+        recordDuration(responseContext.attributes().get(START_TIME_ATTRIBUTE), model, "success");
+
+        TokenUsage tokenUsage = responseContext.response().tokenUsage();
+        if (tokenUsage != null) {
+            recordTokens(model, "input", tokenUsage.inputTokenCount());
+            recordTokens(model, "output", tokenUsage.outputTokenCount());
+        }
+    }
+
+    @Override
+    public void onError(ChatModelErrorContext errorContext) {
+        recordDuration(errorContext.attributes().get(START_TIME_ATTRIBUTE), errorContext.request().model(), "error");
+    }
+
+    private void recordDuration(Object startTime, String model, String outcome) {
+        if (startTime instanceof Long startNanos) {
+            Timer.builder("llm.requests")
+                    .tag("model", String.valueOf(model))
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void recordTokens(String model, String type, Integer tokenCount) {
+        if (tokenCount != null) {
+            meterRegistry.counter("llm.tokens", "model", String.valueOf(model), "type", type).increment(tokenCount);
+        }
+    }
+}
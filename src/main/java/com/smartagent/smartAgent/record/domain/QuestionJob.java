@@ -0,0 +1,46 @@
+package com.smartagent.smartAgent.record.domain;
+
+import java.net.URI;
+import java.time.Instant;
+
+/**
+ * A question answered in the background. Each change of status produces a new instance.
+ *
+ * @param id             the id of the job.
+ * @param question       the question to answer.
+ * @param conversationId the conversation the question belongs to, or null for a one-off question.
+ * @param callbackUrl    the URL the finished job is posted to, or null.
+ * @param status         the status of the job.
+ * @param answer         the answer, once the job succeeded.
+ * @param error          the reason of the failure, once the job failed.
+ * @param submittedAt    when the job was submitted.
+ * @param completedAt    when the job succeeded or failed.
+ */
+public record QuestionJob(
+        String id,
+        String question,
+        String conversationId,
+        URI callbackUrl,
+        QuestionJobStatus status,
+        String answer,
+        String error,
+        Instant submittedAt,
+        Instant completedAt
+) {
+
+    public static QuestionJob queued(String id, String question, String conversationId, URI callbackUrl, Instant submittedAt) {
+        return new QuestionJob(id, question, conversationId, callbackUrl, QuestionJobStatus.QUEUED, null, null, submittedAt, null);
+    }
+
+    public QuestionJob running() {
+        return new QuestionJob(id, question, conversationId, callbackUrl, QuestionJobStatus.RUNNING, null, null, submittedAt, null);
+    }
+
+    public QuestionJob succeeded(String answer, Instant completedAt) {
+        return new QuestionJob(id, question, conversationId, callbackUrl, QuestionJobStatus.SUCCEEDED, answer, null, submittedAt, completedAt);
+    }
+
+    public QuestionJob failed(String error, Instant completedAt) {
+        return new QuestionJob(id, question, conversationId, callbackUrl, QuestionJobStatus.FAILED, null, error, submittedAt, completedAt);
+    }
+}
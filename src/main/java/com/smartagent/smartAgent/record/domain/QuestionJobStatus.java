@@ -0,0 +1,15 @@
+package com.smartagent.smartAgent.record.domain;
+
+/**
+ * The stages of a {@link QuestionJob}.
+ */
+public enum QuestionJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED;
+
+    public boolean isDone() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
@@ -0,0 +1,11 @@
+package com.smartagent.smartAgent.record.dto.request;
+
+import java.util.List;
+
+/**
+ * A data transfer object (DTO) for representing a batch of questions.
+ *
+ * @param questions the one-off questions to answer together.
+ */
+public record WebSearchBatchRequestDto(List<String> questions) {
+}
@@ -0,0 +1,10 @@
+package com.smartagent.smartAgent.record.dto.response;
+
+/**
+ * A data transfer object (DTO) for representing progress events of a streamed web search.
+ *
+ * @param stage  the pipeline stage that completed, such as {@code SEARCH}, {@code FETCH} or {@code FILTER}.
+ * @param detail a short description of the event.
+ */
+public record AgentProgressEventDto(String stage, String detail) {
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.smartagent.smartAgent.record.dto.response;
+
+import java.time.Instant;
+
+/**
+ * A data transfer object (DTO) for representing the state of an asynchronous question.
+ *
+ * @param jobId       the id to poll the job with.
+ * @param status      {@code QUEUED}, {@code RUNNING}, {@code SUCCEEDED} or {@code FAILED}.
+ * @param answer      the answer, once the job succeeded.
+ * @param error       the reason the job failed or was not accepted.
+ * @param submittedAt when the job was submitted.
+ * @param completedAt when the job succeeded or failed.
+ */
+public record QuestionJobDto(String jobId, String status, String answer, String error, Instant submittedAt, Instant completedAt) {
+
+    public static QuestionJobDto rejected(String error) {
+        return new QuestionJobDto(null, null, null, error, null, null);
+    }
+}
@@ -0,0 +1,10 @@
+package com.smartagent.smartAgent.record.dto.response;
+
+/**
+ * A data transfer object (DTO) for representing the answer to one question of a batch.
+ *
+ * @param question the question, as submitted.
+ * @param answer   the response message from the web search operation, or an error message.
+ */
+public record WebSearchBatchAnswerDto(String question, String answer) {
+}
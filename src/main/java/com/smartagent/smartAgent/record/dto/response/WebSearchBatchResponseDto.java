@@ -0,0 +1,16 @@
+package com.smartagent.smartAgent.record.dto.response;
+
+import java.util.List;
+
+/**
+ * A data transfer object (DTO) for representing the answers to a batch of questions.
+ *
+ * @param answers the answers, in the order of the submitted questions.
+ * @param error   the reason the whole batch failed, or null.
+ */
+public record WebSearchBatchResponseDto(List<WebSearchBatchAnswerDto> answers, String error) {
+
+    public static WebSearchBatchResponseDto failed(String error) {
+        return new WebSearchBatchResponseDto(List.of(), error);
+    }
+}
@@ -0,0 +1,26 @@
+package com.smartagent.smartAgent.retriever;
+
+/**
+ * Receives progress events from {@link PreprocessingContentRetriever}.
+ * <p>
+ * Events for different search hits are reported from different threads, so implementations must be
+ * thread-safe.
+ * </p>
+ */
+@FunctionalInterface
+public interface PipelineProgressListener {
+
+    /**
+     * A listener that ignores every event.
+     */
+    PipelineProgressListener NONE = (stage, detail) -> {
+    };
+
+    /**
+     * Called when a stage of the pipeline completes for a query or a search hit.
+     *
+     * @param stage  the completed stage.
+     * @param detail a short human-readable description, such as the fetched URL.
+     */
+    void onProgress(PipelineStage stage, String detail);
+}
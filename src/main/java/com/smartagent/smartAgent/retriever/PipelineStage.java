@@ -0,0 +1,10 @@
+package com.smartagent.smartAgent.retriever;
+
+/**
+ * Stages of the web search pipeline reported to a {@link PipelineProgressListener}.
+ */
+public enum PipelineStage {
+    SEARCH,
+    FETCH,
+    FILTER
+}
@@ -2,26 +2,36 @@ package com.smartagent.smartAgent.retriever;
 
 import com.smartagent.smartAgent.service.impl.DataIngestionServiceImpl;
 import com.smartagent.smartAgent.utility.CommonUtility;
-import dev.langchain4j.data.document.Document;
+import com.smartagent.smartAgent.utility.SentenceSegmenter;
+import com.smartagent.smartAgent.utility.TokenAccountant;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.rag.content.retriever.WebSearchContentRetriever;
 import dev.langchain4j.rag.query.Query;
 import io.micrometer.common.util.StringUtils;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import static com.smartagent.smartAgent.utility.CommonUtility.MAX_TOKEN_SIZE;
 import static com.smartagent.smartAgent.utility.CommonUtility.MAX_TOKEN_SIZE_FOR_EMBEDDING;
 
 /**
@@ -40,12 +50,37 @@ public class PreprocessingContentRetriever implements ContentRetriever {
     @Autowired
     private CommonUtility commonUtility;
 
+    @Autowired
+    private TokenAccountant tokenAccountant;
+
     @Autowired
     private WebSearchContentRetriever webSearchContentRetriever;
 
     @Autowired
     private DataIngestionServiceImpl dataIngestionService;
 
+    @Autowired
+    @Qualifier("webContentExecutor")
+    private ExecutorService webContentExecutor;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    @Value("${context-token-budget:8000}")
+    private int contextTokenBudget;
+
+    @Value("${embedding-window-max-tokens:512}")
+    private int embeddingWindowMaxTokens;
+
+    @Value("${web-fetch-concurrency:8}")
+    private int webFetchConcurrency;
+
+    @Value("${web-fetch-url-timeout-ms:10000}")
+    private long urlTimeoutMillis;
+
+    @Value("${web-fetch-total-timeout-ms:20000}")
+    private long totalTimeoutMillis;
+
     /**
      * Retrieves and preprocesses content based on the provided query.
      *
@@ -54,15 +89,42 @@ public class PreprocessingContentRetriever implements ContentRetriever {
      */
     @Override
     public List<Content> retrieve(Query query) {
+        return retrieve(query, PipelineProgressListener.NONE);
+    }
+
+    /**
+     * Retrieves and preprocesses content based on the provided query, reporting progress as each
+     * stage completes.
+     * <p>
+     * When the retrieved content exceeds {@code context-token-budget}, only the most relevant content
+     * that fits in the budget is returned.
+     * </p>
+     * <p>
+     * The call is observed as {@code agent.pipeline.retrieve}, with a child observation for each stage:
+     * {@code search}, {@code fetch} and {@code extract} per URL, {@code tokenize}, {@code embedding},
+     * {@code vector-search} and {@code filter}. Each is exported as a timer and a trace span. Spans
+     * record the length of the query, never its text, which may contain personal data.
+     * </p>
+     *
+     * @param query            the {@link Query} for which content needs to be retrieved and processed.
+     * @param progressListener the listener notified after the search and after each hit is fetched and filtered.
+     * @return a list of {@link Content} objects that meet the query's requirements.
+     */
+    public List<Content> retrieve(Query query, PipelineProgressListener progressListener) {
+        return Observation.createNotStarted("agent.pipeline.retrieve", observationRegistry)
+                .highCardinalityKeyValue("query.length", String.valueOf(query.text().length()))
+                .observe(() -> retrieveAndPack(query, progressListener));
+    }
+
+    private List<Content> retrieveAndPack(Query query, PipelineProgressListener progressListener) {
         try {
-            List<Content> webContents = getWebContents(query);
+            List<Content> webContents = getWebContents(query, progressListener);
 
             int totalTokenCount = commonUtility.calculateTokenCount(webContents);
 
-            if (totalTokenCount > MAX_TOKEN_SIZE) {
-                log.warn("Total token count exceeds the maximum limit. Consider reducing data.");
-                // Uncomment below if token reduction logic is implemented
-                // webContents = commonUtility.reduceTokenCount(query, webContents);
+            if (totalTokenCount > contextTokenBudget) {
+                log.debug("Total token count {} exceeds the context budget of {}, packing the most relevant content", totalTokenCount, contextTokenBudget);
+                webContents = commonUtility.packContentsUnderTokenBudget(webContents, contextTokenBudget);
             }
 
             return webContents;
@@ -74,24 +136,125 @@ public class PreprocessingContentRetriever implements ContentRetriever {
 
     /**
      * Fetches web content and applies preprocessing steps.
+     * <p>
+     * Every search hit is fetched and filtered on its own virtual thread, with at most
+     * {@code web-fetch-concurrency} pages of this question being downloaded at once. The limit bounds
+     * the fan-out of one question, not of the node: the questions answered at once are bounded by the
+     * {@code AgentConcurrencyGovernor}, and the downloads per host by {@code web-fetch-per-host-concurrency}.
+     * A hit that does not finish within the per-URL timeout, or before the total timeout of the whole
+     * call, is dropped. The results keep
+     * the rank order of the search hits. When the calling thread is interrupted, for instance because
+     * the question was abandoned, the pending hits are cancelled and the interrupt is kept, so that the
+     * caller stops as well. Searches are run once per {@link SharedRetrievalScope}.
+     * </p>
      *
-     * @param query the query for retrieving web content.
+     * @param query            the query for retrieving web content.
+     * @param progressListener the listener notified as stages complete.
      * @return a list of preprocessed {@link Content} objects.
      */
     @NotNull
-    private List<Content> getWebContents(@NotNull Query query) {
+    private List<Content> getWebContents(@NotNull Query query, PipelineProgressListener progressListener) {
+        List<Future<Content>> futures = Collections.emptyList();
+        Semaphore fetchPermits = new Semaphore(webFetchConcurrency);
         try {
-            List<Content> contents = webSearchContentRetriever.retrieve(query);
-
-            return contents.stream()
-                    .map(commonUtility::extractWebPageContentFromUrl)
-                    .map(extractedContent -> processExtractedContent(query, extractedContent))
-                    .filter(Objects::nonNull)
-                    .filter(content -> StringUtils.isNotBlank(content.textSegment().text()))
-                    .collect(Collectors.toList());
+            List<Content> contents = Observation.createNotStarted("agent.pipeline.search", observationRegistry)
+                    .observe(() -> SharedRetrievalScope.current().searchResults(query.text(), () -> webSearchContentRetriever.retrieve(query)));
+            progressListener.onProgress(PipelineStage.SEARCH, "Found " + contents.size() + " results for: " + query.text());
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(totalTimeoutMillis);
+
+            futures = contents.stream()
+                    .map(content -> webContentExecutor.submit(() -> fetchAndProcessContent(query, content, fetchPermits, progressListener)))
+                    .toList();
+
+            List<Content> webContents = new ArrayList<>();
+            for (Future<Content> future : futures) {
+                Content content = awaitContent(future, deadline);
+                if (content != null && StringUtils.isNotBlank(content.textSegment().text())) {
+                    webContents.add(content);
+                }
+            }
+            return webContents;
+        } catch (InterruptedException e) {
+            log.debug("Web content retrieval for {} was cancelled", query.text());
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
         } catch (Exception e) {
             log.error("Error while fetching web contents: {}", e.getMessage(), e);
             return Collections.emptyList();
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Waits for a single search hit to be processed, but never past the total deadline.
+     *
+     * @param future   the pending result of {@link #fetchAndProcessContent(Query, Content, Semaphore, PipelineProgressListener)}.
+     * @param deadline the {@link System#nanoTime()} value at which the whole call gives up.
+     * @return the processed {@link Content}, or null if it failed or missed the deadline.
+     */
+    private Content awaitContent(Future<Content> future, long deadline) throws InterruptedException {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Dropping web content that missed the total deadline of {} ms", totalTimeoutMillis);
+            return null;
+        } catch (ExecutionException e) {
+            log.error("Error while processing web content: {}", e.getCause().getMessage(), e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Downloads and filters a single search hit once a fetch permit is available.
+     * <p>
+     * The work runs on a child virtual thread so it can be abandoned when the per-URL timeout
+     * elapses; the timeout starts when the permit is acquired, not when the hit was submitted. The
+     * permit only covers the download: it is released before the page is filtered by the model, so
+     * the next page downloads meanwhile.
+     * </p>
+     *
+     * @param query            the query for which the content is processed.
+     * @param content          the search hit containing the URL to fetch.
+     * @param fetchPermits     the download permits of the question.
+     * @param progressListener the listener notified once the hit is fetched and once it is filtered.
+     * @return the processed {@link Content}, or null if it failed or timed out.
+     */
+    private Content fetchAndProcessContent(Query query, Content content, Semaphore fetchPermits, PipelineProgressListener progressListener) throws InterruptedException {
+        String url = content.textSegment().metadata().getString("url");
+        fetchPermits.acquire();
+        AtomicBoolean holdingPermit = new AtomicBoolean(true);
+        Runnable releasePermit = () -> {
+            if (holdingPermit.compareAndSet(true, false)) {
+                fetchPermits.release();
+            }
+        };
+        try {
+            Future<Content> future = webContentExecutor.submit(() -> {
+                Content extractedContent;
+                try {
+                    extractedContent = commonUtility.extractWebPageContentFromUrl(content);
+                } finally {
+                    releasePermit.run();
+                }
+                progressListener.onProgress(PipelineStage.FETCH, url);
+                Content processedContent = processExtractedContent(query, extractedContent);
+                progressListener.onProgress(PipelineStage.FILTER, url);
+                return processedContent;
+            });
+            try {
+                return future.get(urlTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                log.warn("Dropping {} after exceeding the per-URL timeout of {} ms", url, urlTimeoutMillis);
+                return null;
+            } catch (ExecutionException e) {
+                log.error("Error while processing web content: {}", e.getCause().getMessage(), e.getCause());
+                return null;
+            } finally {
+                future.cancel(true);
+            }
+        } finally {
+            releasePermit.run();
         }
     }
 
@@ -104,13 +267,13 @@ public class PreprocessingContentRetriever implements ContentRetriever {
      */
     private Content processExtractedContent(Query query, Content extractedContent) {
         try {
-            int tokenCount = commonUtility.calculateTokenCount(extractedContent);
-            if (tokenCount > MAX_TOKEN_SIZE_FOR_EMBEDDING) {
-                String refactoredText = filterDataWithEmbedding(query, extractedContent);
-                if (StringUtils.isBlank(refactoredText)) {
+            TokenAccountant.TokenizedText tokenizedText = Observation.createNotStarted("agent.pipeline.tokenize", observationRegistry)
+                    .observe(() -> tokenAccountant.tokenize(extractedContent.textSegment().text()));
+            if (tokenizedText.tokenCount() > MAX_TOKEN_SIZE_FOR_EMBEDDING) {
+                Content content = filterDataWithEmbedding(query, extractedContent, tokenizedText);
+                if (content == null) {
                     return null;
                 }
-                Content content = Content.from(new TextSegment(refactoredText, extractedContent.textSegment().metadata()));
                 return commonUtility.filterRelevantData(query, content);
             }
             return commonUtility.filterRelevantData(query, extractedContent);
@@ -122,74 +285,37 @@ public class PreprocessingContentRetriever implements ContentRetriever {
 
     /**
      * Filters and refines data using embedding techniques.
+     * <p>
+     * The text is split into sentence groups of at most {@code embedding-window-max-tokens} tokens in one
+     * pass over the text, see {@link SentenceSegmenter}. The groups are ranked against the query in an
+     * index that only exists for this call. The score of the best group becomes the
+     * {@link ContentMetadata#SCORE} of the refined content, by which it is ranked against the other hits.
+     * </p>
      *
      * @param query            the query for which content is being filtered.
      * @param extractedContent the extracted content.
-     * @return a refined string representation of the content.
+     * @param tokenizedText    the tokenized text of the extracted content.
+     * @return the refined content, or null if no group is relevant.
      */
-    @NotNull
-    private String filterDataWithEmbedding(@NotNull Query query, Content extractedContent) {
+    private Content filterDataWithEmbedding(@NotNull Query query, Content extractedContent, TokenAccountant.TokenizedText tokenizedText) {
         try {
-            List<String> sentences = Arrays.asList(extractedContent.textSegment().text().split("(?<=[.!?])\\s*"));
-            List<String> filteredSentences = sentences.stream()
-                    .filter(sentence -> sentence.length() > SENTENCE_FILTER_LENGTH)
-                    .toList();
-
-            List<List<String>> groupedList = IntStream.range(0, (filteredSentences.size() + GROUP_TEXT_LENGTH - 1) / GROUP_TEXT_LENGTH)
-                    .mapToObj(i -> filteredSentences.subList(i * GROUP_TEXT_LENGTH, Math.min((i + 1) * GROUP_TEXT_LENGTH, filteredSentences.size())))
+            List<TextSegment> groupedSegments = SentenceSegmenter.windows(extractedContent.textSegment().text(),
+                            SENTENCE_FILTER_LENGTH, GROUP_TEXT_LENGTH, embeddingWindowMaxTokens, tokenizedText::tokenCountBetween)
+                    .stream()
+                    .map(TextSegment::from)
                     .toList();
 
-            groupedList.forEach(this::ingestDataToEmbeddingStore);
+            List<Content> retrievedContent = dataIngestionService.retrieveRelevantData(query.text(), groupedSegments);
 
-            List<Content> retrievedContent = retrieveDataFromEmbeddingStore(query.text());
-
-            return String.join(" ", retrievedContent.stream().map(content -> content.textSegment().text()).toList());
+            String refinedText = String.join(" ", retrievedContent.stream().map(content -> content.textSegment().text()).toList());
+            if (StringUtils.isBlank(refinedText)) {
+                return null;
+            }
+            return Content.from(new TextSegment(refinedText, extractedContent.textSegment().metadata()),
+                    Map.of(ContentMetadata.SCORE, retrievedContent.getFirst().metadata().get(ContentMetadata.SCORE)));
         } catch (Exception e) {
             log.error("Error filtering data with embedding: {}", e.getMessage(), e);
-            return "";
-        }
-    }
-
-    /**
-     * Ingests data into the embedding store for processing.
-     *
-     * @param content the content to be ingested.
-     */
-    private void ingestDataToEmbeddingStore(List<String> content) {
-        try {
-            String text = String.join(" ", content);
-            Document document = new Document(text);
-            dataIngestionService.ingestData(List.of(document));
-        } catch (Exception e) {
-            log.error("Error ingesting data to embedding store: {}", e.getMessage(), e);
-        }
-    }
-
-    /**
-     * Retrieves data from the embedding store based on a query.
-     *
-     * @param query the query string.
-     * @return a list of {@link Content} objects retrieved from the embedding store.
-     */
-    private List<Content> retrieveDataFromEmbeddingStore(String query) {
-        try {
-            List<Content> contents = dataIngestionService.retrieveData(query);
-            clearData();
-            return contents;
-        } catch (Exception e) {
-            log.error("Error retrieving data from embedding store: {}", e.getMessage(), e);
-            return Collections.emptyList();
-        }
-    }
-
-    /**
-     * Clears temporary data in the embedding store.
-     */
-    private void clearData() {
-        try {
-            dataIngestionService.clearData();
-        } catch (Exception e) {
-            log.error("Error clearing data: {}", e.getMessage(), e);
+            return null;
         }
     }
 }
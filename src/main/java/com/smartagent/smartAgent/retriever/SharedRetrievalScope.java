@@ -0,0 +1,285 @@
+package com.smartagent.smartAgent.retriever;
+
+import com.smartagent.smartAgent.search.CachingWebSearchEngine;
+import com.smartagent.smartAgent.utility.CacheUtility;
+import com.smartagent.smartAgent.utility.UrlUtility;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.rag.content.Content;
+import io.micrometer.context.ContextRegistry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Search results, page texts and embeddings shared by the questions of one request.
+ * <p>
+ * While a scope is open on a thread, the pipeline looks up every search by normalized query, every
+ * page by normalized URL and every embedded text in the scope before doing the work, and only the
+ * first question asking for an item does it; the others wait for that result. The scope is carried
+ * to the tasks of the {@code webContentExecutor} like the current observation, so it covers the
+ * whole pipeline of every question started from the thread that opened it. Unlike the global caches,
+ * the scope evicts nothing and also shares failures, so the cost of a request grows with its unique
+ * queries, pages and texts, not with its number of questions.
+ * </p>
+ * <p>
+ * Only the outcome of the item is shared, not that of the question loading it: when that question is
+ * cancelled or interrupted, the item is dropped from the scope and the questions waiting for it load
+ * it again.
+ * </p>
+ * <p>
+ * Outside of a scope, {@link #current()} returns {@link #NONE}, which shares nothing.
+ * </p>
+ */
+public final class SharedRetrievalScope implements AutoCloseable {
+
+    /**
+     * A scope that shares nothing and runs every load.
+     */
+    public static final SharedRetrievalScope NONE = new SharedRetrievalScope(false);
+
+    private static final ThreadLocal<SharedRetrievalScope> CURRENT = new ThreadLocal<>();
+
+    static {
+        ContextRegistry.getInstance().registerThreadLocalAccessor("smartagent.shared-retrieval-scope", CURRENT);
+    }
+
+    private final boolean shared;
+    private final ConcurrentHashMap<String, CompletableFuture<List<Content>>> searchResults = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<String>> pageTexts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Embedding>> embeddings = new ConcurrentHashMap<>();
+    private final LongAdder reusedSearches = new LongAdder();
+    private final LongAdder reusedPages = new LongAdder();
+    private final LongAdder reusedEmbeddings = new LongAdder();
+    private SharedRetrievalScope previous;
+
+    private SharedRetrievalScope(boolean shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * Opens a new scope on the calling thread. Close it on the same thread.
+     *
+     * @return the new scope.
+     */
+    public static SharedRetrievalScope open() {
+        SharedRetrievalScope scope = new SharedRetrievalScope(true);
+        scope.previous = CURRENT.get();
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return the scope open on the calling thread, or {@link #NONE}.
+     */
+    public static SharedRetrievalScope current() {
+        SharedRetrievalScope scope = CURRENT.get();
+        return scope != null ? scope : NONE;
+    }
+
+    /**
+     * Returns the results of a search, searching only if no question of the scope did yet.
+     *
+     * @param query  the search query.
+     * @param loader runs the search.
+     * @return the search results.
+     */
+    public List<Content> searchResults(String query, Supplier<List<Content>> loader) {
+        if (!shared) {
+            return loader.get();
+        }
+        try {
+            return share(searchResults, CachingWebSearchEngine.normalizeQuery(query), reusedSearches, loader::get);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the text of a page, loading it only if no question of the scope did yet.
+     *
+     * @param url    the URL of the page.
+     * @param loader loads the text of the page.
+     * @return the text of the page.
+     * @throws Exception if loading the page failed, for this or another question.
+     */
+    public String pageText(String url, Loader<String> loader) throws Exception {
+        if (!shared) {
+            return loader.load();
+        }
+        return share(pageTexts, UrlUtility.normalizeUrl(url), reusedPages, loader);
+    }
+
+    /**
+     * Returns the embeddings of the segments, embedding in one call only the texts no question of the
+     * scope embedded or is embedding yet.
+     *
+     * @param segments the segments to embed.
+     * @param embedder embeds a list of segments, returning the embeddings in the same order.
+     * @return the embeddings, in the same order as the segments.
+     */
+    public List<Embedding> embeddings(List<TextSegment> segments, Function<List<TextSegment>, List<Embedding>> embedder) {
+        if (!shared) {
+            return embedder.apply(segments);
+        }
+        List<CompletableFuture<Embedding>> futures = new ArrayList<>(segments.size());
+        Map<String, CompletableFuture<Embedding>> claimed = new LinkedHashMap<>();
+        for (TextSegment segment : segments) {
+            CompletableFuture<Embedding> embedding = new CompletableFuture<>();
+            CompletableFuture<Embedding> existing = embeddings.putIfAbsent(segment.text(), embedding);
+            if (existing == null) {
+                claimed.put(segment.text(), embedding);
+                futures.add(embedding);
+            } else {
+                if (!claimed.containsKey(segment.text())) {
+                    reusedEmbeddings.increment();
+                }
+                futures.add(existing);
+            }
+        }
+
+        if (!claimed.isEmpty()) {
+            try {
+                List<Embedding> computed = embedder.apply(claimed.keySet().stream().map(TextSegment::from).toList());
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Interrupted while embedding");
+                }
+                int i = 0;
+                for (CompletableFuture<Embedding> embedding : claimed.values()) {
+                    embedding.complete(computed.get(i++));
+                }
+            } catch (Throwable e) {
+                if (CacheUtility.isInterruption(e)) {
+                    abandon(embeddings, claimed);
+                } else {
+                    claimed.values().forEach(embedding -> embedding.completeExceptionally(e));
+                }
+                throw e;
+            }
+        }
+
+        List<Embedding> result = new ArrayList<>(futures.size());
+        List<Integer> abandoned = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                result.add(await(futures.get(i)));
+            } catch (CancellationException e) {
+                if (!futures.get(i).isCancelled() || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                abandoned.add(i);
+                result.add(null);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+        if (!abandoned.isEmpty()) {
+            List<Embedding> reloaded = embeddings(abandoned.stream().map(segments::get).toList(), embedder);
+            for (int i = 0; i < abandoned.size(); i++) {
+                result.set(abandoned.get(i), reloaded.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of searches, pages and embeddings served from the scope instead of loaded.
+     */
+    public String reuseSummary() {
+        return reusedSearches.sum() + " searches, " + reusedPages.sum() + " pages and " + reusedEmbeddings.sum() + " embeddings reused; "
+                + searchResults.size() + " unique searches, " + pageTexts.size() + " unique pages and " + embeddings.size() + " unique texts";
+    }
+
+    @Override
+    public void close() {
+        if (shared && CURRENT.get() == this) {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    private static <T> T share(ConcurrentHashMap<String, CompletableFuture<T>> results, String key, LongAdder reused,
+                               Loader<T> loader) throws Exception {
+        while (true) {
+            CompletableFuture<T> load = new CompletableFuture<>();
+            CompletableFuture<T> existing = results.putIfAbsent(key, load);
+            if (existing != null) {
+                reused.increment();
+                try {
+                    return await(existing);
+                } catch (CancellationException e) {
+                    if (!existing.isCancelled() || Thread.currentThread().isInterrupted()) {
+                        throw e;
+                    }
+                    // The question loading it was cancelled, load it again.
+                    continue;
+                }
+            }
+            try {
+                T value = loader.load();
+                if (Thread.currentThread().isInterrupted()) {
+                    // The value may be partial, keep it for this question only.
+                    abandon(results, Map.of(key, load));
+                } else {
+                    load.complete(value);
+                }
+                return value;
+            } catch (Throwable e) {
+                if (CacheUtility.isInterruption(e)) {
+                    abandon(results, Map.of(key, load));
+                } else {
+                    load.completeExceptionally(e);
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static <T> void abandon(ConcurrentHashMap<String, CompletableFuture<T>> results, Map<String, CompletableFuture<T>> loads) {
+        loads.forEach((key, load) -> {
+            results.remove(key, load);
+            load.cancel(false);
+        });
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a shared result");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a value that may be shared by the questions of a scope.
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws Exception;
+    }
+}
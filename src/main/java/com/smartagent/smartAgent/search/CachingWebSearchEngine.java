@@ -0,0 +1,77 @@
+package com.smartagent.smartAgent.search;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.smartagent.smartAgent.utility.CacheUtility;
+import dev.langchain4j.web.search.WebSearchEngine;
+import dev.langchain4j.web.search.WebSearchRequest;
+import dev.langchain4j.web.search.WebSearchResults;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
+
+/**
+ * {@link WebSearchEngine} decorator that caches search results by normalized query.
+ * <p>
+ * Queries are lowercased, whitespace is collapsed, and surrounding quotes and sentence-final
+ * {@code .}, {@code ?} and {@code !} are dropped, so the small variations a tool-calling model produces
+ * for the same search share an entry. Other punctuation is kept, so that {@code C++}, {@code C#} and
+ * {@code C} stay different searches. The other request parameters, such as the maximum number of
+ * results, are part of the key. Concurrent searches for the same key share one call to the delegate.
+ * Failed searches and searches without results are not cached, since both are often caused by a
+ * transient problem of the search engine.
+ * </p>
+ */
+public class CachingWebSearchEngine implements WebSearchEngine {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern SURROUNDING_QUOTES_AND_FINAL_PUNCTUATION = Pattern.compile(
+            "^[\\s\"'\u201C\u201D\u2018\u2019\u00AB\u00BB]+|[\\s\"'\u201C\u201D\u2018\u2019\u00AB\u00BB.?!]+$");
+
+    private final WebSearchEngine delegate;
+    private final AsyncCache<String, WebSearchResults> cache;
+
+    public CachingWebSearchEngine(WebSearchEngine delegate, AsyncCache<String, WebSearchResults> cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public WebSearchResults search(WebSearchRequest request) {
+        String key = String.join("\u0000", normalizeQuery(request.searchTerms()),
+                Objects.toString(request.maxResults()),
+                Objects.toString(request.language()),
+                Objects.toString(request.geoLocation()),
+                Objects.toString(request.startPage()),
+                Objects.toString(request.startIndex()),
+                Objects.toString(request.safeSearch()),
+                Objects.toString(request.additionalParams()));
+        try {
+            WebSearchResults results = CacheUtility.getOrLoad(cache, key, () -> delegate.search(request));
+            if (isEmpty(results)) {
+                cache.asMap().computeIfPresent(key, (k, cached) ->
+                        cached.isDone() && !cached.isCompletedExceptionally() && isEmpty(cached.join()) ? null : cached);
+            }
+            return results;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isEmpty(WebSearchResults results) {
+        return results == null || results.results() == null || results.results().isEmpty();
+    }
+
+    /**
+     * @param query the search query.
+     * @return the query as used in cache keys.
+     */
+    public static String normalizeQuery(String query) {
+        String collapsed = WHITESPACE.matcher(query.strip()).replaceAll(" ");
+        return SURROUNDING_QUOTES_AND_FINAL_PUNCTUATION.matcher(collapsed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+}
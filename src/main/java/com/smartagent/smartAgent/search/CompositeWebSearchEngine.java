@@ -0,0 +1,289 @@
+package com.smartagent.smartAgent.search;
+
+import com.smartagent.smartAgent.utility.UrlUtility;
+import dev.langchain4j.web.search.WebSearchEngine;
+import dev.langchain4j.web.search.WebSearchInformationResult;
+import dev.langchain4j.web.search.WebSearchOrganicResult;
+import dev.langchain4j.web.search.WebSearchRequest;
+import dev.langchain4j.web.search.WebSearchResults;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link WebSearchEngine} that spreads each search over several engines.
+ * <p>
+ * In {@link Mode#MERGE} mode every engine is queried in parallel and the results of those answering
+ * within the timeout are merged: duplicate URLs are collapsed and results are ranked by reciprocal-rank
+ * fusion, {@code sum(1 / (60 + rank))} over the engines returning them.
+ * </p>
+ * <p>
+ * In {@link Mode#HEDGED} mode the engines are tried in order. When an engine has not answered within
+ * its usual latency, the {@code hedgePercentile} of its recent searches, the next engine is queried as
+ * well. The first non-empty answer wins and the other searches are cancelled. An engine that fails
+ * makes the next one start immediately.
+ * </p>
+ * <p>
+ * A search cancelled because another engine won or the timeout elapsed records the time it had run so
+ * far as its latency. That is a lower bound of its real latency, but leaving it out would make a slow
+ * engine look fast, since only its fast searches would ever be recorded.
+ * </p>
+ */
+@Slf4j
+public class CompositeWebSearchEngine implements WebSearchEngine {
+
+    private static final int RECIPROCAL_RANK_CONSTANT = 60;
+    private static final int LATENCY_SAMPLES = 128;
+    private static final int MIN_LATENCY_SAMPLES = 8;
+
+    /**
+     * How results of several engines are combined.
+     */
+    public enum Mode {
+        MERGE,
+        HEDGED
+    }
+
+    private final List<WebSearchEngine> engines;
+    private final List<LatencyTracker> latencies;
+    private final Mode mode;
+    private final ExecutorService executor;
+    private final Duration timeout;
+    private final double hedgePercentile;
+    private final Duration initialHedgeDelay;
+
+    /**
+     * @param engines           the engines, in order of preference.
+     * @param mode              how the engines' results are combined.
+     * @param executor          runs the searches.
+     * @param timeout           the maximum time a search may take.
+     * @param hedgePercentile   the latency percentile after which the next engine is queried, in hedged mode.
+     * @param initialHedgeDelay the delay before hedging until an engine has enough latency samples.
+     */
+    public CompositeWebSearchEngine(List<WebSearchEngine> engines, Mode mode, ExecutorService executor, Duration timeout,
+                                    double hedgePercentile, Duration initialHedgeDelay) {
+        if (engines.isEmpty()) {
+            throw new IllegalArgumentException("At least one web search engine is required");
+        }
+        this.engines = List.copyOf(engines);
+        this.latencies = engines.stream().map(engine -> new LatencyTracker()).toList();
+        this.mode = mode;
+        this.executor = executor;
+        this.timeout = timeout;
+        this.hedgePercentile = hedgePercentile;
+        this.initialHedgeDelay = initialHedgeDelay;
+    }
+
+    @Override
+    public WebSearchResults search(WebSearchRequest request) {
+        return mode == Mode.MERGE ? searchAndMerge(request) : searchHedged(request);
+    }
+
+    private WebSearchResults searchAndMerge(WebSearchRequest request) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<Future<WebSearchResults>> searches = new ArrayList<>();
+        for (int i = 0; i < engines.size(); i++) {
+            int engine = i;
+            searches.add(executor.submit(() -> timedSearch(engine, request)));
+        }
+
+        try {
+            List<WebSearchResults> answers = new ArrayList<>();
+            RuntimeException lastFailure = null;
+            for (Future<WebSearchResults> search : searches) {
+                try {
+                    answers.add(search.get(remainingNanos(deadline), TimeUnit.NANOSECONDS));
+                } catch (ExecutionException e) {
+                    lastFailure = asRuntimeException(e.getCause());
+                    log.warn("Web search engine failed: {}", e.getCause().getMessage());
+                } catch (TimeoutException e) {
+                    log.warn("Web search engine did not answer within {} ms", timeout.toMillis());
+                }
+            }
+            if (answers.isEmpty()) {
+                throw lastFailure != null ? lastFailure : new WebSearchTimeoutException(timeout);
+            }
+            return merge(answers, request.maxResults());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while searching the web", e);
+        } finally {
+            searches.forEach(search -> search.cancel(true));
+        }
+    }
+
+    private WebSearchResults searchHedged(WebSearchRequest request) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        CompletionService<WebSearchResults> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<WebSearchResults>> searches = new ArrayList<>();
+        int nextEngine = 0;
+        int running = 0;
+        WebSearchResults emptyAnswer = null;
+        RuntimeException lastFailure = null;
+
+        try {
+            while (true) {
+                if (running == 0 && nextEngine < engines.size()) {
+                    searches.add(submit(completionService, nextEngine++, request));
+                    running++;
+                }
+                if (running == 0) {
+                    break;
+                }
+
+                long waitNanos = remainingNanos(deadline);
+                if (nextEngine < engines.size()) {
+                    waitNanos = Math.min(waitNanos, latencies.get(nextEngine - 1).percentileNanos(hedgePercentile, initialHedgeDelay));
+                }
+                Future<WebSearchResults> completed = completionService.poll(waitNanos, TimeUnit.NANOSECONDS);
+                if (completed == null) {
+                    if (remainingNanos(deadline) == 0) {
+                        break;
+                    }
+                    if (nextEngine < engines.size()) {
+                        log.debug("Hedging web search to engine {}", nextEngine);
+                        searches.add(submit(completionService, nextEngine++, request));
+                        running++;
+                    }
+                    continue;
+                }
+
+                running--;
+                try {
+                    WebSearchResults answer = completed.get();
+                    if (answer.results() != null && !answer.results().isEmpty()) {
+                        return answer;
+                    }
+                    emptyAnswer = answer;
+                } catch (ExecutionException e) {
+                    lastFailure = asRuntimeException(e.getCause());
+                    log.warn("Web search engine failed: {}", e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while searching the web", e);
+        } finally {
+            searches.forEach(search -> search.cancel(true));
+        }
+
+        if (emptyAnswer != null) {
+            return emptyAnswer;
+        }
+        throw lastFailure != null ? lastFailure : new WebSearchTimeoutException(timeout);
+    }
+
+    private Future<WebSearchResults> submit(CompletionService<WebSearchResults> completionService, int engine, WebSearchRequest request) {
+        return completionService.submit(() -> timedSearch(engine, request));
+    }
+
+    private WebSearchResults timedSearch(int engine, WebSearchRequest request) {
+        long start = System.nanoTime();
+        try {
+            WebSearchResults results = engines.get(engine).search(request);
+            latencies.get(engine).record(System.nanoTime() - start);
+            return results;
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted() || causedByInterrupt(e)) {
+                latencies.get(engine).record(System.nanoTime() - start);
+            }
+            throw e;
+        }
+    }
+
+    private static boolean causedByInterrupt(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merges the answers of several engines with reciprocal-rank fusion, keeping one result per
+     * normalized URL.
+     */
+    static WebSearchResults merge(List<WebSearchResults> answers, Integer maxResults) {
+        Map<String, WebSearchOrganicResult> resultsByUrl = new LinkedHashMap<>();
+        Map<String, Double> scoresByUrl = new LinkedHashMap<>();
+        for (WebSearchResults answer : answers) {
+            if (answer.results() == null) {
+                continue;
+            }
+            for (int rank = 0; rank < answer.results().size(); rank++) {
+                WebSearchOrganicResult result = answer.results().get(rank);
+                if (result.url() == null) {
+                    continue;
+                }
+                String key = UrlUtility.normalizeUrl(result.url().toString());
+                resultsByUrl.putIfAbsent(key, result);
+                scoresByUrl.merge(key, 1.0 / (RECIPROCAL_RANK_CONSTANT + rank + 1), Double::sum);
+            }
+        }
+
+        List<WebSearchOrganicResult> merged = scoresByUrl.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(maxResults == null ? Long.MAX_VALUE : maxResults)
+                .map(entry -> resultsByUrl.get(entry.getKey()))
+                .toList();
+        return WebSearchResults.from(WebSearchInformationResult.from((long) resultsByUrl.size()), merged);
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    private static RuntimeException asRuntimeException(Throwable throwable) {
+        return throwable instanceof RuntimeException runtimeException ? runtimeException : new IllegalStateException(throwable);
+    }
+
+    /**
+     * Thrown when no engine answers within the timeout.
+     */
+    public static class WebSearchTimeoutException extends RuntimeException {
+
+        public WebSearchTimeoutException(Duration timeout) {
+            super("No web search engine answered within " + timeout.toMillis() + " ms");
+        }
+    }
+
+    /**
+     * The latencies of an engine's most recent searches.
+     */
+    private static final class LatencyTracker {
+
+        private final long[] samples = new long[LATENCY_SAMPLES];
+        private int count;
+        private int next;
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        synchronized long percentileNanos(double percentile, Duration fallback) {
+            if (count < MIN_LATENCY_SAMPLES) {
+                return fallback.toNanos();
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * count) - 1;
+            return sorted[Math.clamp(index, 0, count - 1)];
+        }
+    }
+}
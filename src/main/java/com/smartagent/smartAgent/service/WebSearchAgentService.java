@@ -1,6 +1,11 @@
 package com.smartagent.smartAgent.service;
 
 import com.smartagent.smartAgent.record.domain.WebSearchResult;
+import com.smartagent.smartAgent.retriever.PipelineProgressListener;
+import dev.langchain4j.service.TokenStream;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
 /**
  * Interface for a WebSearchAgentService that provides functionality to retrieve answers
@@ -13,9 +18,31 @@ public interface WebSearchAgentService {
     /**
      * Retrieves the answer to a given question.
      *
-     * @param question The question for which an answer is requested.
+     * @param question       The question for which an answer is requested.
+     * @param conversationId The conversation the question belongs to, or null for a one-off question.
      * @return The answer as a String.
      */
-    WebSearchResult agentReplyWithWebSearchData(String question);
+    WebSearchResult agentReplyWithWebSearchData(String question, String conversationId);
+
+    /**
+     * Retrieves the answers to several one-off questions at once, sharing their web searches, page
+     * downloads and embeddings.
+     *
+     * @param questions The questions for which answers are requested.
+     * @return The answers, in the same order as the questions; null for a question that could not be answered.
+     */
+    List<WebSearchResult> agentReplyWithWebSearchData(List<String> questions);
+
+    /**
+     * Prepares a streamed answer to a given question.
+     *
+     * @param question         The question for which an answer is requested.
+     * @param conversationId   The conversation the question belongs to, or null for a one-off question.
+     * @param progressListener The listener notified as web searches progress.
+     * @param cancelled        Becomes true once the answer is no longer wanted; the stream then stops
+     *                         delivering events and starts no further searches or model requests.
+     * @return A {@link TokenStream} that delivers the answer once started.
+     */
+    TokenStream streamAgentReplyWithWebSearchData(String question, String conversationId, PipelineProgressListener progressListener, BooleanSupplier cancelled);
 
 }
\ No newline at end of file
@@ -1,17 +1,30 @@
 package com.smartagent.smartAgent.service.impl;
 
+import com.smartagent.smartAgent.retriever.SharedRetrievalScope;
+import com.smartagent.smartAgent.store.RequestScopedVectorIndex;
+import com.smartagent.smartAgent.utility.TokenAccountant;
 import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
 import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
 import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
 import dev.langchain4j.rag.query.Query;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @Slf4j
@@ -24,6 +37,29 @@ public class DataIngestionServiceImpl {
 
     private final EmbeddingStoreContentRetriever embeddingStoreContentRetriever;
 
+    private final EmbeddingModel embeddingModel;
+
+    private final TokenAccountant tokenAccountant;
+
+    private final ObservationRegistry observationRegistry;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${embedding-model-name}")
+    private String embeddingModelName;
+
+    @Value("${embedding-filter-max-results:2}")
+    private int embeddingFilterMaxResults;
+
+    @Value("${embedding-filter-min-score:0.85}")
+    private double embeddingFilterMinScore;
+
+    @Value("${embedding-batch-max-inputs:64}")
+    private int embeddingBatchMaxInputs;
+
+    @Value("${embedding-batch-max-tokens:16000}")
+    private int embeddingBatchMaxTokens;
+
     public void ingestData(List<Document> documents) {
         ingestor.ingest(documents);
     }
@@ -34,6 +70,88 @@ public class DataIngestionServiceImpl {
         return contents;
     }
 
+    /**
+     * Returns the segments most relevant to the question, searching only the given segments.
+     * <p>
+     * The segments are embedded into a {@link RequestScopedVectorIndex} that lives for the duration of
+     * this call, so concurrent callers never see or clear each other's data. The question is embedded
+     * in the same batch as the segments, so a page usually costs a single embedding round-trip. Texts
+     * already embedded within the current {@link SharedRetrievalScope} are not sent again. The
+     * relevance score of each match is kept in the {@link ContentMetadata#SCORE} metadata of the
+     * returned content.
+     * </p>
+     *
+     * @param question the question to rank the segments against.
+     * @param segments the candidate segments.
+     * @return the best matching segments, most relevant first.
+     */
+    public List<Content> retrieveRelevantData(String question, List<TextSegment> segments) {
+        if (segments.isEmpty()) {
+            return List.of();
+        }
+        List<TextSegment> batch = new ArrayList<>(segments.size() + 1);
+        batch.add(TextSegment.from(question));
+        batch.addAll(segments);
+        List<Embedding> embeddings = SharedRetrievalScope.current().embeddings(batch, this::embedInBatches);
+
+        RequestScopedVectorIndex index = new RequestScopedVectorIndex(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            index.add(embeddings.get(i + 1).vector(), segments.get(i));
+        }
+        float[] questionVector = embeddings.getFirst().vector();
+
+        List<Content> contents = Observation.createNotStarted("agent.pipeline.vector-search", observationRegistry)
+                .observe(() -> index.search(questionVector, embeddingFilterMaxResults, embeddingFilterMinScore)).stream()
+                .map(match -> Content.from(match.segment(), Map.of(ContentMetadata.SCORE, match.score())))
+                .toList();
+        log.debug("Retrieved data: {}", contents);
+        return contents;
+    }
+
+    /**
+     * Embeds the segments with as few {@link EmbeddingModel#embedAll(List)} calls as the provider limits allow.
+     * <p>
+     * Consecutive segments are packed into one request until it reaches {@code embedding-batch-max-inputs}
+     * inputs or {@code embedding-batch-max-tokens} estimated tokens. A single segment above the token
+     * limit is sent in a batch of its own. Each call is observed as {@code agent.pipeline.embedding}, and
+     * the tokens reported by the provider are added to {@code embedding.tokens}.
+     * </p>
+     *
+     * @param segments the segments to embed.
+     * @return the embeddings, in the same order as the segments.
+     */
+    public List<Embedding> embedInBatches(List<TextSegment> segments) {
+        List<Embedding> embeddings = new ArrayList<>(segments.size());
+        List<TextSegment> batch = new ArrayList<>();
+        int batchTokenCount = 0;
+
+        for (TextSegment segment : segments) {
+            int tokenCount = tokenAccountant.countTokens(segment.text());
+            if (!batch.isEmpty() && (batch.size() >= embeddingBatchMaxInputs || batchTokenCount + tokenCount > embeddingBatchMaxTokens)) {
+                embeddings.addAll(embedBatch(batch));
+                batch = new ArrayList<>();
+                batchTokenCount = 0;
+            }
+            batch.add(segment);
+            batchTokenCount += tokenCount;
+        }
+
+        if (!batch.isEmpty()) {
+            embeddings.addAll(embedBatch(batch));
+        }
+        return embeddings;
+    }
+
+    private List<Embedding> embedBatch(List<TextSegment> batch) {
+        Response<List<Embedding>> response = Observation.createNotStarted("agent.pipeline.embedding", observationRegistry)
+                .lowCardinalityKeyValue("model", embeddingModelName)
+                .observe(() -> embeddingModel.embedAll(batch));
+        if (response.tokenUsage() != null && response.tokenUsage().inputTokenCount() != null) {
+            meterRegistry.counter("embedding.tokens", "model", embeddingModelName).increment(response.tokenUsage().inputTokenCount());
+        }
+        return response.content();
+    }
+
     public void clearData() {
         embeddingStore.removeAll();
     }
@@ -1,25 +1,52 @@
 package com.smartagent.smartAgent.service.impl;
 
+import com.smartagent.smartAgent.assistant.StreamingWebSearchAssistant;
 import com.smartagent.smartAgent.assistant.WebSearchAssistant;
+import com.smartagent.smartAgent.cache.SemanticAnswerCache;
+import com.smartagent.smartAgent.memory.ConversationChatMemoryProvider;
+import com.smartagent.smartAgent.model.CancellableStreamingChatModel;
 import com.smartagent.smartAgent.record.domain.WebSearchResult;
+import com.smartagent.smartAgent.retriever.PipelineProgressListener;
+import com.smartagent.smartAgent.retriever.SharedRetrievalScope;
 import com.smartagent.smartAgent.service.WebSearchAgentService;
+import com.smartagent.smartAgent.tooluse.ConcurrentToolCalls;
+import com.smartagent.smartAgent.tooluse.WebSearchTool;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingSearchResult;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
+
 /**
  * Implementation of the WebSearchAgentService interface that provides a method to fetch answers
  * from a primary assistant based on a given question.
  * <p>
  * This service uses the WebSearchAssistant to retrieve the answer for the provided query.
- * If an error occurs during the retrieval process, the exception is logged, and a
+ * Each conversation keeps its own chat memory. Answers to one-off questions with the same meaning
+ * as a recently answered one are served from the {@link SemanticAnswerCache}. If an error occurs during the retrieval process, the exception is logged, and a
  * runtime exception is thrown with the appropriate error message.
  */
 @Slf4j
@@ -35,24 +62,155 @@ public class WebSearchAgentServiceImpl implements WebSearchAgentService {
     @Autowired
     private EmbeddingStore<TextSegment> embeddingStore;
 
+    @Autowired
+    private SemanticAnswerCache semanticAnswerCache;
+
+    @Autowired
+    @Qualifier("toolStreamingLanguageModel")
+    private StreamingChatLanguageModel toolStreamingLanguageModel;
+
+    @Autowired
+    private WebSearchTool webSearchTool;
+
+    @Autowired
+    private ConversationChatMemoryProvider conversationChatMemoryProvider;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    @Autowired
+    @Qualifier("webContentExecutor")
+    private ExecutorService webContentExecutor;
+
+    @Value("${batch-question-concurrency:8}")
+    private int batchQuestionConcurrency;
+
+    @Value("${tool-call-max-concurrency:4}")
+    private int toolCallMaxConcurrency;
+
     /**
      * Fetches an answer to the provided question by querying the primary assistant.
+     * <p>
+     * A one-off question runs in a temporary conversation that is dropped once answered, and may be
+     * answered from the semantic answer cache. A question in an existing conversation always reaches
+     * the assistant, since its answer can depend on the earlier messages. The whole answer is observed
+     * as {@code agent.answer}, the parent of the pipeline observations of its web searches.
+     * </p>
      *
-     * @param question The question for which an answer is to be retrieved.
+     * @param question       The question for which an answer is to be retrieved.
+     * @param conversationId The conversation the question belongs to, or null for a one-off question.
      * @return The answer to the question provided by the primary assistant.
      * @throws RuntimeException If an error occurs while fetching the answer,
      *                          an exception will be logged and re-thrown.
      */
     @Override
-    public WebSearchResult agentReplyWithWebSearchData(String question) {
+    public WebSearchResult agentReplyWithWebSearchData(String question, String conversationId) {
         try {
-            return new WebSearchResult(webSearchAssistant.answer(question));
+            return Observation.createNotStarted("agent.answer", observationRegistry)
+                    .lowCardinalityKeyValue("mode", "sync")
+                    .lowCardinalityKeyValue("conversation", String.valueOf(conversationId != null))
+                    .observe(() -> answer(question, conversationId));
         } catch (Exception e) {
             log.error("Error in agentReplyWithWebSearchData: {}", e.getMessage());
             throw new RuntimeException(e.getMessage());
         }
     }
 
+    /**
+     * Fetches the answers to several one-off questions at once.
+     * <p>
+     * Identical questions are answered once. The distinct questions run concurrently on virtual
+     * threads, at most {@code batch-question-concurrency} at a time, inside one
+     * {@link SharedRetrievalScope}: a search, page or text needed by several questions is searched,
+     * downloaded or embedded only once for the whole batch. When the calling thread is interrupted,
+     * the pending questions are cancelled.
+     * </p>
+     *
+     * @param questions The questions for which answers are to be retrieved.
+     * @return The answers, in the same order as the questions; null for a question that failed.
+     */
+    @Override
+    public List<WebSearchResult> agentReplyWithWebSearchData(List<String> questions) {
+        Semaphore permits = new Semaphore(batchQuestionConcurrency);
+        Map<String, Future<WebSearchResult>> answers = new LinkedHashMap<>();
+        try (SharedRetrievalScope scope = SharedRetrievalScope.open()) {
+            for (String question : questions) {
+                answers.computeIfAbsent(question, distinctQuestion -> webContentExecutor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return agentReplyWithWebSearchData(distinctQuestion, null);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            List<WebSearchResult> results = new ArrayList<>(questions.size());
+            for (String question : questions) {
+                results.add(awaitAnswer(question, answers.get(question)));
+            }
+            log.debug("Answered {} questions ({} distinct): {}", questions.size(), answers.size(), scope.reuseSummary());
+            return results;
+        } catch (InterruptedException e) {
+            log.debug("Batch of {} questions was cancelled", questions.size());
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("The batch was cancelled");
+        } finally {
+            answers.values().forEach(answer -> answer.cancel(true));
+        }
+    }
+
+    private WebSearchResult awaitAnswer(String question, Future<WebSearchResult> answer) throws InterruptedException {
+        try {
+            return answer.get();
+        } catch (ExecutionException e) {
+            log.error("Error answering batch question {}: {}", question, e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    private WebSearchResult answer(String question, String conversationId) {
+        if (conversationId != null) {
+            return new WebSearchResult(webSearchAssistant.answer(conversationId, question));
+        }
+        String oneOffConversationId = UUID.randomUUID().toString();
+        try {
+            return semanticAnswerCache.getOrAnswer(question, () -> new WebSearchResult(webSearchAssistant.answer(oneOffConversationId, question)));
+        } finally {
+            conversationChatMemoryProvider.evict(oneOffConversationId);
+        }
+    }
+
+    /**
+     * Prepares a streamed answer to the provided question.
+     * <p>
+     * A {@link StreamingWebSearchAssistant} is built for every call, so that its web search tool
+     * reports progress to this caller's listener only. Its model is wrapped in a
+     * {@link CancellableStreamingChatModel}, and its tool skips searching, once the caller cancels.
+     * Several web searches requested in one turn run concurrently, at most
+     * {@code tool-call-max-concurrency} at a time, see {@link ConcurrentToolCalls}. The observation
+     * current on the calling thread becomes the parent of the pipeline observations of the answer's web
+     * searches.
+     * </p>
+     *
+     * @param question         The question for which an answer is to be streamed.
+     * @param conversationId   The conversation the question belongs to, or null for a one-off question.
+     * @param progressListener The listener notified as web searches progress.
+     * @param cancelled        Becomes true once the answer is no longer wanted.
+     * @return A {@link TokenStream} that delivers the answer once started.
+     */
+    @Override
+    public TokenStream streamAgentReplyWithWebSearchData(String question, String conversationId, PipelineProgressListener progressListener, BooleanSupplier cancelled) {
+        WebSearchTool answerWebSearchTool = webSearchTool.forAnswer(progressListener, cancelled, observationRegistry.getCurrentObservation());
+        ConcurrentToolCalls concurrentToolCalls = new ConcurrentToolCalls(List.of(answerWebSearchTool), webContentExecutor, toolCallMaxConcurrency);
+        StreamingWebSearchAssistant streamingWebSearchAssistant = AiServices.builder(StreamingWebSearchAssistant.class)
+                .streamingChatLanguageModel(concurrentToolCalls.decorate(new CancellableStreamingChatModel(toolStreamingLanguageModel, cancelled)))
+                .tools(concurrentToolCalls.tools())
+                .chatMemoryProvider(conversationChatMemoryProvider)
+                .build();
+        return streamingWebSearchAssistant.answer(conversationId != null ? conversationId : UUID.randomUUID().toString(), question);
+    }
+
     void testEmbedding() {
 
         TextSegment segment1 = TextSegment.from("I like football.");
@@ -0,0 +1,180 @@
+package com.smartagent.smartAgent.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * On-disk tier for cached embedding vectors, so a restarted node does not have to re-embed text it
+ * has already seen.
+ * <p>
+ * Each vector is stored as packed little-endian floats in a file named after its cache key. Files
+ * are written to a temporary name and then moved into place, so a crash never leaves a partial
+ * vector behind. Read and write failures are logged and treated as cache misses, and so are files
+ * that do not hold a vector of the expected dimension, which are deleted.
+ * </p>
+ * <p>
+ * Like the in-memory tier, files expire a TTL after they were written, and the directory is bounded
+ * by the total size of its files. When a write takes it over the bound, expired files are deleted and
+ * then the oldest ones, until a tenth of the bound is free again, so the directory is only scanned
+ * once every so many writes. The size is tracked per write and recounted on every scan, so it may
+ * briefly exceed the bound when several nodes share the directory.
+ * </p>
+ */
+@Slf4j
+public class EmbeddingFileCache {
+
+    private static final String FILE_EXTENSION = ".f32";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Duration ttl;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * @param directory the directory holding the vector files, created if missing.
+     * @param maxBytes  the total size of the vector files above which the oldest are deleted.
+     * @param ttl       how long a vector is served after it was written.
+     */
+    public EmbeddingFileCache(Path directory, long maxBytes, Duration ttl) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.ttl = ttl;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to create embedding cache directory " + directory, e);
+        }
+        evict();
+    }
+
+    /**
+     * Reads a cached vector.
+     *
+     * @param key       the cache key, a hex hash.
+     * @param dimension the dimension of the vectors of the model.
+     * @return the vector, or null if it is not cached, expired or not of the given dimension.
+     */
+    public float[] get(String key, int dimension) {
+        Path file = directory.resolve(key + FILE_EXTENSION);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (isExpired(attributes.lastModifiedTime())) {
+                delete(file, attributes.size());
+                return null;
+            }
+            byte[] bytes = Files.readAllBytes(file);
+            if (bytes.length != dimension * Float.BYTES) {
+                log.warn("Deleting cached embedding {} of {} bytes, expected a vector of dimension {}", key, bytes.length, dimension);
+                delete(file, bytes.length);
+                return null;
+            }
+            float[] vector = new float[dimension];
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+            return vector;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Error reading cached embedding {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes a vector to the cache, replacing any previous value, and evicts the oldest vectors if the
+     * cache grew over its bound.
+     *
+     * @param key    the cache key, a hex hash.
+     * @param vector the vector to store.
+     */
+    public void put(String key, float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        Path file = directory.resolve(key + FILE_EXTENSION);
+        try {
+            Path temporaryFile = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temporaryFile, buffer.array());
+            long replacedBytes = Files.exists(file) ? Files.size(file) : 0;
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            if (usedBytes.addAndGet(buffer.capacity() - replacedBytes) > maxBytes) {
+                evict();
+            }
+        } catch (IOException e) {
+            log.warn("Error writing cached embedding {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Recounts the size of the cache, deleting expired vectors and then the oldest ones until a tenth
+     * of the bound is free. Returns at once if another thread is already evicting.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<CachedFile> files = new ArrayList<>();
+            try (Stream<Path> paths = Files.list(directory)) {
+                for (Path path : paths.filter(path -> path.getFileName().toString().endsWith(FILE_EXTENSION)).toList()) {
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                        files.add(new CachedFile(path, attributes.size(), attributes.lastModifiedTime()));
+                    } catch (NoSuchFileException e) {
+                        // Deleted by a concurrent get.
+                    }
+                }
+            }
+            files.sort(Comparator.comparing(CachedFile::lastModifiedTime));
+
+            long total = files.stream().mapToLong(CachedFile::size).sum();
+            long target = maxBytes - maxBytes / 10;
+            int evicted = 0;
+            for (CachedFile file : files) {
+                if (total <= target && !isExpired(file.lastModifiedTime())) {
+                    break;
+                }
+                Files.deleteIfExists(file.path());
+                total -= file.size();
+                evicted++;
+            }
+            usedBytes.set(total);
+            if (evicted > 0) {
+                log.debug("Evicted {} cached embeddings, {} bytes remain", evicted, total);
+            }
+        } catch (IOException e) {
+            log.warn("Error evicting cached embeddings: {}", e.getMessage());
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private boolean isExpired(FileTime lastModifiedTime) {
+        return lastModifiedTime.toInstant().plus(ttl).isBefore(Instant.now());
+    }
+
+    private void delete(Path file, long size) throws IOException {
+        if (Files.deleteIfExists(file)) {
+            usedBytes.addAndGet(-size);
+        }
+    }
+
+    private record CachedFile(Path path, long size, FileTime lastModifiedTime) {
+    }
+}
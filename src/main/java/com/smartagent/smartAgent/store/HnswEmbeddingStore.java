@@ -0,0 +1,819 @@
+package com.smartagent.smartAgent.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+import static com.smartagent.smartAgent.utility.VectorUtility.dot;
+import static com.smartagent.smartAgent.utility.VectorUtility.inverseNorm;
+
+/**
+ * {@link EmbeddingStore} answering searches from a hierarchical navigable small world (HNSW) graph
+ * instead of scanning every embedding.
+ * <p>
+ * Every embedding is a node on a random number of layers, each layer about {@code m} times sparser than
+ * the one below. A search descends greedily through the upper layers and then explores the bottom layer
+ * best-first, keeping the {@code efSearch} best nodes seen, so its cost grows with the logarithm of the
+ * corpus instead of linearly. Results are approximate: a larger {@code efSearch} raises recall at the
+ * cost of latency, and a larger {@code m} or {@code efConstruction} builds a better graph at the cost of
+ * memory and insert time. Neighbours are chosen with the diversity heuristic of the HNSW paper.
+ * </p>
+ * <p>
+ * Inserts and searches run concurrently. Each node's neighbour lists are replaced as a whole under the
+ * node's monitor and read without locking. Deleted embeddings stay in the graph as tombstones, so the
+ * graph remains navigable, but are never returned. Filtered searches keep exploring until enough
+ * matching nodes were found. Returned embeddings are normalized.
+ * </p>
+ * <p>
+ * With a file, the graph is loaded from it when the store is created and written to it, atomically, by
+ * {@link #save()} and on {@link #close()}; embeddings added since the last save are lost on a crash.
+ * A file that cannot be loaded is moved aside with a {@code .corrupt} suffix and the store starts
+ * empty, to be filled again as pages are embedded.
+ * </p>
+ */
+@Slf4j
+public class HnswEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+
+    private static final int MAGIC = 0x484E5357;
+    private static final int VERSION = 1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+    private final Path file;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object growLock = new Object();
+    private final Object entryLock = new Object();
+    private final Object saveLock = new Object();
+    private final ConcurrentHashMap<String, Integer> nodesById = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<VisitedSet> visitedSets = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger deletedCount = new AtomicInteger();
+
+    private volatile Node[] nodes = new Node[INITIAL_CAPACITY];
+    private volatile int nodeCount;
+    private volatile EntryPoint entryPoint;
+    private volatile int dimension;
+
+    /**
+     * @param m              the number of neighbours of a node on the upper layers; twice as many are kept on the bottom layer.
+     * @param efConstruction the number of candidates considered when linking a new node.
+     * @param efSearch       the number of candidates kept while searching; at least the number of requested results is used.
+     * @param file           the file the graph is loaded from and saved to, or null to keep it in memory only.
+     */
+    public HnswEmbeddingStore(int m, int efConstruction, int efSearch, Path file) {
+        if (m < 2 || efConstruction < 1 || efSearch < 1) {
+            throw new IllegalArgumentException("m must be at least 2, efConstruction and efSearch at least 1");
+        }
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.file = file;
+        if (file != null && Files.exists(file)) {
+            try {
+                load(file);
+                log.info("Loaded embedding index {} with {} embeddings", file, size());
+            } catch (IOException | RuntimeException e) {
+                clear();
+                moveAsideCorruptFile(e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of live embeddings.
+     */
+    public int size() {
+        return nodeCount - deletedCount.get();
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding, null);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        add(id, embedding, null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding, textSegment);
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, textSegments);
+        return ids;
+    }
+
+    /**
+     * Adds the embeddings one after the other, replacing the embeddings with the same ids. Several
+     * callers may add concurrently.
+     */
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        if (ids.size() != embeddings.size() || (textSegments != null && textSegments.size() != embeddings.size())) {
+            throw new IllegalArgumentException("ids, embeddings and text segments must have the same size");
+        }
+        for (int i = 0; i < embeddings.size(); i++) {
+            add(ids.get(i), embeddings.get(i), textSegments == null ? null : textSegments.get(i));
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        removeAll(List.of(id));
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lock.readLock().lock();
+        try {
+            for (String id : ids) {
+                Integer index = nodesById.remove(id);
+                if (index != null) {
+                    markDeleted(index);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        List<String> matchingIds = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int count = nodeCount;
+            for (int i = 0; i < count; i++) {
+                Node node = node(i);
+                if (!node.deleted && node.segment != null && filter.test(node.segment.metadata())) {
+                    matchingIds.add(node.id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        removeAll(matchingIds);
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        if (request.maxResults() <= 0) {
+            return new EmbeddingSearchResult<>(List.of());
+        }
+        lock.readLock().lock();
+        try {
+            EntryPoint entry = entryPoint;
+            if (entry == null) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            float[] query = normalized(request.queryEmbedding().vector());
+            if (query.length != dimension) {
+                throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + query.length);
+            }
+
+            int current = entry.node();
+            for (int level = entry.level(); level > 0; level--) {
+                current = greedySearch(query, current, level);
+            }
+            Filter filter = request.filter();
+            IntPredicate accept = index -> {
+                Node node = node(index);
+                return !node.deleted && (filter == null || (node.segment != null && filter.test(node.segment.metadata())));
+            };
+            NodeHeap results = searchLayer(query, current, Math.max(efSearch, request.maxResults()), 0, accept);
+
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(results.size());
+            while (results.size() > 0) {
+                double score = RelevanceScore.fromCosineSimilarity(results.topScore());
+                Node node = node(results.pop());
+                if (score >= request.minScore()) {
+                    matches.add(new EmbeddingMatch<>(score, node.id, Embedding.from(node.vector.clone()), node.segment));
+                }
+            }
+            matches.sort(Comparator.comparingDouble(EmbeddingMatch<TextSegment>::score).reversed());
+            return new EmbeddingSearchResult<>(matches.size() > request.maxResults() ? matches.subList(0, request.maxResults()) : matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the graph to the file, replacing the previous copy atomically once the new one is on disk.
+     * <p>
+     * Searches and inserts continue while the graph is written: the nodes present when the save starts
+     * are written, without the links to nodes inserted since. Only {@link #removeAll()} waits for it.
+     * </p>
+     */
+    public void save() {
+        if (file == null) {
+            return;
+        }
+        synchronized (saveLock) {
+            lock.readLock().lock();
+            try {
+                Path directory = file.toAbsolutePath().getParent();
+                Files.createDirectories(directory);
+                Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+                try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE);
+                     DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+                    int savedNodes = write(output);
+                    output.flush();
+                    channel.force(true);
+                    log.info("Saved embedding index {} with {} nodes", file, savedNodes);
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(temporaryFile);
+                    throw e;
+                }
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                forceDirectory(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to save embedding index " + file, e);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        save();
+    }
+
+    private void clear() {
+        nodes = new Node[INITIAL_CAPACITY];
+        nodeCount = 0;
+        entryPoint = null;
+        dimension = 0;
+        nodesById.clear();
+        deletedCount.set(0);
+    }
+
+    private void moveAsideCorruptFile(Exception error) {
+        Path corruptFile = file.resolveSibling(file.getFileName() + ".corrupt");
+        log.error("Unable to load embedding index {}, starting with an empty index and keeping the file as {}: {}",
+                file, corruptFile, error.getMessage(), error);
+        try {
+            Files.move(file, corruptFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Unable to move corrupt embedding index {} aside: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Syncs the directory so that the rename of the saved file survives a crash. Some platforms cannot
+     * open a directory; the rename is then left to the file system.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Unable to sync directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private void add(String id, Embedding embedding, TextSegment segment) {
+        lock.readLock().lock();
+        try {
+            insert(id, normalized(embedding.vector()), segment, randomLevel());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(String id, float[] vector, TextSegment segment, int level) {
+        Node node = new Node(id, vector, segment, level);
+        int index;
+        synchronized (growLock) {
+            if (dimension == 0) {
+                dimension = vector.length;
+            } else if (vector.length != dimension) {
+                throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+            }
+            index = nodeCount;
+            Node[] currentNodes = nodes;
+            if (index == currentNodes.length) {
+                currentNodes = Arrays.copyOf(currentNodes, currentNodes.length * 2);
+            }
+            currentNodes[index] = node;
+            nodes = currentNodes;
+            nodeCount = index + 1;
+        }
+        Integer replacedIndex = nodesById.put(id, index);
+        if (replacedIndex != null) {
+            markDeleted(replacedIndex);
+        }
+
+        EntryPoint entry = entryPoint;
+        if (entry == null) {
+            synchronized (entryLock) {
+                if (entryPoint == null) {
+                    entryPoint = new EntryPoint(index, level);
+                    return;
+                }
+                entry = entryPoint;
+            }
+        }
+
+        int current = entry.node();
+        for (int layer = entry.level(); layer > level; layer--) {
+            current = greedySearch(vector, current, layer);
+        }
+        // The node only becomes reachable through the links back to it, so these are added once all of
+        // its own layers are linked; otherwise a concurrent insert could descend into it, find nothing
+        // around it on the lower layers and end up poorly linked itself.
+        int topLayer = Math.min(level, entry.level());
+        for (int layer = topLayer; layer >= 0; layer--) {
+            NodeHeap candidates = searchLayer(vector, current, efConstruction, layer, null);
+            int[] neighbours = selectNeighbours(vector, candidates, maxNeighbours(layer));
+            node.neighbours.set(layer, neighbours);
+            current = neighbours.length > 0 ? neighbours[0] : current;
+        }
+        for (int layer = topLayer; layer >= 0; layer--) {
+            for (int neighbour : node.neighbours.get(layer)) {
+                link(neighbour, index, layer);
+            }
+        }
+
+        if (level > entry.level()) {
+            synchronized (entryLock) {
+                if (level > entryPoint.level()) {
+                    entryPoint = new EntryPoint(index, level);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a link from {@code from} to {@code to}, pruning the links of {@code from} with the
+     * neighbour selection heuristic when it has too many.
+     */
+    private void link(int from, int to, int layer) {
+        Node node = node(from);
+        synchronized (node) {
+            int[] neighbours = node.neighbours.get(layer);
+            for (int neighbour : neighbours) {
+                if (neighbour == to) {
+                    return;
+                }
+            }
+            int[] linked = Arrays.copyOf(neighbours, neighbours.length + 1);
+            linked[neighbours.length] = to;
+            node.neighbours.set(layer, linked.length <= maxNeighbours(layer) ? linked : prune(node.vector, linked, maxNeighbours(layer)));
+        }
+    }
+
+    private int[] prune(float[] vector, int[] neighbours, int maxNeighbours) {
+        NodeHeap candidates = new NodeHeap(neighbours.length, false);
+        for (int neighbour : neighbours) {
+            candidates.push(neighbour, similarity(vector, neighbour));
+        }
+        return selectNeighbours(vector, candidates, maxNeighbours);
+    }
+
+    /**
+     * Picks up to {@code maxNeighbours} of the candidates, best first, skipping a candidate that is
+     * closer to an already picked neighbour than to the node itself, so links point in diverse
+     * directions. Consumes the candidates.
+     */
+    private int[] selectNeighbours(float[] vector, NodeHeap candidates, int maxNeighbours) {
+        int count = candidates.size();
+        int[] byScore = new int[count];
+        float[] scores = new float[count];
+        for (int i = count - 1; i >= 0; i--) {
+            scores[i] = candidates.topScore();
+            byScore[i] = candidates.pop();
+        }
+        if (!candidates.isMinHeap()) {
+            reverse(byScore, scores);
+        }
+
+        int[] selected = new int[Math.min(maxNeighbours, count)];
+        int selectedCount = 0;
+        for (int i = 0; i < count && selectedCount < selected.length; i++) {
+            float[] candidateVector = node(byScore[i]).vector;
+            boolean diverse = true;
+            for (int j = 0; j < selectedCount && diverse; j++) {
+                diverse = dot(candidateVector, node(selected[j]).vector, 0, dimension) <= scores[i];
+            }
+            if (diverse) {
+                selected[selectedCount++] = byScore[i];
+            }
+        }
+        return Arrays.copyOf(selected, selectedCount);
+    }
+
+    private static void reverse(int[] nodes, float[] scores) {
+        for (int i = 0, j = nodes.length - 1; i < j; i++, j--) {
+            int node = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = node;
+            float score = scores[i];
+            scores[i] = scores[j];
+            scores[j] = score;
+        }
+    }
+
+    private int greedySearch(float[] query, int start, int layer) {
+        int current = start;
+        float best = similarity(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : node(current).neighbours.get(layer)) {
+                float score = similarity(query, neighbour);
+                if (score > best) {
+                    best = score;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Explores one layer best-first from the entry node.
+     *
+     * @param accept the nodes that may be returned, or null for all; the others are still explored.
+     * @return a min-heap of the {@code ef} most similar accepted nodes.
+     */
+    private NodeHeap searchLayer(float[] query, int entry, int ef, int layer, IntPredicate accept) {
+        NodeHeap candidates = new NodeHeap(ef * 2, false);
+        NodeHeap results = new NodeHeap(ef + 1, true);
+        VisitedSet visited = visitedSet();
+        try {
+            visited.visit(entry);
+            float entryScore = similarity(query, entry);
+            candidates.push(entry, entryScore);
+            if (accept == null || accept.test(entry)) {
+                results.push(entry, entryScore);
+            }
+            while (candidates.size() > 0) {
+                if (results.size() >= ef && candidates.topScore() < results.topScore()) {
+                    break;
+                }
+                int candidate = candidates.pop();
+                for (int neighbour : node(candidate).neighbours.get(layer)) {
+                    if (!visited.visit(neighbour)) {
+                        continue;
+                    }
+                    float score = similarity(query, neighbour);
+                    if (results.size() < ef || score > results.topScore()) {
+                        candidates.push(neighbour, score);
+                        if (accept == null || accept.test(neighbour)) {
+                            results.push(neighbour, score);
+                            if (results.size() > ef) {
+                                results.pop();
+                            }
+                        }
+                    }
+                }
+            }
+            return results;
+        } finally {
+            visitedSets.offer(visited);
+        }
+    }
+
+    private VisitedSet visitedSet() {
+        VisitedSet visited = visitedSets.poll();
+        if (visited == null) {
+            visited = new VisitedSet();
+        }
+        visited.reset(nodeCount);
+        return visited;
+    }
+
+    private void markDeleted(int index) {
+        Node node = node(index);
+        if (!node.deleted) {
+            node.deleted = true;
+            deletedCount.incrementAndGet();
+        }
+    }
+
+    private Node node(int index) {
+        return nodes[index];
+    }
+
+    private float similarity(float[] query, int index) {
+        return dot(query, node(index).vector, 0, query.length);
+    }
+
+    private int maxNeighbours(int layer) {
+        return layer == 0 ? 2 * m : m;
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+    }
+
+    private static float[] normalized(float[] vector) {
+        float inverseNorm = inverseNorm(vector);
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * inverseNorm;
+        }
+        return normalized;
+    }
+
+    /**
+     * Writes the nodes inserted when the write starts. The entry point is read first, so it is one of
+     * them. Links to later nodes are left out, and a node replaced by a later node is written as live,
+     * since the node replacing it is not written.
+     *
+     * @return the number of nodes written.
+     */
+    private int write(DataOutputStream output) throws IOException {
+        EntryPoint entry = entryPoint;
+        int count = nodeCount;
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(m);
+        output.writeInt(dimension);
+        output.writeInt(count);
+        output.writeInt(entry == null ? -1 : entry.node());
+        output.writeInt(entry == null ? -1 : entry.level());
+        for (int i = 0; i < count; i++) {
+            Node node = node(i);
+            Integer replacement = nodesById.get(node.id);
+            output.writeUTF(node.id);
+            output.writeBoolean(node.deleted && (replacement == null || replacement < count));
+            for (float component : node.vector) {
+                output.writeFloat(component);
+            }
+            TextSegmentCodec.write(output, node.segment);
+            output.writeInt(node.neighbours.length());
+            for (int layer = 0; layer < node.neighbours.length(); layer++) {
+                int[] neighbours = node.neighbours.get(layer);
+                int saved = 0;
+                for (int neighbour : neighbours) {
+                    if (neighbour < count) {
+                        saved++;
+                    }
+                }
+                output.writeInt(saved);
+                for (int neighbour : neighbours) {
+                    if (neighbour < count) {
+                        output.writeInt(neighbour);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private void load(Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not an embedding index: " + file);
+            }
+            int savedM = input.readInt();
+            if (savedM != m) {
+                log.warn("Embedding index {} was built with m={}, new nodes are linked with m={}", file, savedM, m);
+            }
+            dimension = input.readInt();
+            int count = input.readInt();
+            int entryNode = input.readInt();
+            int entryLevel = input.readInt();
+
+            Node[] loadedNodes = new Node[Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(count, 1)) * 2)];
+            for (int i = 0; i < count; i++) {
+                String id = input.readUTF();
+                boolean deleted = input.readBoolean();
+                float[] vector = new float[dimension];
+                for (int j = 0; j < dimension; j++) {
+                    vector[j] = input.readFloat();
+                }
+                TextSegment segment = TextSegmentCodec.read(input);
+                int layers = input.readInt();
+                Node node = new Node(id, vector, segment, layers - 1);
+                for (int layer = 0; layer < layers; layer++) {
+                    int[] neighbours = new int[input.readInt()];
+                    for (int j = 0; j < neighbours.length; j++) {
+                        neighbours[j] = input.readInt();
+                    }
+                    node.neighbours.set(layer, neighbours);
+                }
+                node.deleted = deleted;
+                if (deleted) {
+                    deletedCount.incrementAndGet();
+                } else {
+                    Integer replacedIndex = nodesById.put(id, i);
+                    if (replacedIndex != null) {
+                        loadedNodes[replacedIndex].deleted = true;
+                        deletedCount.incrementAndGet();
+                    }
+                }
+                loadedNodes[i] = node;
+            }
+            nodes = loadedNodes;
+            nodeCount = count;
+            entryPoint = entryNode < 0 ? null : new EntryPoint(entryNode, entryLevel);
+        }
+    }
+
+    /**
+     * A node of the graph.
+     */
+    private static final class Node {
+
+        private static final int[] NO_NEIGHBOURS = new int[0];
+
+        private final String id;
+        private final float[] vector;
+        private final TextSegment segment;
+        private final AtomicReferenceArray<int[]> neighbours;
+        private volatile boolean deleted;
+
+        private Node(String id, float[] vector, TextSegment segment, int level) {
+            this.id = id;
+            this.vector = vector;
+            this.segment = segment;
+            this.neighbours = new AtomicReferenceArray<>(level + 1);
+            for (int layer = 0; layer <= level; layer++) {
+                neighbours.set(layer, NO_NEIGHBOURS);
+            }
+        }
+    }
+
+    /**
+     * The node searches start from, on the highest layer.
+     */
+    private record EntryPoint(int node, int level) {
+    }
+
+    /**
+     * A binary heap of nodes keyed by similarity, with the least similar node on top for a min-heap and
+     * the most similar one for a max-heap.
+     */
+    private static final class NodeHeap {
+
+        private final boolean minHeap;
+        private int[] nodes;
+        private float[] scores;
+        private int size;
+
+        private NodeHeap(int capacity, boolean minHeap) {
+            this.minHeap = minHeap;
+            this.nodes = new int[Math.max(capacity, 1)];
+            this.scores = new float[Math.max(capacity, 1)];
+        }
+
+        boolean isMinHeap() {
+            return minHeap;
+        }
+
+        int size() {
+            return size;
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(score, scores[parent])) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            float lastScore = scores[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(scores[child + 1], scores[child])) {
+                    child++;
+                }
+                if (!before(scores[child], lastScore)) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            scores[i] = lastScore;
+            return top;
+        }
+
+        private boolean before(float score, float other) {
+            return minHeap ? score < other : score > other;
+        }
+    }
+
+    /**
+     * The nodes visited by one search, reset in constant time between searches by bumping an epoch.
+     */
+    private static final class VisitedSet {
+
+        private int[] marks = new int[INITIAL_CAPACITY];
+        private int epoch;
+
+        void reset(int nodeCount) {
+            if (marks.length < nodeCount) {
+                marks = new int[Math.max(nodeCount, marks.length * 2)];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        /**
+         * @return true if the node was not visited yet.
+         */
+        boolean visit(int node) {
+            if (node >= marks.length) {
+                marks = Arrays.copyOf(marks, Math.max(node + 1, marks.length * 2));
+            }
+            if (marks[node] == epoch) {
+                return false;
+            }
+            marks[node] = epoch;
+            return true;
+        }
+    }
+}
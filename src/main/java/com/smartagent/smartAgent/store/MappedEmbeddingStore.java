@@ -0,0 +1,1064 @@
+package com.smartagent.smartAgent.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static com.smartagent.smartAgent.utility.VectorUtility.dot;
+import static com.smartagent.smartAgent.utility.VectorUtility.inverseNorm;
+
+/**
+ * {@link EmbeddingStore} that keeps its vectors in a memory-mapped file and survives restarts.
+ * <p>
+ * Two append-only files make up the store:
+ * <ul>
+ *     <li>a vector file of normalized vectors packed as little-endian floats, one fixed-size slot per
+ *     added embedding, mapped into memory in chunks of about {@value #CHUNK_BYTES} bytes. A search scans
+ *     the mapped chunks in place, so the vectors cost no heap and are paged in by the OS;</li>
+ *     <li>a log with one checksummed record per added segment or deleted id. The heap only holds the id
+ *     and the log position of each slot; segments are read back for the matches of a search only.</li>
+ * </ul>
+ * The log is the commit record: a vector is written and flushed before its log record, and reopening
+ * the store replays the log, stopping at the first torn or corrupt record and cutting the files back to
+ * it. Reopening therefore costs one sequential read of the log, not of the vectors.
+ * </p>
+ * <p>
+ * Deleting an id writes a tombstone. Once tombstones make up more than the compaction threshold of the
+ * slots, the live slots are copied to a new generation of files on the compaction executor, without
+ * blocking searches or writes, and the store switches to it by atomically replacing a small
+ * {@code CURRENT} file. The new generation and {@code CURRENT} are synced to disk before the old
+ * generation is deleted, and a compacted vector file only gets its header once complete, so if
+ * {@code CURRENT} is lost, the store reopens the newest generation with a valid header.
+ * </p>
+ * <p>
+ * An interrupt during I/O closes a {@link FileChannel} for every thread. The store then reopens the
+ * channel: the interrupted call fails, but the store stays usable. Returned embeddings are normalized.
+ * The store is thread-safe.
+ * </p>
+ */
+@Slf4j
+public class MappedEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+
+    static final long CHUNK_BYTES = 64L * 1024 * 1024;
+    static final int COMPACTION_MIN_TOMBSTONES = 64;
+
+    private static final int MAGIC = 0x56454353;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final byte ADD = 1;
+    private static final byte DELETE = 2;
+    private static final String CURRENT_FILE = "CURRENT";
+
+    private final Path directory;
+    private final double compactionThreshold;
+    private final Executor compactionExecutor;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final AtomicLong lastGeneration = new AtomicLong();
+
+    private long generation;
+    private GenerationFiles files;
+    private int dimension;
+    private int chunkSlots;
+    private List<FloatBuffer> chunks = new ArrayList<>();
+    private List<MappedByteBuffer> mappedChunks = new ArrayList<>();
+    private List<String> ids = new ArrayList<>();
+    private long[] recordOffsets = new long[1024];
+    private BitSet tombstones = new BitSet();
+    private Map<String, Integer> slotsById = new HashMap<>();
+    private long logLength;
+
+    /**
+     * Opens the store in the given directory, creating it if needed.
+     *
+     * @param directory           the directory holding the store's files.
+     * @param compactionThreshold the fraction of deleted slots above which the store is compacted.
+     * @param compactionExecutor  runs compactions in the background.
+     */
+    public MappedEmbeddingStore(Path directory, double compactionThreshold, Executor compactionExecutor) {
+        this.directory = directory;
+        this.compactionThreshold = compactionThreshold;
+        this.compactionExecutor = compactionExecutor;
+        try {
+            Files.createDirectories(directory);
+            generation = readCurrentGeneration();
+            lastGeneration.set(generation);
+            deleteOtherGenerations(generation);
+            files = GenerationFiles.open(directory, generation);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open embedding store in " + directory, e);
+        }
+        log.info("Opened embedding store {} with {} embeddings", directory, size());
+    }
+
+    /**
+     * @return the number of live embeddings.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size() - tombstones.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), null);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, textSegments);
+        return ids;
+    }
+
+    /**
+     * Adds the embeddings, replacing the embeddings with the same ids. The vectors and their log records
+     * are flushed to disk before the call returns.
+     */
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        if (ids.size() != embeddings.size() || (textSegments != null && textSegments.size() != embeddings.size())) {
+            throw new IllegalArgumentException("ids, embeddings and text segments must have the same size");
+        }
+        if (embeddings.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (dimension == 0) {
+                initVectorFile(embeddings.getFirst().dimension());
+            }
+            int firstSlot = this.ids.size();
+            for (int i = 0; i < embeddings.size(); i++) {
+                float[] vector = embeddings.get(i).vector();
+                if (vector.length != dimension) {
+                    throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+                }
+                writeVector(firstSlot + i, vector);
+            }
+            forceVectors(firstSlot, this.ids.size() + embeddings.size());
+
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            long[] offsets = new long[embeddings.size()];
+            for (int i = 0; i < embeddings.size(); i++) {
+                offsets[i] = logLength + records.size();
+                writeRecord(records, addPayload(ids.get(i), textSegments == null ? null : textSegments.get(i)));
+            }
+            appendToLog(records.toByteArray());
+            for (int i = 0; i < embeddings.size(); i++) {
+                addSlot(ids.get(i), offsets[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to add embeddings to " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        maybeCompact();
+    }
+
+    @Override
+    public void remove(String id) {
+        removeAll(List.of(id));
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            List<String> removedIds = new ArrayList<>();
+            for (String id : ids) {
+                if (slotsById.containsKey(id)) {
+                    writeRecord(records, deletePayload(id));
+                    removedIds.add(id);
+                }
+            }
+            if (removedIds.isEmpty()) {
+                return;
+            }
+            appendToLog(records.toByteArray());
+            removedIds.forEach(this::deleteSlot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to remove embeddings from " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        maybeCompact();
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        List<String> matchingIds = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int slot = tombstones.nextClearBit(0); slot < ids.size(); slot = tombstones.nextClearBit(slot + 1)) {
+                TextSegment segment = readSegment(slot);
+                if (segment != null && filter.test(segment.metadata())) {
+                    matchingIds.add(ids.get(slot));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read embeddings from " + directory, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        removeAll(matchingIds);
+    }
+
+    /**
+     * Removes every embedding by switching to a new, empty generation of files.
+     */
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            long newGeneration = lastGeneration.incrementAndGet();
+            GenerationFiles newFiles = GenerationFiles.open(directory, newGeneration);
+            try {
+                switchGeneration(newGeneration, newFiles);
+            } catch (IOException | RuntimeException e) {
+                if (files != newFiles) {
+                    newFiles.delete();
+                }
+                throw e;
+            }
+            dimension = 0;
+            chunkSlots = 0;
+            chunks = new ArrayList<>();
+            mappedChunks = new ArrayList<>();
+            ids = new ArrayList<>();
+            recordOffsets = new long[1024];
+            tombstones = new BitSet();
+            slotsById = new HashMap<>();
+            logLength = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to clear embedding store " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the best matches, scanning the mapped vectors in place. Only the segments of the
+     * returned matches are read from the log, and, with a filter, those of the candidates good enough
+     * to enter the result.
+     */
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        if (request.maxResults() <= 0) {
+            return new EmbeddingSearchResult<>(List.of());
+        }
+        lock.readLock().lock();
+        try {
+            if (ids.isEmpty()) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            float[] queryVector = request.queryEmbedding().vector();
+            if (queryVector.length != dimension) {
+                throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + queryVector.length);
+            }
+            float queryInverseNorm = inverseNorm(queryVector);
+            Filter filter = request.filter();
+
+            PriorityQueue<Candidate> topCandidates = new PriorityQueue<>(request.maxResults() + 1, Comparator.comparingDouble(Candidate::score));
+            int slotCount = ids.size();
+            for (int chunk = 0; chunk < chunks.size(); chunk++) {
+                FloatBuffer vectors = chunks.get(chunk);
+                int firstSlot = chunk * chunkSlots;
+                int lastSlot = Math.min(slotCount, firstSlot + chunkSlots);
+                for (int slot = firstSlot; slot < lastSlot; slot++) {
+                    if (tombstones.get(slot)) {
+                        continue;
+                    }
+                    double score = RelevanceScore.fromCosineSimilarity(dot(queryVector, vectors, (slot - firstSlot) * dimension, dimension) * queryInverseNorm);
+                    if (score < request.minScore()
+                            || (topCandidates.size() == request.maxResults() && score <= topCandidates.peek().score())) {
+                        continue;
+                    }
+                    TextSegment segment = null;
+                    if (filter != null) {
+                        segment = readSegment(slot);
+                        if (segment == null || !filter.test(segment.metadata())) {
+                            continue;
+                        }
+                    }
+                    topCandidates.add(new Candidate(slot, score, segment));
+                    if (topCandidates.size() > request.maxResults()) {
+                        topCandidates.poll();
+                    }
+                }
+            }
+
+            List<Candidate> candidates = new ArrayList<>(topCandidates);
+            candidates.sort(Comparator.comparingDouble(Candidate::score).reversed());
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(candidates.size());
+            for (Candidate candidate : candidates) {
+                TextSegment segment = filter != null ? candidate.segment() : readSegment(candidate.slot());
+                matches.add(new EmbeddingMatch<>(candidate.score(), ids.get(candidate.slot()), Embedding.from(readVector(candidate.slot())), segment));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to search embedding store " + directory, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the live slots to a new generation of files and switches to it.
+     * <p>
+     * The copy runs without the lock, since slots and log records are never modified once written.
+     * Only the slots added and the ids deleted while copying are applied under the write lock, just
+     * before the switch.
+     * </p>
+     */
+    public void compact() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            compactNow();
+        } catch (IOException e) {
+            log.error("Error compacting embedding store {}: {}", directory, e.getMessage(), e);
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            files.close();
+        } catch (IOException e) {
+            log.warn("Error closing embedding store {}: {}", directory, e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void maybeCompact() {
+        int deleted;
+        int slots;
+        lock.readLock().lock();
+        try {
+            deleted = tombstones.cardinality();
+            slots = ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (deleted >= COMPACTION_MIN_TOMBSTONES && deleted > slots * compactionThreshold && !compacting.get()) {
+            compactionExecutor.execute(this::compact);
+        }
+    }
+
+    private void compactNow() throws IOException {
+        long snapshotGeneration;
+        GenerationFiles snapshotFiles;
+        int snapshotSlots;
+        BitSet snapshotTombstones;
+        long[] snapshotOffsets;
+        List<FloatBuffer> snapshotChunks;
+        int snapshotDimension;
+        int snapshotChunkSlots;
+        lock.readLock().lock();
+        try {
+            snapshotGeneration = generation;
+            snapshotFiles = files;
+            snapshotSlots = ids.size();
+            snapshotTombstones = (BitSet) tombstones.clone();
+            snapshotOffsets = Arrays.copyOf(recordOffsets, snapshotSlots);
+            snapshotChunks = List.copyOf(chunks);
+            snapshotDimension = dimension;
+            snapshotChunkSlots = chunkSlots;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (snapshotDimension == 0) {
+            return;
+        }
+
+        long newGeneration = lastGeneration.incrementAndGet();
+        GenerationFiles newFiles = GenerationFiles.open(directory, newGeneration);
+        Compaction compaction = new Compaction(newFiles, snapshotDimension);
+        try {
+            for (int slot = snapshotTombstones.nextClearBit(0); slot < snapshotSlots; slot = snapshotTombstones.nextClearBit(slot + 1)) {
+                compaction.copy(slot, snapshotFiles, snapshotOffsets[slot], snapshotChunks, snapshotChunkSlots);
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (generation != snapshotGeneration) {
+                    newFiles.delete();
+                    return;
+                }
+                for (int slot = snapshotTombstones.nextClearBit(0); slot < snapshotSlots; slot = snapshotTombstones.nextClearBit(slot + 1)) {
+                    if (tombstones.get(slot)) {
+                        compaction.delete(ids.get(slot));
+                    }
+                }
+                for (int slot = snapshotSlots; slot < ids.size(); slot++) {
+                    if (!tombstones.get(slot)) {
+                        compaction.copy(slot, files, recordOffsets[slot], chunks, chunkSlots);
+                    }
+                }
+                compaction.finish();
+
+                int removedSlots = ids.size() - compaction.ids.size();
+                switchGeneration(newGeneration, newFiles);
+                chunkSlots = chunkSlotsFor(dimension);
+                chunks = new ArrayList<>();
+                mappedChunks = new ArrayList<>();
+                ids = compaction.ids;
+                recordOffsets = compaction.offsets;
+                tombstones = compaction.tombstones;
+                slotsById = compaction.slotsById;
+                logLength = compaction.logLength;
+                ensureMapped(ids.size());
+                log.info("Compacted embedding store {}: removed {} deleted slots, {} embeddings left", directory, removedSlots, size());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            newFiles.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Points {@code CURRENT} to the new generation and deletes the old one. The old generation is only
+     * deleted once the new {@code CURRENT} is on disk, so a crash leaves one of them readable.
+     */
+    private void switchGeneration(long newGeneration, GenerationFiles newFiles) throws IOException {
+        Path temporaryFile = Files.createTempFile(directory, CURRENT_FILE, ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.wrap(Long.toString(newGeneration).getBytes(StandardCharsets.US_ASCII)), 0);
+            channel.force(true);
+        }
+        Files.move(temporaryFile, directory.resolve(CURRENT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+        GenerationFiles oldFiles = files;
+        files = newFiles;
+        generation = newGeneration;
+        oldFiles.delete();
+    }
+
+    /**
+     * Makes the renames and new files of the directory durable. Not every platform can open a
+     * directory, there the rename is as durable as the file system makes it.
+     */
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Unable to sync directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private long readCurrentGeneration() throws IOException {
+        Path currentFile = directory.resolve(CURRENT_FILE);
+        if (!Files.exists(currentFile)) {
+            return newestValidGeneration();
+        }
+        try {
+            return Long.parseLong(Files.readString(currentFile).trim());
+        } catch (NumberFormatException | IOException e) {
+            long newestGeneration = newestValidGeneration();
+            log.warn("Unreadable {}, opening the newest valid generation {} instead: {}", currentFile, newestGeneration, e.getMessage());
+            return newestGeneration;
+        }
+    }
+
+    /**
+     * @return the newest generation whose vector file has a valid header, or is empty along with its
+     * log, or 0 if there is none.
+     */
+    private long newestValidGeneration() throws IOException {
+        long newestGeneration = 0;
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : paths.toList()) {
+                long generation = GenerationFiles.vectorsGenerationOf(path.getFileName().toString());
+                if (generation > newestGeneration && isValidGeneration(generation)) {
+                    newestGeneration = generation;
+                }
+            }
+        }
+        return newestGeneration;
+    }
+
+    private boolean isValidGeneration(long generation) throws IOException {
+        Path vectorsPath = directory.resolve(GenerationFiles.vectorsFileName(generation));
+        Path logPath = directory.resolve(GenerationFiles.logFileName(generation));
+        if (!Files.exists(logPath)) {
+            return false;
+        }
+        long vectorsSize = Files.size(vectorsPath);
+        if (vectorsSize == 0) {
+            return Files.size(logPath) == 0;
+        }
+        if (vectorsSize < HEADER_BYTES) {
+            return false;
+        }
+        try (FileChannel vectors = FileChannel.open(vectorsPath, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(vectors, header, 0);
+            header.flip();
+            return header.getInt() == MAGIC && header.getInt() == VERSION;
+        }
+    }
+
+    private void deleteOtherGenerations(long currentGeneration) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : paths.toList()) {
+                String name = path.getFileName().toString();
+                boolean storeFile = name.startsWith(GenerationFiles.VECTORS_PREFIX) || name.startsWith(GenerationFiles.LOG_PREFIX);
+                if ((storeFile && !GenerationFiles.belongsTo(name, currentGeneration)) || name.endsWith(".tmp")) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replays the log up to its last valid record, stopping at the first torn record or checksum
+     * mismatch, and cuts both files back to it.
+     * <p>
+     * Every add record is written after its vector was forced to disk, so the valid records bound the
+     * slots. The vector file is usually longer, since mapping its last chunk grows it, and is cut back
+     * to the slots of the records. A vector file too short for them was damaged outside the store.
+     * </p>
+     */
+    private void recover() throws IOException {
+        long vectorsSize = files.onVectors(FileChannel::size);
+        if (vectorsSize >= HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(files, header, 0, false);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not an embedding store vector file: " + files.vectorsPath);
+            }
+            dimension = header.getInt();
+            chunkSlots = chunkSlotsFor(dimension);
+        }
+
+        long logSize = files.onLog(FileChannel::size);
+        long position = 0;
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (position + RECORD_HEADER_BYTES <= logSize) {
+            readFully(files, recordHeader, position, true);
+            recordHeader.flip();
+            int length = recordHeader.getInt();
+            int checksum = recordHeader.getInt();
+            if (length <= 0 || position + RECORD_HEADER_BYTES + length > logSize) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(files, payload, position + RECORD_HEADER_BYTES, true);
+            if (checksum(payload.array()) != checksum) {
+                break;
+            }
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload.array()));
+            byte operation = input.readByte();
+            String id = input.readUTF();
+            if (operation == ADD) {
+                addSlot(id, position);
+            } else if (operation == DELETE) {
+                deleteSlot(id);
+            } else {
+                break;
+            }
+            position += RECORD_HEADER_BYTES + length;
+        }
+        if (position < logSize) {
+            log.warn("Discarding {} bytes of incomplete records at the end of {}", logSize - position, files.logPath);
+            long validLength = position;
+            files.onLog(channel -> channel.truncate(validLength));
+        }
+        logLength = position;
+        if (dimension == 0 && !ids.isEmpty()) {
+            throw new IOException("Vector file " + files.vectorsPath + " has no header but its log has " + ids.size() + " embeddings");
+        }
+        if (dimension > 0) {
+            long usedVectorBytes = HEADER_BYTES + (long) ids.size() * dimension * Float.BYTES;
+            if (vectorsSize < usedVectorBytes) {
+                throw new IOException("Vector file " + files.vectorsPath + " is shorter than the " + ids.size() + " embeddings of its log");
+            }
+            if (vectorsSize > usedVectorBytes) {
+                files.onVectors(channel -> channel.truncate(usedVectorBytes));
+            }
+            ensureMapped(ids.size());
+        }
+    }
+
+    private void initVectorFile(int dimension) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(dimension)
+                .putInt(0)
+                .flip();
+        files.onVectors(channel -> {
+            writeFully(channel, header, 0);
+            channel.force(true);
+            return null;
+        });
+        this.dimension = dimension;
+        this.chunkSlots = chunkSlotsFor(dimension);
+    }
+
+    private static int chunkSlotsFor(int dimension) {
+        return (int) Math.max(1, CHUNK_BYTES / ((long) dimension * Float.BYTES));
+    }
+
+    /**
+     * Maps chunks until the given number of slots is covered. Mapping past the end of the file grows it.
+     */
+    private void ensureMapped(int slotCount) throws IOException {
+        long chunkBytes = (long) chunkSlots * dimension * Float.BYTES;
+        while ((long) chunks.size() * chunkSlots < slotCount) {
+            long chunkPosition = HEADER_BYTES + chunks.size() * chunkBytes;
+            MappedByteBuffer mapped = files.onVectors(channel -> channel.map(FileChannel.MapMode.READ_WRITE, chunkPosition, chunkBytes));
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            mappedChunks.add(mapped);
+            chunks.add(mapped.asFloatBuffer());
+        }
+    }
+
+    private void writeVector(int slot, float[] vector) throws IOException {
+        ensureMapped(slot + 1);
+        FloatBuffer chunk = chunks.get(slot / chunkSlots);
+        int offset = (slot % chunkSlots) * dimension;
+        float inverseNorm = inverseNorm(vector);
+        for (int i = 0; i < dimension; i++) {
+            chunk.put(offset + i, vector[i] * inverseNorm);
+        }
+    }
+
+    private void forceVectors(int fromSlot, int toSlot) {
+        int vectorBytes = dimension * Float.BYTES;
+        for (int chunk = fromSlot / chunkSlots; chunk <= (toSlot - 1) / chunkSlots; chunk++) {
+            int first = Math.max(fromSlot, chunk * chunkSlots) - chunk * chunkSlots;
+            int last = Math.min(toSlot, (chunk + 1) * chunkSlots) - chunk * chunkSlots;
+            mappedChunks.get(chunk).force(first * vectorBytes, (last - first) * vectorBytes);
+        }
+    }
+
+    private float[] readVector(int slot) {
+        float[] vector = new float[dimension];
+        chunks.get(slot / chunkSlots).get((slot % chunkSlots) * dimension, vector);
+        return vector;
+    }
+
+    private void addSlot(String id, long recordOffset) {
+        Integer previousSlot = slotsById.put(id, ids.size());
+        if (previousSlot != null) {
+            tombstones.set(previousSlot);
+        }
+        if (ids.size() == recordOffsets.length) {
+            recordOffsets = Arrays.copyOf(recordOffsets, recordOffsets.length * 2);
+        }
+        recordOffsets[ids.size()] = recordOffset;
+        ids.add(id);
+    }
+
+    private void deleteSlot(String id) {
+        Integer slot = slotsById.remove(id);
+        if (slot != null) {
+            tombstones.set(slot);
+        }
+    }
+
+    private void appendToLog(byte[] records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(records);
+        long position = logLength;
+        files.onLog(channel -> {
+            writeFully(channel, buffer, position);
+            channel.force(false);
+            return null;
+        });
+        logLength = position + records.length;
+    }
+
+    private TextSegment readSegment(int slot) throws IOException {
+        return readSegment(files, recordOffsets[slot]);
+    }
+
+    private static TextSegment readSegment(GenerationFiles files, long recordOffset) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(readRecord(files, recordOffset)));
+        input.readByte();
+        input.readUTF();
+        return TextSegmentCodec.read(input);
+    }
+
+    private static byte[] readRecord(GenerationFiles files, long recordOffset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        readFully(files, header, recordOffset, true);
+        ByteBuffer payload = ByteBuffer.allocate(header.flip().getInt());
+        readFully(files, payload, recordOffset + RECORD_HEADER_BYTES, true);
+        return payload.array();
+    }
+
+    /**
+     * Fills the buffer from the log or the vector file, starting over if the channel had to be reopened.
+     */
+    private static void readFully(GenerationFiles files, ByteBuffer buffer, long position, boolean fromLog) throws IOException {
+        ChannelOperation<Void> read = channel -> {
+            buffer.clear();
+            readFully(channel, buffer, position);
+            return null;
+        };
+        if (fromLog) {
+            files.onLog(read);
+        } else {
+            files.onVectors(read);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of " + channel);
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Writes the whole buffer, from its start, so that a write retried on a reopened channel writes
+     * the same bytes again.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.rewind();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static byte[] addPayload(String id, TextSegment segment) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(ADD);
+        output.writeUTF(id);
+        TextSegmentCodec.write(output, segment);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deletePayload(String id) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(DELETE);
+        output.writeUTF(id);
+        return bytes.toByteArray();
+    }
+
+    private static void writeRecord(ByteArrayOutputStream records, byte[] payload) throws IOException {
+        DataOutputStream output = new DataOutputStream(records);
+        output.writeInt(payload.length);
+        output.writeInt(checksum(payload));
+        output.write(payload);
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * A slot selected by a search, with its segment if it was read to apply the filter.
+     */
+    private record Candidate(int slot, double score, TextSegment segment) {
+    }
+
+    /**
+     * The live slots copied to a new generation of files, in their original order.
+     */
+    private static final class Compaction {
+
+        private final GenerationFiles files;
+        private final int vectorBytes;
+        private final ByteArrayOutputStream pendingRecords = new ByteArrayOutputStream();
+        private final List<String> ids = new ArrayList<>();
+        private final BitSet tombstones = new BitSet();
+        private final Map<String, Integer> slotsById = new HashMap<>();
+        private long[] offsets = new long[1024];
+        private long logLength;
+        private long vectorLength = HEADER_BYTES;
+
+        private final int dimension;
+
+        private Compaction(GenerationFiles files, int dimension) {
+            this.files = files;
+            this.dimension = dimension;
+            this.vectorBytes = dimension * Float.BYTES;
+        }
+
+        private void copy(int slot, GenerationFiles sourceFiles, long recordOffset, List<FloatBuffer> sourceChunks, int sourceChunkSlots) throws IOException {
+            FloatBuffer chunk = sourceChunks.get(slot / sourceChunkSlots);
+            ByteBuffer vector = ByteBuffer.allocate(vectorBytes).order(ByteOrder.LITTLE_ENDIAN);
+            vector.asFloatBuffer().put(0, chunk, (slot % sourceChunkSlots) * (vectorBytes / Float.BYTES), vectorBytes / Float.BYTES);
+            long position = vectorLength;
+            files.onVectors(channel -> {
+                writeFully(channel, vector, position);
+                return null;
+            });
+            vectorLength += vectorBytes;
+
+            byte[] payload = readRecord(sourceFiles, recordOffset);
+            String id = sourceIdOf(payload);
+            if (ids.size() == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[ids.size()] = logLength + pendingRecords.size();
+            Integer previousSlot = slotsById.put(id, ids.size());
+            if (previousSlot != null) {
+                tombstones.set(previousSlot);
+            }
+            ids.add(id);
+            writeRecord(pendingRecords, payload);
+            if (pendingRecords.size() >= 1 << 20) {
+                flushRecords();
+            }
+        }
+
+        private void delete(String id) throws IOException {
+            Integer slot = slotsById.remove(id);
+            if (slot != null) {
+                tombstones.set(slot);
+                writeRecord(pendingRecords, deletePayload(id));
+            }
+        }
+
+        /**
+         * Writes the remaining records and, last, the header of the vector file, so that a compaction
+         * that did not finish never leaves a generation with a valid header.
+         */
+        private void finish() throws IOException {
+            flushRecords();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(dimension)
+                    .putInt(0)
+                    .flip();
+            files.onLog(channel -> {
+                channel.force(true);
+                return null;
+            });
+            files.onVectors(channel -> {
+                channel.force(true);
+                writeFully(channel, header, 0);
+                channel.force(true);
+                return null;
+            });
+        }
+
+        private void flushRecords() throws IOException {
+            byte[] records = pendingRecords.toByteArray();
+            long position = logLength;
+            files.onLog(channel -> {
+                writeFully(channel, ByteBuffer.wrap(records), position);
+                return null;
+            });
+            logLength += records.length;
+            pendingRecords.reset();
+        }
+
+        private static String sourceIdOf(byte[] payload) throws IOException {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+            input.readByte();
+            return input.readUTF();
+        }
+    }
+
+    /**
+     * An I/O operation on a channel of a generation.
+     */
+    @FunctionalInterface
+    private interface ChannelOperation<T> {
+        T run(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * The vector file and the log of one generation.
+     * <p>
+     * A thread interrupted during an operation on a {@link FileChannel} closes the channel for every
+     * thread. The operations therefore go through {@link #onVectors} and {@link #onLog}, which reopen
+     * a channel closed that way: the interrupted operation still fails, and the operations of other
+     * threads that failed because the channel was closed under them are run again.
+     * </p>
+     */
+    private static final class GenerationFiles {
+
+        static final String VECTORS_PREFIX = "vectors-";
+        static final String LOG_PREFIX = "segments-";
+        private static final String VECTORS_SUFFIX = ".f32";
+        private static final String LOG_SUFFIX = ".log";
+
+        private final Path vectorsPath;
+        private final Path logPath;
+        private volatile FileChannel vectors;
+        private volatile FileChannel log;
+        private volatile boolean closed;
+
+        private GenerationFiles(Path vectorsPath, Path logPath) throws IOException {
+            this.vectorsPath = vectorsPath;
+            this.logPath = logPath;
+            this.vectors = openChannel(vectorsPath);
+            this.log = openChannel(logPath);
+        }
+
+        static GenerationFiles open(Path directory, long generation) throws IOException {
+            return new GenerationFiles(directory.resolve(vectorsFileName(generation)), directory.resolve(logFileName(generation)));
+        }
+
+        static String vectorsFileName(long generation) {
+            return VECTORS_PREFIX + generation + VECTORS_SUFFIX;
+        }
+
+        static String logFileName(long generation) {
+            return LOG_PREFIX + generation + LOG_SUFFIX;
+        }
+
+        static boolean belongsTo(String fileName, long generation) {
+            return fileName.equals(vectorsFileName(generation)) || fileName.equals(logFileName(generation));
+        }
+
+        /**
+         * @return the generation of a vector file name, or -1 for other files.
+         */
+        static long vectorsGenerationOf(String fileName) {
+            if (!fileName.startsWith(VECTORS_PREFIX) || !fileName.endsWith(VECTORS_SUFFIX)) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(fileName.substring(VECTORS_PREFIX.length(), fileName.length() - VECTORS_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        <T> T onVectors(ChannelOperation<T> operation) throws IOException {
+            return run(false, operation);
+        }
+
+        <T> T onLog(ChannelOperation<T> operation) throws IOException {
+            return run(true, operation);
+        }
+
+        private <T> T run(boolean onLog, ChannelOperation<T> operation) throws IOException {
+            while (true) {
+                FileChannel channel = onLog ? log : vectors;
+                try {
+                    return operation.run(channel);
+                } catch (ClosedChannelException e) {
+                    if (closed) {
+                        throw e;
+                    }
+                    reopen(onLog, channel);
+                    if (e instanceof ClosedByInterruptException || Thread.currentThread().isInterrupted()) {
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        private synchronized void reopen(boolean onLog, FileChannel closedChannel) throws IOException {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            if (onLog && log == closedChannel) {
+                log = openChannel(logPath);
+            } else if (!onLog && vectors == closedChannel) {
+                vectors = openChannel(vectorsPath);
+            }
+        }
+
+        private static FileChannel openChannel(Path path) throws IOException {
+            return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        synchronized void close() throws IOException {
+            closed = true;
+            vectors.close();
+            log.close();
+        }
+
+        void delete() throws IOException {
+            close();
+            Files.deleteIfExists(vectorsPath);
+            Files.deleteIfExists(logPath);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.smartagent.smartAgent.store;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.RelevanceScore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static com.smartagent.smartAgent.utility.VectorUtility.dot;
+import static com.smartagent.smartAgent.utility.VectorUtility.inverseNorm;
+
+/**
+ * A small, single-use vector index for the segments of one retrieval call.
+ * <p>
+ * Vectors are normalized on insert and packed into one primitive {@code float[]}, so a search is a
+ * brute-force scan of dot products over contiguous memory. The index is not shared and has no global
+ * clear: it is created for a call and dropped with it, which keeps concurrent requests isolated from
+ * each other. It is not thread-safe.
+ * </p>
+ */
+public final class RequestScopedVectorIndex {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final int expectedSize;
+    private final List<TextSegment> segments;
+    private float[] vectors;
+    private int dimension;
+
+    public RequestScopedVectorIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RequestScopedVectorIndex(int expectedSize) {
+        this.expectedSize = Math.max(expectedSize, 1);
+        this.segments = new ArrayList<>(this.expectedSize);
+    }
+
+    /**
+     * Adds a vector and the segment it was computed from.
+     *
+     * @param vector  the embedding vector; it is copied, not retained.
+     * @param segment the segment to return when the vector matches.
+     */
+    public void add(float[] vector, TextSegment segment) {
+        if (vectors == null) {
+            dimension = vector.length;
+            vectors = new float[expectedSize * dimension];
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+
+        int offset = segments.size() * dimension;
+        if (offset + dimension > vectors.length) {
+            vectors = Arrays.copyOf(vectors, Math.max(vectors.length * 2, offset + dimension));
+        }
+        float inverseNorm = inverseNorm(vector);
+        for (int i = 0; i < dimension; i++) {
+            vectors[offset + i] = vector[i] * inverseNorm;
+        }
+        segments.add(segment);
+    }
+
+    public int size() {
+        return segments.size();
+    }
+
+    /**
+     * Returns the segments most similar to the query vector, best match first.
+     *
+     * @param queryVector the query embedding.
+     * @param maxResults  the maximum number of matches to return.
+     * @param minScore    the minimum relevance score, in the same [0, 1] scale as
+     *                    {@link RelevanceScore#fromCosineSimilarity(double)}.
+     * @return the matching segments with their relevance scores.
+     */
+    public List<Match> search(float[] queryVector, int maxResults, double minScore) {
+        if (segments.isEmpty() || maxResults <= 0) {
+            return List.of();
+        }
+        if (queryVector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + queryVector.length);
+        }
+
+        float inverseNorm = inverseNorm(queryVector);
+        PriorityQueue<Match> topMatches = new PriorityQueue<>(maxResults + 1, Comparator.comparingDouble(Match::score));
+        for (int i = 0; i < segments.size(); i++) {
+            double score = RelevanceScore.fromCosineSimilarity(dot(queryVector, vectors, i * dimension, dimension) * inverseNorm);
+            if (score < minScore) {
+                continue;
+            }
+            if (topMatches.size() < maxResults) {
+                topMatches.add(new Match(segments.get(i), score));
+            } else if (score > topMatches.peek().score()) {
+                topMatches.poll();
+                topMatches.add(new Match(segments.get(i), score));
+            }
+        }
+
+        List<Match> matches = new ArrayList<>(topMatches);
+        matches.sort(Comparator.comparingDouble(Match::score).reversed());
+        return matches;
+    }
+
+    /**
+     * A segment returned by {@link #search(float[], int, double)}.
+     *
+     * @param segment the matching segment.
+     * @param score   the relevance score of the match.
+     */
+    public record Match(TextSegment segment, double score) {
+    }
+}
@@ -0,0 +1,110 @@
+package com.smartagent.smartAgent.store;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Binary encoding of optional {@link TextSegment}s and their metadata for the on-disk stores.
+ * <p>
+ * Texts are written as length-prefixed UTF-8, so they are not limited to the 64 KB of
+ * {@link DataOutput#writeUTF(String)}. Metadata values keep their type.
+ * </p>
+ */
+final class TextSegmentCodec {
+
+    private TextSegmentCodec() {
+    }
+
+    /**
+     * @param output  the output to write to.
+     * @param segment the segment to write, or null.
+     */
+    static void write(DataOutput output, TextSegment segment) throws IOException {
+        output.writeBoolean(segment != null);
+        if (segment == null) {
+            return;
+        }
+        writeString(output, segment.text());
+        Map<String, Object> metadata = segment.metadata().toMap();
+        output.writeInt(metadata.size());
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            output.writeUTF(entry.getKey());
+            switch (entry.getValue()) {
+                case String value -> {
+                    output.writeByte('s');
+                    writeString(output, value);
+                }
+                case UUID value -> {
+                    output.writeByte('u');
+                    output.writeLong(value.getMostSignificantBits());
+                    output.writeLong(value.getLeastSignificantBits());
+                }
+                case Integer value -> {
+                    output.writeByte('i');
+                    output.writeInt(value);
+                }
+                case Long value -> {
+                    output.writeByte('l');
+                    output.writeLong(value);
+                }
+                case Float value -> {
+                    output.writeByte('f');
+                    output.writeFloat(value);
+                }
+                case Double value -> {
+                    output.writeByte('d');
+                    output.writeDouble(value);
+                }
+                default -> throw new IllegalArgumentException("Unsupported metadata type " + entry.getValue().getClass());
+            }
+        }
+    }
+
+    /**
+     * @param input the input to read from.
+     * @return the segment, or null if none was written.
+     */
+    static TextSegment read(DataInput input) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+        String text = readString(input);
+        Map<String, Object> metadata = new HashMap<>();
+        int entries = input.readInt();
+        for (int i = 0; i < entries; i++) {
+            String key = input.readUTF();
+            byte type = input.readByte();
+            Object value = switch (type) {
+                case 's' -> readString(input);
+                case 'u' -> new UUID(input.readLong(), input.readLong());
+                case 'i' -> input.readInt();
+                case 'l' -> input.readLong();
+                case 'f' -> input.readFloat();
+                case 'd' -> input.readDouble();
+                default -> throw new IOException("Unknown metadata type " + type);
+            };
+            metadata.put(key, value);
+        }
+        return TextSegment.from(text, Metadata.from(metadata));
+    }
+
+    private static void writeString(DataOutput output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInput input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
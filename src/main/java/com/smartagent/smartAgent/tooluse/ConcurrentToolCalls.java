@@ -0,0 +1,304 @@
+package com.smartagent.smartAgent.tooluse;
+
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.agent.tool.ToolSpecifications;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.service.tool.DefaultToolExecutor;
+import dev.langchain4j.service.tool.ToolExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs the tool calls an assistant requests in one turn concurrently.
+ * <p>
+ * An AI service executes the tool calls of a turn one after the other. To overlap them, the chat
+ * model is wrapped with {@link #decorate(ChatLanguageModel)}, or a streaming one with
+ * {@link #decorate(StreamingChatLanguageModel)}, which records the tool calls of every answer of the
+ * model requesting several. The AI service is given the executors of {@link #tools()}: the first of
+ * them it runs in a turn starts all the calls of the turn on the executor, at most
+ * {@code maxConcurrentCallsPerTurn} at a time, with the memory id the AI service passed, and each
+ * then picks up the result of the call started for its tool call id instead of running the tool
+ * again. The AI service still adds the results in the order the model requested them, and a turn
+ * takes about as long as its slowest call.
+ * </p>
+ * <p>
+ * The AI service asks the model and runs the tool calls of a turn on the same thread, the thread
+ * answering the question or, when streaming, the one completing the model's answer, so the turns are
+ * kept per thread: tool call ids such as {@code call_0} repeat across conversations, and a question
+ * only ever picks up the calls of its own turn. Calls of a turn that were never picked up, because
+ * the AI service failed half way through it or the question was interrupted, are cancelled at the
+ * next answer of the model on that thread.
+ * </p>
+ * <p>
+ * A single tool call runs on the calling thread, as without this class.
+ * </p>
+ */
+@Slf4j
+public class ConcurrentToolCalls {
+
+    private final Map<ToolSpecification, ToolExecutor> tools = new LinkedHashMap<>();
+    private final Map<String, ToolExecutor> executorsByName = new HashMap<>();
+    private final ExecutorService executor;
+    private final int maxConcurrentCallsPerTurn;
+    /**
+     * The current turn of the question answered on this thread.
+     */
+    private final ThreadLocal<Turn> currentTurn = new ThreadLocal<>();
+
+    /**
+     * @param toolObjects               the objects whose {@link Tool} methods are offered to the model.
+     * @param executor                  runs the tool calls of a turn.
+     * @param maxConcurrentCallsPerTurn the maximum number of calls of one turn running at once.
+     */
+    public ConcurrentToolCalls(List<Object> toolObjects, ExecutorService executor, int maxConcurrentCallsPerTurn) {
+        this.executor = executor;
+        this.maxConcurrentCallsPerTurn = maxConcurrentCallsPerTurn;
+        for (Object toolObject : toolObjects) {
+            for (Method method : toolObject.getClass().getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Tool.class)) {
+                    ToolSpecification specification = ToolSpecifications.toolSpecificationFrom(method);
+                    ToolExecutor toolExecutor = new DefaultToolExecutor(toolObject, method);
+                    executorsByName.put(specification.name(), toolExecutor);
+                    tools.put(specification, (request, memoryId) -> execute(toolExecutor, request, memoryId));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the tools to give to the AI service, picking up the calls started by the decorated model.
+     */
+    public Map<ToolSpecification, ToolExecutor> tools() {
+        return tools;
+    }
+
+    /**
+     * @param model the chat model of the AI service.
+     * @return a model recording the tool calls of each turn, so they can be run concurrently.
+     */
+    public ChatLanguageModel decorate(ChatLanguageModel model) {
+        return new StartingToolCallsChatLanguageModel(model);
+    }
+
+    /**
+     * @param model the streaming chat model of the AI service.
+     * @return a model recording the tool calls of each turn, so they can be run concurrently.
+     */
+    public StreamingChatLanguageModel decorate(StreamingChatLanguageModel model) {
+        return new StartingToolCallsStreamingChatLanguageModel(model);
+    }
+
+    private void recordToolCalls(AiMessage aiMessage) {
+        cancelUnclaimedCalls();
+        if (aiMessage == null || !aiMessage.hasToolExecutionRequests()) {
+            return;
+        }
+        List<ToolExecutionRequest> requests = aiMessage.toolExecutionRequests().stream()
+                .filter(request -> request.id() != null && executorsByName.containsKey(request.name()))
+                .toList();
+        if (requests.size() < 2) {
+            return;
+        }
+
+        currentTurn.set(new Turn(requests));
+    }
+
+    private void cancelUnclaimedCalls() {
+        Turn turn = currentTurn.get();
+        if (turn != null) {
+            currentTurn.remove();
+            turn.cancel();
+        }
+    }
+
+    private String execute(ToolExecutor toolExecutor, ToolExecutionRequest request, Object memoryId) {
+        Turn turn = currentTurn.get();
+        Future<String> startedCall = turn == null || request.id() == null ? null : turn.claim(request.id(), memoryId);
+        if (turn != null && turn.isFullyClaimed()) {
+            currentTurn.remove();
+        }
+        if (startedCall == null) {
+            return toolExecutor.execute(request, memoryId);
+        }
+        try {
+            return startedCall.get();
+        } catch (InterruptedException e) {
+            startedCall.cancel(true);
+            cancelUnclaimedCalls();
+            Thread.currentThread().interrupt();
+            return "The tool call was cancelled";
+        } catch (ExecutionException e) {
+            log.error("Error in tool call {}: {}", request.name(), e.getCause().getMessage(), e.getCause());
+            return e.getCause().getMessage();
+        }
+    }
+
+    /**
+     * The tool calls of one answer of the model, started together when the first is executed.
+     */
+    private final class Turn {
+
+        private final List<ToolExecutionRequest> requests;
+        /**
+         * The started calls not picked up yet, by tool call id, or null until they are started.
+         */
+        private Map<String, Future<String>> calls;
+
+        private Turn(List<ToolExecutionRequest> requests) {
+            this.requests = requests;
+        }
+
+        private Future<String> claim(String toolCallId, Object memoryId) {
+            if (calls == null) {
+                start(memoryId);
+            }
+            return calls.remove(toolCallId);
+        }
+
+        private void start(Object memoryId) {
+            log.debug("Starting {} tool calls concurrently", requests.size());
+            Semaphore turnPermits = new Semaphore(maxConcurrentCallsPerTurn);
+            calls = new HashMap<>();
+            for (ToolExecutionRequest request : requests) {
+                ToolExecutor toolExecutor = executorsByName.get(request.name());
+                calls.put(request.id(), executor.submit(() -> {
+                    turnPermits.acquire();
+                    try {
+                        return toolExecutor.execute(request, memoryId);
+                    } finally {
+                        turnPermits.release();
+                    }
+                }));
+            }
+        }
+
+        private boolean isFullyClaimed() {
+            return calls != null && calls.isEmpty();
+        }
+
+        private void cancel() {
+            if (calls != null) {
+                calls.values().forEach(call -> call.cancel(true));
+            }
+        }
+    }
+
+    /**
+     * Delegates to the model and records the tool calls of every answer requesting several of them.
+     */
+    private final class StartingToolCallsChatLanguageModel implements ChatLanguageModel {
+
+        private final ChatLanguageModel delegate;
+
+        private StartingToolCallsChatLanguageModel(ChatLanguageModel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ChatResponse chat(ChatRequest chatRequest) {
+            ChatResponse chatResponse = delegate.chat(chatRequest);
+            recordToolCalls(chatResponse.aiMessage());
+            return chatResponse;
+        }
+
+        @Override
+        public Response<AiMessage> generate(List<ChatMessage> messages) {
+            return delegate.generate(messages);
+        }
+
+        @Override
+        public Response<AiMessage> generate(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications) {
+            Response<AiMessage> response = delegate.generate(messages, toolSpecifications);
+            recordToolCalls(response.content());
+            return response;
+        }
+
+        @Override
+        public Response<AiMessage> generate(List<ChatMessage> messages, ToolSpecification toolSpecification) {
+            Response<AiMessage> response = delegate.generate(messages, toolSpecification);
+            recordToolCalls(response.content());
+            return response;
+        }
+
+        @Override
+        public ChatRequestParameters defaultRequestParameters() {
+            return delegate.defaultRequestParameters();
+        }
+
+        @Override
+        public Set<Capability> supportedCapabilities() {
+            return delegate.supportedCapabilities();
+        }
+    }
+
+    /**
+     * Delegates to the streaming model and records the tool calls of every complete answer requesting
+     * several of them, on the thread that then hands the answer to the AI service.
+     */
+    private final class StartingToolCallsStreamingChatLanguageModel implements StreamingChatLanguageModel {
+
+        private final StreamingChatLanguageModel delegate;
+
+        private StartingToolCallsStreamingChatLanguageModel(StreamingChatLanguageModel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            delegate.chat(chatRequest, new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                    handler.onPartialResponse(partialResponse);
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    recordToolCalls(completeResponse.aiMessage());
+                    handler.onCompleteResponse(completeResponse);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    handler.onError(error);
+                }
+            });
+        }
+
+        @Override
+        public void generate(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+            delegate.generate(messages, handler);
+        }
+
+        @Override
+        public ChatRequestParameters defaultRequestParameters() {
+            return delegate.defaultRequestParameters();
+        }
+
+        @Override
+        public Set<Capability> supportedCapabilities() {
+            return delegate.supportedCapabilities();
+        }
+    }
+}
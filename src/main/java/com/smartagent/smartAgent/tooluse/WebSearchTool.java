@@ -1,28 +1,73 @@
 package com.smartagent.smartAgent.tooluse;
 
+import com.smartagent.smartAgent.retriever.PipelineProgressListener;
 import com.smartagent.smartAgent.retriever.PreprocessingContentRetriever;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.rag.content.Content;
 import dev.langchain4j.rag.query.Query;
+import io.micrometer.observation.Observation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.function.BooleanSupplier;
 
 @Slf4j
 @Component
 public class WebSearchTool {
 
+    private final PreprocessingContentRetriever preprocessingContentRetriever;
+
+    private final PipelineProgressListener progressListener;
+
+    private final BooleanSupplier cancelled;
+
+    private final Observation parentObservation;
+
     @Autowired
-    private PreprocessingContentRetriever preprocessingContentRetriever;
+    public WebSearchTool(PreprocessingContentRetriever preprocessingContentRetriever) {
+        this(preprocessingContentRetriever, PipelineProgressListener.NONE, () -> false, null);
+    }
+
+    private WebSearchTool(PreprocessingContentRetriever preprocessingContentRetriever, PipelineProgressListener progressListener,
+                          BooleanSupplier cancelled, Observation parentObservation) {
+        this.preprocessingContentRetriever = preprocessingContentRetriever;
+        this.progressListener = progressListener;
+        this.cancelled = cancelled;
+        this.parentObservation = parentObservation;
+    }
+
+    /**
+     * Returns a copy of this tool for a single streamed answer.
+     * <p>
+     * The copy reports the progress of every search to the given listener, and returns no results
+     * without searching once cancelled. A streamed answer calls its tools on the model client's threads,
+     * which know nothing of the request, so every search is run in the scope of the answer's observation
+     * to keep its trace spans under the answer.
+     * </p>
+     *
+     * @param progressListener  the listener to notify.
+     * @param cancelled         true once the answer using the tool is no longer wanted.
+     * @param parentObservation the observation of the answer, or null if it is not observed.
+     * @return a new {@link WebSearchTool} bound to the answer.
+     */
+    public WebSearchTool forAnswer(PipelineProgressListener progressListener, BooleanSupplier cancelled, Observation parentObservation) {
+        return new WebSearchTool(preprocessingContentRetriever, progressListener, cancelled, parentObservation);
+    }
 
     @Tool("Function to search for extra information in web")
     List<String> webSearch(@P("search query") String webSearchQuery) {
+        if (cancelled.getAsBoolean()) {
+            log.debug("Skipping web search for a cancelled answer");
+            return List.of();
+        }
         Query query = Query.from(webSearchQuery);
-        List<Content> webContents = preprocessingContentRetriever.retrieve(query);
+        List<Content> webContents = parentObservation == null
+                ? preprocessingContentRetriever.retrieve(query, progressListener)
+                : parentObservation.scoped(() -> preprocessingContentRetriever.retrieve(query, progressListener));
         return webContents.stream().map(Content::textSegment).map(TextSegment::text).toList();
     }
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.smartagent.smartAgent.utility;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Utility class for loading values through Caffeine caches.
+ */
+public final class CacheUtility {
+
+    private CacheUtility() {
+    }
+
+    /**
+     * Returns the cached value for the key, loading it on the calling thread if it is absent.
+     * <p>
+     * Concurrent callers asking for the same key while it is being loaded wait for that load instead
+     * of starting their own. A load that throws, including with an {@link Error}, fails all of them and
+     * is not cached, so the next caller retries it.
+     * </p>
+     * <p>
+     * A load whose thread is interrupted, because the question that started it was cancelled, is not
+     * shared, whether it throws or returns: its result is dropped from the cache and the waiting callers
+     * load the value again, so that one cancelled question does not fail the others.
+     * </p>
+     *
+     * @param cache  the cache to read from and populate.
+     * @param key    the key to look up.
+     * @param loader computes the value on a miss; it may block.
+     * @return the cached or freshly loaded value.
+     * @throws java.util.concurrent.CompletionException if the load failed.
+     */
+    public static <K, V> V getOrLoad(AsyncCache<K, V> cache, K key, Supplier<V> loader) {
+        while (true) {
+            CompletableFuture<V> load = new CompletableFuture<>();
+            CompletableFuture<V> value = cache.get(key, (k, executor) -> load);
+            if (value != load) {
+                try {
+                    return value.join();
+                } catch (CancellationException e) {
+                    // The load was abandoned by its interrupted caller; load it again
+                    continue;
+                }
+            }
+
+            V loaded;
+            try {
+                loaded = loader.get();
+            } catch (Throwable e) {
+                if (isInterruption(e)) {
+                    abandon(cache, key, load);
+                } else {
+                    load.completeExceptionally(e);
+                }
+                throw e instanceof CompletionException completionException ? completionException : new CompletionException(e);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                abandon(cache, key, load);
+            } else {
+                load.complete(loaded);
+            }
+            return loaded;
+        }
+    }
+
+    private static <K, V> void abandon(AsyncCache<K, V> cache, K key, CompletableFuture<V> load) {
+        cache.asMap().remove(key, load);
+        load.cancel(false);
+    }
+
+    /**
+     * Tells whether a failure was caused by the interruption of the current thread.
+     * <p>
+     * {@link java.io.InterruptedIOException} is not taken as a sign of interruption on its own, since
+     * its subclass {@link java.net.SocketTimeoutException} reports timeouts, which are failures to share
+     * with the waiting callers. I/O really interrupted by a cancellation leaves the interrupt flag set.
+     * </p>
+     *
+     * @param throwable the failure.
+     * @return true if the thread is interrupted or the failure was caused by an interrupt.
+     */
+    public static boolean isInterruption(Throwable throwable) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof ClosedByInterruptException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
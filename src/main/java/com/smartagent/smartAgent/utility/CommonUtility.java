@@ -1,20 +1,26 @@
 package com.smartagent.smartAgent.utility;
 
 import com.smartagent.smartAgent.assistant.DataFilterAssistant;
+import com.smartagent.smartAgent.fetcher.WebPageCache;
 import com.smartagent.smartAgent.record.llmresponse.DataFilterAssistantResponse;
+import com.smartagent.smartAgent.retriever.SharedRetrievalScope;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.openai.OpenAiTokenizer;
 import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
 import dev.langchain4j.rag.query.Query;
 import io.micrometer.common.util.StringUtils;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Utility class providing common methods for filtering, processing, and managing
@@ -25,29 +31,60 @@ import java.util.List;
 @Component
 public class CommonUtility {
 
-    public static final int MAX_TOKEN_SIZE = 8_000;
     public static final int MAX_TOKEN_SIZE_FOR_EMBEDDING = 1_000;
+    /**
+     * Parts smaller than this are not worth adding when packing content into a token budget.
+     */
+    private static final int MIN_PACKED_PART_TOKEN_SIZE = 100;
     @Autowired
     private DataFilterAssistant dataFilterAssistant;
     @Autowired
-    private OpenAiTokenizer tokenizer;
+    private TokenAccountant tokenAccountant;
+    @Autowired
+    private WebPageCache webPageCache;
+    @Autowired
+    private ObservationRegistry observationRegistry;
+    @Value("${filter-token-budget:8000}")
+    private int filterTokenBudget;
 
     /**
      * Filters relevant data from the given contents based on the provided query.
+     * <p>
+     * Content larger than {@code filter-token-budget} is split into parts under the budget, each part
+     * is filtered separately and the extracted data of all parts is joined. The {@link ContentMetadata}
+     * of the content, such as its {@link ContentMetadata#SCORE}, is kept.
+     * </p>
      *
      * @param query   The query to be used for filtering.
      * @param content The list of content to filter.
      * @return A {@link Content} object containing the relevant extracted data, or null if no relevant data is found.
      */
     public Content filterRelevantData(Query query, Content content) {
+        if (calculateTokenCount(content) <= filterTokenBudget) {
+            return filterRelevantDataWithinBudget(query, content);
+        }
+
+        List<String> extractedParts = splitContentIntoSmallerParts(content, filterTokenBudget).stream()
+                .map(part -> filterRelevantDataWithinBudget(query, part))
+                .filter(Objects::nonNull)
+                .map(part -> part.textSegment().text())
+                .toList();
+        if (extractedParts.isEmpty()) {
+            return null;
+        }
+        return Content.from(new TextSegment(String.join("\n", extractedParts), content.textSegment().metadata()), content.metadata());
+    }
+
+    private Content filterRelevantDataWithinBudget(Query query, Content content) {
         String question = query.text();
         String data = content.textSegment().text();
 
         if (StringUtils.isNotBlank(data)) {
             try {
-                DataFilterAssistantResponse dataFilterAssistantResponse = dataFilterAssistant.answer(question, data);
+                DataFilterAssistantResponse dataFilterAssistantResponse = Observation.createNotStarted("agent.pipeline.filter", observationRegistry)
+                        .observe(() -> dataFilterAssistant.answer(question, data));
                 if (StringUtils.isNotBlank(dataFilterAssistantResponse.extractedData())) {
-                    return Content.from(new TextSegment(dataFilterAssistantResponse.extractedData(), content.textSegment().metadata()));
+                    return Content.from(new TextSegment(dataFilterAssistantResponse.extractedData(), content.textSegment().metadata()), content.metadata());
                 } else {
                     return null;
                 }
@@ -61,6 +98,10 @@ public class CommonUtility {
 
     /**
      * Extracts additional content from a webpage by connecting to the URL specified in the content.
+     * <p>
+     * Pages are served from the {@link WebPageCache} when a recent copy is available, and fetched only
+     * once per {@link SharedRetrievalScope}.
+     * </p>
      *
      * @param content The content object containing the URL to extract data from.
      * @return A new {@link Content} object with the processed text, combining the original content and the web page's text.
@@ -71,8 +112,7 @@ public class CommonUtility {
         String webData = "";
 
         try {
-            Document doc = Jsoup.connect(url).get();
-            String webPageText = doc.text();
+            String webPageText = SharedRetrievalScope.current().pageText(url, () -> webPageCache.getPageText(url));
             if (StringUtils.isNotBlank(webPageText)) {
                 webData = processedText + "\n" + webPageText;
             }
@@ -86,92 +126,97 @@ public class CommonUtility {
     /**
      * Calculates the total token count of the given content list by estimating the token count
      * of each content's text segment.
+     * <p>
+     * Counts are memoized per text by the {@link TokenAccountant}, so content that is counted again
+     * further down the pipeline is not tokenized twice.
+     * </p>
      *
      * @param contents The list of content objects whose token counts are to be calculated.
      * @return The total token count across all content items.
      */
     public int calculateTokenCount(List<Content> contents) {
         return contents.stream()
-                .mapToInt(content -> tokenizer.estimateTokenCountInText(content.textSegment().text()))
+                .mapToInt(this::calculateTokenCount)
                 .sum();
     }
 
     public int calculateTokenCount(Content content) {
-        return tokenizer.estimateTokenCountInText(content.textSegment().text());
+        return tokenAccountant.countTokens(content.textSegment().text());
     }
 
     /**
-     * Splits a content object into smaller parts if its token count exceeds the maximum allowed size.
-     * Each part will contain a portion of the original content, ensuring each part stays under the token limit.
+     * Packs the most relevant contents into a token budget.
+     * <p>
+     * Contents with a {@link ContentMetadata#SCORE}, the pages condensed by embedding, come first, ranked
+     * by score with ties keeping their order. Contents without one, short pages filtered whole, follow in
+     * their retrieval order, since a score cannot be compared with a position. They are then added
+     * greedily, best first, while they fit. A content that does not fit
+     * is split, and its leading part is added if at least {@value #MIN_PACKED_PART_TOKEN_SIZE} tokens of
+     * the budget remain. The leading part is counted again once split, and split shorter if it still
+     * does not fit, so the packed contents never exceed the budget.
+     * </p>
      *
-     * @param content The content to be split into smaller parts.
-     * @return A list of smaller content parts.
+     * @param contents    The contents to pack, in retrieval order.
+     * @param tokenBudget The maximum total token count of the packed contents.
+     * @return The packed contents, most relevant first.
      */
-    private List<Content> splitContentIntoSmallerParts(Content content) {
-        // This method will split a content object into smaller parts where each part has a token count <= MAX_TOKEN_SIZE
-        List<Content> smallerParts = new ArrayList<>();
-        String contentText = content.textSegment().text();
-        int tokenCount = 0;
-        StringBuilder currentTextPart = new StringBuilder();
-
-        for (String word : contentText.split("\\s+")) {
-            int wordTokenCount = tokenizer.estimateTokenCountInText(word);
-
-            if (tokenCount + wordTokenCount <= MAX_TOKEN_SIZE) {
-                currentTextPart.append(word).append(" ");
-                tokenCount += wordTokenCount;
+    public List<Content> packContentsUnderTokenBudget(List<Content> contents, int tokenBudget) {
+        List<Content> rankedContents = new ArrayList<>(contents.stream()
+                .filter(content -> relevanceScore(content) != null)
+                .sorted(Comparator.comparingDouble((Content content) -> relevanceScore(content)).reversed())
+                .toList());
+        contents.stream()
+                .filter(content -> relevanceScore(content) == null)
+                .forEach(rankedContents::add);
+
+        List<Content> packedContents = new ArrayList<>();
+        int remainingTokens = tokenBudget;
+        for (Content content : rankedContents) {
+            int tokenCount = calculateTokenCount(content);
+            if (tokenCount <= remainingTokens) {
+                packedContents.add(content);
+                remainingTokens -= tokenCount;
             } else {
-                // If adding the word exceeds the limit, save the current part and start a new one
-                smallerParts.add(new Content(new TextSegment(currentTextPart.toString().trim(), content.textSegment().metadata())));
-                currentTextPart.setLength(0); // Reset StringBuilder for the next part
-                currentTextPart.append(word).append(" ");
-                tokenCount = wordTokenCount;
+                // A part is counted again on its own, which can differ from its share of the whole
+                // text, and a single long word is never split; shrink the part until it fits.
+                int partTokenLimit = remainingTokens;
+                while (partTokenLimit >= MIN_PACKED_PART_TOKEN_SIZE) {
+                    Content leadingPart = splitContentIntoSmallerParts(content, partTokenLimit).getFirst();
+                    int partTokenCount = calculateTokenCount(leadingPart);
+                    if (partTokenCount <= remainingTokens) {
+                        packedContents.add(leadingPart);
+                        remainingTokens -= partTokenCount;
+                        break;
+                    }
+                    partTokenLimit -= partTokenCount - remainingTokens;
+                }
             }
         }
+        return packedContents;
+    }
 
-        // Add the last part if it exists
-        if (!currentTextPart.isEmpty()) {
-            smallerParts.add(new Content(new TextSegment(currentTextPart.toString().trim(), content.textSegment().metadata())));
+    private static Double relevanceScore(Content content) {
+        Map<ContentMetadata, Object> metadata = content.metadata();
+        if (metadata != null && metadata.get(ContentMetadata.SCORE) instanceof Number score) {
+            return score.doubleValue();
         }
-
-        return smallerParts;
+        return null;
     }
 
     /**
-     * Creates optimal batches of content, ensuring that no batch exceeds the maximum token size.
+     * Splits a content object into smaller parts if its token count exceeds the maximum allowed size.
+     * Each part will contain a portion of the original content, ensuring each part stays under the token limit.
      *
-     * @param contents The list of content to be grouped into batches.
-     * @return A list of batches, where each batch contains content under the token limit.
+     * @param content   The content to be split into smaller parts.
+     * @param maxTokens The maximum token count of each part.
+     * @return A list of smaller content parts.
      */
-    private List<List<Content>> createOptimalBatchesUnderTokenLimit(List<Content> contents) {
-        List<List<Content>> batches = new ArrayList<>();
-        List<Content> currentBatch = new ArrayList<>();
-        int currentTokenCount = 0;
-
-        for (Content content : contents) {
-            int contentTokenCount = tokenizer.estimateTokenCountInText(content.textSegment().text());
-
-            // Check if the current content can be added to the current batch
-            if (currentTokenCount + contentTokenCount <= MAX_TOKEN_SIZE) {
-                currentBatch.add(content);
-                currentTokenCount += contentTokenCount;
-            } else {
-                // If it exceeds the limit, finalize the current batch and start a new one
-                if (!currentBatch.isEmpty()) {
-                    batches.add(currentBatch);  // Add the current batch to the list
-                }
-                // Start a new batch with the current content
-                currentBatch = new ArrayList<>();
-                currentBatch.add(content);
-                currentTokenCount = contentTokenCount;  // Reset token count for the new batch
-            }
-        }
-
-        // Add the last batch if it has content
-        if (!currentBatch.isEmpty()) {
-            batches.add(currentBatch);
-        }
-
-        return batches;
+    public List<Content> splitContentIntoSmallerParts(Content content, int maxTokens) {
+        // The text is tokenized once and split at the whitespace where each part reaches maxTokens
+        return tokenAccountant.tokenize(content.textSegment().text())
+                .splitAtWhitespace(maxTokens)
+                .stream()
+                .map(part -> new Content(new TextSegment(part, content.textSegment().metadata()), content.metadata()))
+                .toList();
     }
 }
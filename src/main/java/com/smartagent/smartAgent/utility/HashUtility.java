@@ -0,0 +1,41 @@
+package com.smartagent.smartAgent.utility;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Utility class for computing stable content hashes used as cache keys.
+ */
+public final class HashUtility {
+
+    private HashUtility() {
+    }
+
+    /**
+     * Computes the SHA-256 hash of the given parts, separated by a NUL character so that
+     * {@code ("ab", "c")} and {@code ("a", "bc")} produce different hashes.
+     *
+     * @param parts the strings to hash.
+     * @return the hash as a lowercase hex string.
+     */
+    public static String sha256Hex(String... parts) {
+        MessageDigest digest = newSha256Digest();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                digest.update((byte) 0);
+            }
+            digest.update(parts[i].getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
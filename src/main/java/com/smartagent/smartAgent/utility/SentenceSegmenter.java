@@ -0,0 +1,158 @@
+package com.smartagent.smartAgent.utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Utility class for splitting text into sentences and grouping them into windows in one pass over the
+ * characters, without creating a string per sentence.
+ * <p>
+ * A sentence ends after a run of {@code .}, {@code !} or {@code ?} (and any closing quotes or brackets)
+ * that is followed by whitespace or the end of the text, or at a blank line. Unlike splitting on every
+ * terminator, decimals such as {@code 3.5} stay in one sentence.
+ * </p>
+ */
+public final class SentenceSegmenter {
+
+    private static final int INITIAL_RANGES = 64;
+
+    private SentenceSegmenter() {
+    }
+
+    /**
+     * Finds the sentences of the text.
+     *
+     * @param text the text to segment.
+     * @return the sentences as packed {@code [start, end)} offset pairs, trimmed of whitespace, so
+     * sentence {@code i} spans {@code ranges[2 * i]} to {@code ranges[2 * i + 1]}.
+     */
+    public static int[] sentenceRanges(CharSequence text) {
+        int[] ranges = new int[INITIAL_RANGES];
+        int count = 0;
+        int length = text.length();
+        int start = skipWhitespace(text, 0);
+        int i = start;
+
+        while (i < length) {
+            char c = text.charAt(i);
+            int sentenceEnd = -1;
+            int next = i + 1;
+            if (isTerminator(c)) {
+                while (next < length && (isTerminator(text.charAt(next)) || isClosing(text.charAt(next)))) {
+                    next++;
+                }
+                if (next == length || Character.isWhitespace(text.charAt(next))) {
+                    sentenceEnd = next;
+                }
+            } else if (c == '\n') {
+                while (next < length && text.charAt(next) != '\n' && Character.isWhitespace(text.charAt(next))) {
+                    next++;
+                }
+                if (next < length && text.charAt(next) == '\n') {
+                    sentenceEnd = i;
+                }
+            }
+
+            if (sentenceEnd < 0) {
+                i = next;
+                continue;
+            }
+            int end = trimEnd(text, start, sentenceEnd);
+            if (end > start) {
+                ranges = addRange(ranges, count++, start, end);
+            }
+            start = skipWhitespace(text, next);
+            i = start;
+        }
+
+        int end = trimEnd(text, start, length);
+        if (end > start) {
+            ranges = addRange(ranges, count++, start, end);
+        }
+        return Arrays.copyOf(ranges, count * 2);
+    }
+
+    /**
+     * Groups consecutive sentences into windows of text.
+     * <p>
+     * Sentences of {@code minSentenceLength} characters or fewer are dropped. A window is closed when
+     * it holds {@code maxSentences} sentences or when the next sentence would take it over
+     * {@code maxTokens}; a single sentence over the limit becomes a window of its own. Each window is
+     * built directly from the source text, with its sentences separated by a space.
+     * </p>
+     *
+     * @param text              the text to group.
+     * @param minSentenceLength the length a sentence must exceed to be kept.
+     * @param maxSentences      the maximum number of sentences per window.
+     * @param maxTokens         the maximum number of tokens per window.
+     * @param tokenCount        returns the number of tokens between two offsets of the text.
+     * @return the windows, in text order.
+     */
+    public static List<String> windows(CharSequence text, int minSentenceLength, int maxSentences, int maxTokens,
+                                       IntBinaryOperator tokenCount) {
+        int[] ranges = sentenceRanges(text);
+        List<String> windows = new ArrayList<>();
+        StringBuilder window = new StringBuilder();
+        int windowSentences = 0;
+        int windowTokens = 0;
+
+        for (int i = 0; i < ranges.length; i += 2) {
+            int start = ranges[i];
+            int end = ranges[i + 1];
+            if (end - start <= minSentenceLength) {
+                continue;
+            }
+            int sentenceTokens = tokenCount.applyAsInt(start, end);
+            if (windowSentences > 0 && (windowSentences >= maxSentences || windowTokens + sentenceTokens > maxTokens)) {
+                windows.add(window.toString());
+                window.setLength(0);
+                windowSentences = 0;
+                windowTokens = 0;
+            }
+            if (windowSentences > 0) {
+                window.append(' ');
+            }
+            window.append(text, start, end);
+            windowSentences++;
+            windowTokens += sentenceTokens;
+        }
+
+        if (windowSentences > 0) {
+            windows.add(window.toString());
+        }
+        return windows;
+    }
+
+    private static int[] addRange(int[] ranges, int index, int start, int end) {
+        if (index * 2 + 2 > ranges.length) {
+            ranges = Arrays.copyOf(ranges, ranges.length * 2);
+        }
+        ranges[index * 2] = start;
+        ranges[index * 2 + 1] = end;
+        return ranges;
+    }
+
+    private static boolean isTerminator(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+
+    private static boolean isClosing(char c) {
+        return c == '"' || c == '\'' || c == ')' || c == ']' || c == '”' || c == '’';
+    }
+
+    private static int skipWhitespace(CharSequence text, int offset) {
+        while (offset < text.length() && Character.isWhitespace(text.charAt(offset))) {
+            offset++;
+        }
+        return offset;
+    }
+
+    private static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,202 @@
+package com.smartagent.smartAgent.utility;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.IntArrayList;
+import dev.langchain4j.model.openai.OpenAiChatModelName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token accounting that tokenizes a text once and answers both counting and splitting questions from
+ * that single pass.
+ * <p>
+ * It uses the same encoding as the {@code OpenAiTokenizer} bean, so counts match
+ * {@code OpenAiTokenizer.estimateTokenCountInText}. Counts are memoized per {@link String} instance,
+ * held weakly, so the same text flowing through several pipeline stages is only tokenized once and the
+ * memo never keeps a page alive.
+ * </p>
+ */
+public class TokenAccountant {
+
+    private final Encoding encoding;
+    private final Cache<String, Integer> tokenCounts;
+    /**
+     * Byte length of each token id, filled lazily; 0 means not computed yet, since no token is empty.
+     * Concurrent writers always store the same value, so unsynchronized access is safe.
+     */
+    private volatile int[] tokenByteLengths = new int[0];
+
+    public TokenAccountant(OpenAiChatModelName modelName) {
+        this.encoding = Encodings.newLazyEncodingRegistry()
+                .getEncodingForModel(modelName.toString())
+                .orElseThrow(() -> new IllegalArgumentException("No encoding for model " + modelName));
+        this.tokenCounts = Caffeine.newBuilder()
+                .weakKeys()
+                .build();
+    }
+
+    /**
+     * Returns the token count of the text, tokenizing it only the first time this instance is seen.
+     *
+     * @param text the text to count.
+     * @return the number of tokens in the text.
+     */
+    public int countTokens(String text) {
+        return tokenCounts.get(text, encoding::countTokensOrdinary);
+    }
+
+    /**
+     * Tokenizes the text once, recording where every token ends.
+     *
+     * @param text the text to tokenize.
+     * @return the tokenized text.
+     */
+    public TokenizedText tokenize(String text) {
+        IntArrayList tokens = encoding.encodeOrdinary(text);
+        int[] tokenEndOffsets = new int[tokens.size()];
+
+        int charOffset = 0;
+        long byteOffset = 0;
+        long tokenEndByte = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            tokenEndByte += tokenByteLength(tokens.get(i));
+            while (byteOffset < tokenEndByte && charOffset < text.length()) {
+                char c = text.charAt(charOffset);
+                if (Character.isHighSurrogate(c) && charOffset + 1 < text.length()) {
+                    byteOffset += 4;
+                    charOffset += 2;
+                } else {
+                    byteOffset += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+                    charOffset++;
+                }
+            }
+            tokenEndOffsets[i] = charOffset;
+        }
+
+        tokenCounts.put(text, tokenEndOffsets.length);
+        return new TokenizedText(text, tokenEndOffsets);
+    }
+
+    private int tokenByteLength(int token) {
+        int[] lengths = tokenByteLengths;
+        if (token < lengths.length && lengths[token] != 0) {
+            return lengths[token];
+        }
+
+        IntArrayList singleToken = new IntArrayList(1);
+        singleToken.add(token);
+        int length = encoding.decodeBytes(singleToken).length;
+        if (token >= lengths.length) {
+            synchronized (this) {
+                lengths = tokenByteLengths;
+                if (token >= lengths.length) {
+                    int[] grown = new int[Math.max(token + 1, lengths.length * 2)];
+                    System.arraycopy(lengths, 0, grown, 0, lengths.length);
+                    tokenByteLengths = grown;
+                    lengths = grown;
+                }
+            }
+        }
+        lengths[token] = length;
+        return length;
+    }
+
+    /**
+     * A text with the character offset at which each of its tokens ends.
+     */
+    public static final class TokenizedText {
+
+        private final String text;
+        private final int[] tokenEndOffsets;
+
+        private TokenizedText(String text, int[] tokenEndOffsets) {
+            this.text = text;
+            this.tokenEndOffsets = tokenEndOffsets;
+        }
+
+        public int tokenCount() {
+            return tokenEndOffsets.length;
+        }
+
+        /**
+         * Counts the tokens ending within a character range, so a token crossing {@code start} is
+         * not counted.
+         *
+         * @param start the start offset, inclusive.
+         * @param end   the end offset, exclusive.
+         * @return the number of tokens in the range.
+         */
+        public int tokenCountBetween(int start, int end) {
+            return tokensEndingBefore(end) - tokensEndingBefore(start);
+        }
+
+        /**
+         * Splits the text at whitespace into parts of at most {@code maxTokens} tokens each, counted
+         * from the single tokenization of the whole text. A single word longer than the limit becomes a
+         * part of its own.
+         *
+         * @param maxTokens the maximum token count of each part.
+         * @return the parts, trimmed, in order.
+         */
+        public List<String> splitAtWhitespace(int maxTokens) {
+            List<String> parts = new ArrayList<>();
+            int length = text.length();
+            int partStart = skipWhitespace(0);
+            int partEnd = -1;
+            int partStartTokens = 0;
+            int token = 0;
+
+            int wordStart = partStart;
+            while (wordStart < length) {
+                int wordEnd = wordStart;
+                while (wordEnd < length && !Character.isWhitespace(text.charAt(wordEnd))) {
+                    wordEnd++;
+                }
+                while (token < tokenEndOffsets.length && tokenEndOffsets[token] <= wordEnd) {
+                    token++;
+                }
+
+                if (token - partStartTokens > maxTokens && partEnd > partStart) {
+                    parts.add(text.substring(partStart, partEnd));
+                    partStart = skipWhitespace(partEnd);
+                    partStartTokens = tokensEndingBefore(partStart);
+                }
+                partEnd = wordEnd;
+                wordStart = skipWhitespace(wordEnd);
+            }
+
+            if (partEnd > partStart) {
+                parts.add(text.substring(partStart, partEnd));
+            }
+            return parts;
+        }
+
+        private int skipWhitespace(int offset) {
+            while (offset < text.length() && Character.isWhitespace(text.charAt(offset))) {
+                offset++;
+            }
+            return offset;
+        }
+
+        /**
+         * Number of tokens ending at or before the character offset.
+         */
+        private int tokensEndingBefore(int offset) {
+            int low = 0;
+            int high = tokenEndOffsets.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (tokenEndOffsets[middle] <= offset) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.smartagent.smartAgent.utility;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+
+/**
+ * Utility class for working with URLs.
+ */
+public final class UrlUtility {
+
+    private UrlUtility() {
+    }
+
+    /**
+     * Normalizes a URL for use as a cache or deduplication key: lowercases the scheme and host, drops
+     * default ports and the fragment, and uses {@code /} for an empty path.
+     *
+     * @param url the URL to normalize.
+     * @return the normalized URL, or the input unchanged if it cannot be parsed.
+     */
+    public static String normalizeUrl(String url) {
+        try {
+            URI uri = new URI(url.trim());
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return url;
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+            int port = uri.getPort();
+            if (("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443)) {
+                port = -1;
+            }
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            return new URI(scheme, null, uri.getHost().toLowerCase(Locale.ROOT), port, null, null, null)
+                    + path
+                    + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+        } catch (URISyntaxException e) {
+            return url;
+        }
+    }
+}
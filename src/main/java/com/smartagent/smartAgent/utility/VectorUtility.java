@@ -0,0 +1,71 @@
+package com.smartagent.smartAgent.utility;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Utility class for arithmetic on primitive embedding vectors.
+ */
+public final class VectorUtility {
+
+    private VectorUtility() {
+    }
+
+    /**
+     * Dot product of {@code vector} with the vector stored at {@code offset} in {@code packed}, using
+     * independent accumulators so the loop pipelines and vectorizes well.
+     *
+     * @param vector    the first vector, read from index 0.
+     * @param packed    an array holding the second vector.
+     * @param offset    the index in {@code packed} where the second vector starts.
+     * @param dimension the number of components to multiply.
+     * @return the dot product.
+     */
+    public static float dot(float[] vector, float[] packed, int offset, int dimension) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (; i + 3 < dimension; i += 4) {
+            s0 += vector[i] * packed[offset + i];
+            s1 += vector[i + 1] * packed[offset + i + 1];
+            s2 += vector[i + 2] * packed[offset + i + 2];
+            s3 += vector[i + 3] * packed[offset + i + 3];
+        }
+        for (; i < dimension; i++) {
+            s0 += vector[i] * packed[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Dot product of {@code vector} with the vector stored at {@code offset} in {@code packed}, read in
+     * place, for instance from a memory-mapped file, without copying it.
+     *
+     * @param vector    the first vector, read from index 0.
+     * @param packed    a buffer holding the second vector; its position is not used or changed.
+     * @param offset    the index in {@code packed} where the second vector starts.
+     * @param dimension the number of components to multiply.
+     * @return the dot product.
+     */
+    public static float dot(float[] vector, FloatBuffer packed, int offset, int dimension) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (; i + 3 < dimension; i += 4) {
+            s0 += vector[i] * packed.get(offset + i);
+            s1 += vector[i + 1] * packed.get(offset + i + 1);
+            s2 += vector[i + 2] * packed.get(offset + i + 2);
+            s3 += vector[i + 3] * packed.get(offset + i + 3);
+        }
+        for (; i < dimension; i++) {
+            s0 += vector[i] * packed.get(offset + i);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * @param vector the vector.
+     * @return {@code 1 / |vector|}, or 0 for a zero vector.
+     */
+    public static float inverseNorm(float[] vector) {
+        float norm = (float) Math.sqrt(dot(vector, vector, 0, vector.length));
+        return norm == 0f ? 0f : 1f / norm;
+    }
+}
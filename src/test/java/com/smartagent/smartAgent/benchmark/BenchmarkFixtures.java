@@ -0,0 +1,81 @@
+package com.smartagent.smartAgent.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.util.Random;
+
+/**
+ * Deterministic input data shared by the benchmarks.
+ */
+final class BenchmarkFixtures {
+
+    private static final String[] WORDS = {
+            "the", "search", "engine", "returned", "several", "pages", "about", "renewable", "energy", "policy",
+            "in", "2024", "including", "solar", "wind", "and", "storage", "capacity", "figures", "reported",
+            "by", "national", "agencies", "while", "analysts", "expect", "growth", "to", "continue", "through",
+            "next", "decade", "despite", "supply-chain", "constraints", "on", "batteries", "transformers", "grid",
+            "interconnection", "queues", "e.g.", "3.5%", "GW", "€120", "million", "naïve", "estimates"
+    };
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Loads a synthetic HTML page from {@code src/test/resources/benchmark/pages}.
+     *
+     * @param name the file name of the page.
+     * @return the raw bytes of the page.
+     */
+    static byte[] loadPage(String name) {
+        try (InputStream page = BenchmarkFixtures.class.getResourceAsStream("/benchmark/pages/" + name)) {
+            if (page == null) {
+                throw new IllegalArgumentException("No benchmark page named " + name);
+            }
+            return page.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sets a field that Spring would inject, so a bean can be benchmarked without an application context.
+     *
+     * @param target the bean.
+     * @param name   the name of the field, declared by the bean's class.
+     * @param value  the value to inject.
+     */
+    static void inject(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot inject " + name + " into " + target.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Generates prose-like text of roughly the given size, with sentences of 5 to 30 words and a
+     * paragraph break every few sentences.
+     *
+     * @param sizeInChars the approximate length of the text.
+     * @param random      the source of randomness; seed it for reproducible text.
+     * @return the generated text.
+     */
+    static String generatePage(int sizeInChars, Random random) {
+        StringBuilder page = new StringBuilder(sizeInChars + 64);
+        while (page.length() < sizeInChars) {
+            int sentenceLength = 5 + random.nextInt(26);
+            for (int i = 0; i < sentenceLength; i++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                page.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+                page.append(i == sentenceLength - 1 ? "" : " ");
+            }
+            page.append(random.nextInt(10) == 0 ? "?" : ".");
+            page.append(random.nextInt(5) == 0 ? "\n\n" : " ");
+        }
+        return page.toString();
+    }
+}
@@ -0,0 +1,129 @@
+package com.smartagent.smartAgent.benchmark;
+
+import com.smartagent.smartAgent.store.HnswEmbeddingStore;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares searching an {@link HnswEmbeddingStore} with the exhaustive search of the
+ * {@link InMemoryEmbeddingStore}, for corpus sizes and values of {@code efSearch}.
+ * <p>
+ * The corpus is drawn around random cluster centres, like embeddings of pages on a few topics. JMH only
+ * reports latency, so setup also prints the recall@10 of the HNSW search against the exhaustive one over
+ * the benchmark queries; read both together to pick {@code embedding-store-hnsw-ef-search}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HnswSearchBenchmark {
+
+    private static final int DIMENSION = 256;
+    private static final int CLUSTERS = 64;
+    private static final int QUERIES = 200;
+    private static final int MAX_RESULTS = 10;
+
+    @Param({"10000", "100000"})
+    private int corpusSize;
+
+    @Param({"16", "64", "256"})
+    private int efSearch;
+
+    private HnswEmbeddingStore hnswStore;
+    private InMemoryEmbeddingStore<TextSegment> exhaustiveStore;
+    private List<EmbeddingSearchRequest> queries;
+    private int nextQuery;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        float[][] centres = new float[CLUSTERS][];
+        for (int i = 0; i < CLUSTERS; i++) {
+            centres[i] = gaussian(random, 1);
+        }
+        List<Embedding> corpus = IntStream.range(0, corpusSize)
+                .mapToObj(i -> around(centres[random.nextInt(CLUSTERS)], random))
+                .toList();
+        queries = IntStream.range(0, QUERIES)
+                .mapToObj(i -> EmbeddingSearchRequest.builder()
+                        .queryEmbedding(around(centres[random.nextInt(CLUSTERS)], random))
+                        .maxResults(MAX_RESULTS)
+                        .build())
+                .toList();
+
+        hnswStore = new HnswEmbeddingStore(16, 200, efSearch, null);
+        IntStream.range(0, corpusSize).parallel().forEach(i -> hnswStore.add(String.valueOf(i), corpus.get(i)));
+        exhaustiveStore = new InMemoryEmbeddingStore<>();
+        for (int i = 0; i < corpusSize; i++) {
+            exhaustiveStore.add(String.valueOf(i), corpus.get(i));
+        }
+
+        long found = 0;
+        for (EmbeddingSearchRequest query : queries) {
+            Set<String> expected = ids(exhaustiveStore.search(query));
+            found += ids(hnswStore.search(query)).stream().filter(expected::contains).count();
+        }
+        System.out.printf("%nrecall@%d with %d embeddings and efSearch=%d: %.3f%n",
+                MAX_RESULTS, corpusSize, efSearch, found / (double) (QUERIES * MAX_RESULTS));
+    }
+
+    @Benchmark
+    public EmbeddingSearchResult<TextSegment> hnswSearch() {
+        return hnswStore.search(nextQuery());
+    }
+
+    @Benchmark
+    public EmbeddingSearchResult<TextSegment> exhaustiveSearch() {
+        return exhaustiveStore.search(nextQuery());
+    }
+
+    private EmbeddingSearchRequest nextQuery() {
+        nextQuery = (nextQuery + 1) % QUERIES;
+        return queries.get(nextQuery);
+    }
+
+    private static Embedding around(float[] centre, Random random) {
+        float[] noise = gaussian(random, 0.6f);
+        for (int i = 0; i < DIMENSION; i++) {
+            noise[i] += centre[i];
+        }
+        return Embedding.from(noise);
+    }
+
+    private static float[] gaussian(Random random, float deviation) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian() * deviation;
+        }
+        return vector;
+    }
+
+    private static Set<String> ids(EmbeddingSearchResult<TextSegment> result) {
+        return result.matches().stream().map(EmbeddingMatch::embeddingId).collect(Collectors.toSet());
+    }
+}
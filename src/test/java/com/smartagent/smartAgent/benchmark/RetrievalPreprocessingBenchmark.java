@@ -0,0 +1,166 @@
+package com.smartagent.smartAgent.benchmark;
+
+import com.smartagent.smartAgent.assistant.DataFilterAssistant;
+import com.smartagent.smartAgent.fetcher.HtmlTextExtractor;
+import com.smartagent.smartAgent.fetcher.WebPageResponse;
+import com.smartagent.smartAgent.record.llmresponse.DataFilterAssistantResponse;
+import com.smartagent.smartAgent.service.impl.DataIngestionServiceImpl;
+import com.smartagent.smartAgent.store.RequestScopedVectorIndex;
+import com.smartagent.smartAgent.utility.CommonUtility;
+import com.smartagent.smartAgent.utility.SentenceSegmenter;
+import com.smartagent.smartAgent.utility.TokenAccountant;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.openai.OpenAiChatModelName;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.query.Query;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regression baseline for the retrieval preprocessing hot path, run offline against the HTML pages in
+ * {@code src/test/resources/benchmark/pages}. The pages are synthetic: generated filler text in the
+ * layout of a news article, a documentation page and a forum thread, not saved copies of real sites.
+ * <p>
+ * The embedding model and the {@link DataFilterAssistant} are stubbed, so the numbers cover the
+ * application's own work: parsing and extraction, token counting, splitting, sentence
+ * segmentation, and in-memory vector search. Run with {@code -prof gc} (the default in the
+ * {@code benchmark} profile) to also record the allocation rate.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RetrievalPreprocessingBenchmark {
+
+    private static final String QUESTION = "How much did battery storage capacity grow this year?";
+    private static final String URL = "https://example.com/page";
+    private static final int EMBEDDING_DIMENSION = 1024;
+    private static final int LARGE_INDEX_SIZE = 10_000;
+
+    @Param({"news-article.html", "documentation.html", "forum-thread.html"})
+    private String page;
+
+    private byte[] pageBytes;
+    private HttpHeaders headers;
+    private String pageText;
+    private Content pageContent;
+    private TokenAccountant.TokenizedText tokenizedPage;
+    private List<TextSegment> pageWindows;
+    private float[] queryVector;
+    private RequestScopedVectorIndex largeIndex;
+
+    private TokenAccountant tokenAccountant;
+    private CommonUtility commonUtility;
+    private DataIngestionServiceImpl dataIngestionService;
+
+    @Setup
+    public void setUp() throws IOException {
+        tokenAccountant = new TokenAccountant(OpenAiChatModelName.GPT_4_O);
+        StubEmbeddingModel embeddingModel = new StubEmbeddingModel(EMBEDDING_DIMENSION);
+
+        DataFilterAssistant dataFilterAssistant = (question, data) ->
+                new DataFilterAssistantResponse(data.substring(0, Math.min(500, data.length())));
+        commonUtility = new CommonUtility();
+        BenchmarkFixtures.inject(commonUtility, "dataFilterAssistant", dataFilterAssistant);
+        BenchmarkFixtures.inject(commonUtility, "tokenAccountant", tokenAccountant);
+        BenchmarkFixtures.inject(commonUtility, "observationRegistry", ObservationRegistry.NOOP);
+        BenchmarkFixtures.inject(commonUtility, "filterTokenBudget", 8000);
+
+        dataIngestionService = new DataIngestionServiceImpl(null, null, null, embeddingModel, tokenAccountant,
+                ObservationRegistry.NOOP, new SimpleMeterRegistry());
+        BenchmarkFixtures.inject(dataIngestionService, "embeddingFilterMaxResults", 2);
+        BenchmarkFixtures.inject(dataIngestionService, "embeddingFilterMinScore", 0.85);
+        BenchmarkFixtures.inject(dataIngestionService, "embeddingBatchMaxInputs", 64);
+        BenchmarkFixtures.inject(dataIngestionService, "embeddingBatchMaxTokens", 16000);
+        BenchmarkFixtures.inject(dataIngestionService, "embeddingModelName", "stub");
+
+        pageBytes = BenchmarkFixtures.loadPage(page);
+        headers = HttpHeaders.of(Map.of("Content-Type", List.of("text/html; charset=utf-8")), (name, value) -> true);
+        pageText = extractMainText();
+        pageContent = Content.from(TextSegment.from(pageText, Metadata.from("url", URL)));
+        tokenizedPage = tokenAccountant.tokenize(pageText);
+        pageWindows = segmentSentences();
+
+        queryVector = embeddingModel.embed(QUESTION).content().vector();
+        largeIndex = new RequestScopedVectorIndex(LARGE_INDEX_SIZE);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < LARGE_INDEX_SIZE; i++) {
+            float[] vector = new float[EMBEDDING_DIMENSION];
+            for (int j = 0; j < vector.length; j++) {
+                vector[j] = (float) (random.nextDouble() - 0.5);
+            }
+            largeIndex.add(vector, TextSegment.from("segment " + i));
+        }
+    }
+
+    @Benchmark
+    public String extractMainText() throws IOException {
+        return HtmlTextExtractor.extractMainText(new WebPageResponse(URL, 200, headers, pageBytes, false).parse());
+    }
+
+    /**
+     * Counts a new {@link String} instance every time, so the {@link TokenAccountant} memo cannot help.
+     */
+    @Benchmark
+    public int calculateTokenCountCold() {
+        return commonUtility.calculateTokenCount(Content.from(new String(pageText)));
+    }
+
+    @Benchmark
+    public int calculateTokenCountMemoized() {
+        return commonUtility.calculateTokenCount(pageContent);
+    }
+
+    @Benchmark
+    public List<Content> splitContentIntoSmallerParts() {
+        return commonUtility.splitContentIntoSmallerParts(Content.from(TextSegment.from(new String(pageText))), 1000);
+    }
+
+    @Benchmark
+    public Content filterRelevantData() {
+        return commonUtility.filterRelevantData(Query.from(QUESTION), Content.from(TextSegment.from(new String(pageText))));
+    }
+
+    @Benchmark
+    public List<TextSegment> segmentSentences() {
+        return SentenceSegmenter.windows(pageText, 10, 15, 512, tokenizedPage::tokenCountBetween).stream()
+                .map(TextSegment::from)
+                .toList();
+    }
+
+    /**
+     * Ranks the page's sentence windows against the question with the stub embedding model, as
+     * {@code filterDataWithEmbedding} does.
+     */
+    @Benchmark
+    public List<Content> embeddingFilter() {
+        return dataIngestionService.retrieveRelevantData(QUESTION, pageWindows);
+    }
+
+    @Benchmark
+    public List<RequestScopedVectorIndex.Match> vectorSearch() {
+        return largeIndex.search(queryVector, 10, 0.0);
+    }
+}
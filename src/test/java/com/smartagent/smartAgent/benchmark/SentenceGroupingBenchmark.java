@@ -0,0 +1,78 @@
+package com.smartagent.smartAgent.benchmark;
+
+import com.smartagent.smartAgent.utility.SentenceSegmenter;
+import com.smartagent.smartAgent.utility.TokenAccountant;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.openai.OpenAiChatModelName;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the regex-based sentence grouping previously used by {@code filterDataWithEmbedding} with
+ * {@link SentenceSegmenter#windows}, on page sizes seen after main-content extraction.
+ * <p>
+ * The page is tokenized in setup, as the retriever already tokenizes it to decide whether to filter with
+ * embeddings. Run with {@code -prof gc} (the default in the {@code benchmark} profile) to compare
+ * allocation per operation.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SentenceGroupingBenchmark {
+
+    private static final int SENTENCE_FILTER_LENGTH = 10;
+    private static final int GROUP_TEXT_LENGTH = 15;
+    private static final int WINDOW_MAX_TOKENS = 512;
+
+    @Param({"16", "128", "1024"})
+    private int pageSizeKilobytes;
+
+    private String page;
+    private TokenAccountant.TokenizedText tokenizedPage;
+
+    @Setup
+    public void setUp() {
+        page = BenchmarkFixtures.generatePage(pageSizeKilobytes * 1024, new Random(42));
+        tokenizedPage = new TokenAccountant(OpenAiChatModelName.GPT_4_O).tokenize(page);
+    }
+
+    @Benchmark
+    public List<TextSegment> regexGrouping() {
+        List<String> sentences = Arrays.asList(page.split("(?<=[.!?])\\s*"));
+        List<String> filteredSentences = sentences.stream()
+                .filter(sentence -> sentence.length() > SENTENCE_FILTER_LENGTH)
+                .toList();
+
+        return IntStream.range(0, (filteredSentences.size() + GROUP_TEXT_LENGTH - 1) / GROUP_TEXT_LENGTH)
+                .mapToObj(i -> filteredSentences.subList(i * GROUP_TEXT_LENGTH, Math.min((i + 1) * GROUP_TEXT_LENGTH, filteredSentences.size())))
+                .map(group -> TextSegment.from(String.join(" ", group)))
+                .toList();
+    }
+
+    @Benchmark
+    public List<TextSegment> singlePassGrouping() {
+        return SentenceSegmenter.windows(page, SENTENCE_FILTER_LENGTH, GROUP_TEXT_LENGTH, WINDOW_MAX_TOKENS, tokenizedPage::tokenCountBetween)
+                .stream()
+                .map(TextSegment::from)
+                .toList();
+    }
+}
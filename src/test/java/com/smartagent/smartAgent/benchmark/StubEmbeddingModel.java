@@ -0,0 +1,43 @@
+package com.smartagent.smartAgent.benchmark;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * {@link EmbeddingModel} returning deterministic pseudo-random vectors seeded by the text, so benchmarks
+ * exercise the embedding path without a network call.
+ */
+class StubEmbeddingModel implements EmbeddingModel {
+
+    private final int dimension;
+
+    StubEmbeddingModel(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        List<Embedding> embeddings = new ArrayList<>(textSegments.size());
+        for (TextSegment segment : textSegments) {
+            SplittableRandom random = new SplittableRandom(segment.text().hashCode());
+            float[] vector = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = (float) (random.nextDouble() - 0.5);
+            }
+            embeddings.add(Embedding.from(vector));
+        }
+        return Response.from(embeddings, new TokenUsage(textSegments.size()));
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+}
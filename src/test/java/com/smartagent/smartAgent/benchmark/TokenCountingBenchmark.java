@@ -0,0 +1,102 @@
+package com.smartagent.smartAgent.benchmark;
+
+import com.smartagent.smartAgent.utility.TokenAccountant;
+import dev.langchain4j.model.openai.OpenAiChatModelName;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-word token counting previously used by {@code CommonUtility} with the single-pass
+ * {@link TokenAccountant}, on multi-megabyte pages.
+ * <p>
+ * {@code count*} benchmarks count the same page three times, as the retrieve path does; {@code split*}
+ * benchmarks split the page into parts of at most {@link #MAX_TOKENS} tokens. Every invocation counts a
+ * new {@link String} instance of the page, as every request downloads its own copy, so the memo of the
+ * {@link TokenAccountant} only saves the repeated counts within an invocation.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenCountingBenchmark {
+
+    private static final int MAX_TOKENS = 8_000;
+
+    @Param({"1", "4"})
+    private int pageSizeMegabytes;
+
+    private OpenAiTokenizer tokenizer;
+    private TokenAccountant tokenAccountant;
+    private String page;
+
+    @Setup
+    public void setUp() {
+        tokenizer = new OpenAiTokenizer(OpenAiChatModelName.GPT_4_O);
+        tokenAccountant = new TokenAccountant(OpenAiChatModelName.GPT_4_O);
+        page = BenchmarkFixtures.generatePage(pageSizeMegabytes * 1024 * 1024, new Random(42));
+    }
+
+    @Benchmark
+    public int countRepeatedlyWithTokenizer() {
+        String fetchedPage = new String(page);
+        int tokenCount = 0;
+        for (int i = 0; i < 3; i++) {
+            tokenCount += tokenizer.estimateTokenCountInText(fetchedPage);
+        }
+        return tokenCount;
+    }
+
+    @Benchmark
+    public int countRepeatedlyWithTokenAccountant() {
+        String fetchedPage = new String(page);
+        int tokenCount = 0;
+        for (int i = 0; i < 3; i++) {
+            tokenCount += tokenAccountant.countTokens(fetchedPage);
+        }
+        return tokenCount;
+    }
+
+    @Benchmark
+    public List<String> splitPerWord() {
+        List<String> parts = new ArrayList<>();
+        int tokenCount = 0;
+        StringBuilder currentTextPart = new StringBuilder();
+        for (String word : page.split("\\s+")) {
+            int wordTokenCount = tokenizer.estimateTokenCountInText(word);
+            if (tokenCount + wordTokenCount > MAX_TOKENS && !currentTextPart.isEmpty()) {
+                parts.add(currentTextPart.toString().trim());
+                currentTextPart.setLength(0);
+                tokenCount = 0;
+            }
+            currentTextPart.append(word).append(" ");
+            tokenCount += wordTokenCount;
+        }
+        if (!currentTextPart.isEmpty()) {
+            parts.add(currentTextPart.toString().trim());
+        }
+        return parts;
+    }
+
+    @Benchmark
+    public List<String> splitSinglePass() {
+        return tokenAccountant.tokenize(page).splitAtWhitespace(MAX_TOKENS);
+    }
+}
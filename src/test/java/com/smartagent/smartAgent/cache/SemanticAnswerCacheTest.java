@@ -0,0 +1,97 @@
+package com.smartagent.smartAgent.cache;
+
+import com.smartagent.smartAgent.record.domain.WebSearchResult;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemanticAnswerCacheTest {
+
+	private static final Map<String, float[]> VECTORS = Map.of(
+			"a", new float[]{1, 0, 0},
+			"b", new float[]{0, 1, 0},
+			"c", new float[]{0, 0, 1},
+			"close to a", new float[]{4, 3, 0},
+			"almost close to a", new float[]{4, 3.01f, 0});
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final AtomicInteger answers = new AtomicInteger();
+
+	@Test
+	void servesAQuestionAtTheSimilarityThresholdButNotBelowIt() {
+		SemanticAnswerCache cache = newCache(0.8, 30, 10);
+		answer(cache, "a");
+
+		assertThat(answer(cache, "close to a").result()).isEqualTo("a");
+		assertThat(answer(cache, "almost close to a").result()).isEqualTo("almost close to a");
+		assertThat(answers).hasValue(2);
+		assertThat(meterRegistry.counter("semantic.answer.cache.gets", "result", "hit").count()).isEqualTo(1);
+		assertThat(meterRegistry.counter("semantic.answer.cache.gets", "result", "miss").count()).isEqualTo(2);
+	}
+
+	@Test
+	void answersAgainOnceTheCachedAnswerExpired() throws InterruptedException {
+		SemanticAnswerCache cache = newCache(0.95, 0, 10);
+		answer(cache, "a");
+		Thread.sleep(5);
+
+		answer(cache, "a");
+
+		assertThat(answers).hasValue(2);
+	}
+
+	@Test
+	void evictsTheLeastRecentlyUsedAnswerWhenFull() throws InterruptedException {
+		SemanticAnswerCache cache = newCache(0.95, 30, 2);
+		answer(cache, "a");
+		Thread.sleep(5);
+		answer(cache, "b");
+		Thread.sleep(5);
+		answer(cache, "a");
+		Thread.sleep(5);
+
+		answer(cache, "c");
+		answer(cache, "a");
+		assertThat(answers).hasValue(3);
+		answer(cache, "b");
+		assertThat(answers).hasValue(4);
+		assertThat(meterRegistry.counter("semantic.answer.cache.evictions").count()).isEqualTo(2);
+	}
+
+	private WebSearchResult answer(SemanticAnswerCache cache, String question) {
+		return cache.getOrAnswer(question, () -> {
+			answers.incrementAndGet();
+			return new WebSearchResult(question);
+		});
+	}
+
+	private SemanticAnswerCache newCache(double minSimilarity, long ttlMinutes, int maxEntries) {
+		SemanticAnswerCache cache = new SemanticAnswerCache();
+		ReflectionTestUtils.setField(cache, "enabled", true);
+		ReflectionTestUtils.setField(cache, "minSimilarity", minSimilarity);
+		ReflectionTestUtils.setField(cache, "ttlMinutes", ttlMinutes);
+		ReflectionTestUtils.setField(cache, "maxEntries", maxEntries);
+		ReflectionTestUtils.setField(cache, "embeddingModel", new FixedEmbeddingModel());
+		ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+		cache.init();
+		return cache;
+	}
+
+	private static class FixedEmbeddingModel implements EmbeddingModel {
+
+		@Override
+		public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+			return Response.from(textSegments.stream().map(segment -> Embedding.from(VECTORS.get(segment.text()).clone())).toList());
+		}
+	}
+}
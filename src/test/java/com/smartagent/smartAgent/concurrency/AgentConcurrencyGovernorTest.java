@@ -0,0 +1,92 @@
+package com.smartagent.smartAgent.concurrency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AgentConcurrencyGovernorTest {
+
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	@AfterEach
+	void closeExecutor() {
+		executor.close();
+	}
+
+	@Test
+	void rejectsQuestionsBeyondTheLimitAfterTheAdmissionTimeout() throws Exception {
+		AgentConcurrencyGovernor governor = new AgentConcurrencyGovernor(2, Duration.ofMillis(50), executor);
+		CountDownLatch release = new CountDownLatch(1);
+
+		Future<String> first = governor.submit(() -> {
+			release.await();
+			return "first";
+		});
+		Future<String> second = governor.submit(() -> {
+			release.await();
+			return "second";
+		});
+
+		assertThatThrownBy(() -> governor.submit(() -> "third"))
+				.isInstanceOf(AgentConcurrencyGovernor.AgentOverloadedException.class);
+		assertThat(governor.activeQuestions()).isEqualTo(2);
+		assertThat(governor.rejectedQuestions()).isEqualTo(1);
+
+		release.countDown();
+		assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+		assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("second");
+		assertThat(governor.submit(() -> "fourth").get(5, TimeUnit.SECONDS)).isEqualTo("fourth");
+	}
+
+	@Test
+	void cancellingAQuestionInterruptsItAndFreesItsSlot() throws Exception {
+		AgentConcurrencyGovernor governor = new AgentConcurrencyGovernor(1, Duration.ofSeconds(5), executor);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch interrupted = new CountDownLatch(1);
+
+		Future<Void> question = governor.submit(() -> {
+			started.countDown();
+			try {
+				Thread.sleep(Duration.ofMinutes(1));
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return null;
+		});
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		question.cancel(true);
+
+		assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(governor.submit(() -> "next").get(5, TimeUnit.SECONDS)).isEqualTo("next");
+	}
+
+	@Test
+	void workAnsweringSeveralQuestionsHoldsAPermitPerQuestion() throws Exception {
+		AgentConcurrencyGovernor governor = new AgentConcurrencyGovernor(4, Duration.ofMillis(50), executor);
+		CountDownLatch release = new CountDownLatch(1);
+
+		Future<String> batch = governor.submit(3, () -> {
+			release.await();
+			return "batch";
+		});
+
+		assertThat(governor.activeQuestions()).isEqualTo(3);
+		assertThatThrownBy(() -> governor.submit(2, () -> "too many"))
+				.isInstanceOf(AgentConcurrencyGovernor.AgentOverloadedException.class);
+		Future<String> single = governor.submit(() -> "single");
+		assertThat(single.get(5, TimeUnit.SECONDS)).isEqualTo("single");
+
+		release.countDown();
+		assertThat(batch.get(5, TimeUnit.SECONDS)).isEqualTo("batch");
+		assertThat(governor.submit(10, () -> "larger than the limit").get(5, TimeUnit.SECONDS)).isEqualTo("larger than the limit");
+	}
+}
@@ -0,0 +1,104 @@
+package com.smartagent.smartAgent.controller;
+
+import com.smartagent.smartAgent.concurrency.AgentConcurrencyGovernor;
+import com.smartagent.smartAgent.record.dto.response.WebSearchResponseDto;
+import com.smartagent.smartAgent.retriever.PipelineProgressListener;
+import com.smartagent.smartAgent.service.WebSearchAgentService;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.service.TokenStream;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AgentControllerTest {
+
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final WebSearchAgentService webSearchAgentService = mock(WebSearchAgentService.class);
+	private final AgentController controller = new AgentController();
+	private AgentConcurrencyGovernor governor;
+
+	@BeforeEach
+	void createController() {
+		governor = new AgentConcurrencyGovernor(1, Duration.ofMillis(50), executor);
+		ReflectionTestUtils.setField(controller, "webSearchAgentService", webSearchAgentService);
+		ReflectionTestUtils.setField(controller, "observationRegistry", ObservationRegistry.NOOP);
+		ReflectionTestUtils.setField(controller, "agentConcurrencyGovernor", governor);
+		ReflectionTestUtils.setField(controller, "questionTimeoutMillis", 5000L);
+		ReflectionTestUtils.setField(controller, "streamTimeoutMillis", 5000L);
+	}
+
+	@AfterEach
+	void closeExecutor() {
+		executor.close();
+	}
+
+	@Test
+	void interruptedWhileWaitingForASlotIsServiceUnavailable() throws Exception {
+		AgentConcurrencyGovernor interruptedGovernor = mock(AgentConcurrencyGovernor.class);
+		when(interruptedGovernor.submit(anyInt(), any())).thenThrow(new InterruptedException());
+		ReflectionTestUtils.setField(controller, "agentConcurrencyGovernor", interruptedGovernor);
+
+		DeferredResult<ResponseEntity<WebSearchResponseDto>> result;
+		try {
+			result = controller.webSearchAgent("question", null);
+		} finally {
+			Thread.interrupted();
+		}
+
+		assertThat(((ResponseEntity<?>) result.getResult()).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void streamHoldsAQuestionSlotUntilItsLastEvent() throws Exception {
+		TokenStream tokenStream = mock(TokenStream.class, RETURNS_SELF);
+		when(webSearchAgentService.streamAgentReplyWithWebSearchData(anyString(), isNull(), any(PipelineProgressListener.class), any(BooleanSupplier.class)))
+				.thenReturn(tokenStream);
+
+		ResponseEntity<SseEmitter> stream = controller.streamWebSearchAgent("question", null);
+
+		assertThat(stream.getStatusCode()).isEqualTo(HttpStatus.OK);
+		ArgumentCaptor<Consumer<ChatResponse>> onCompleteResponse = ArgumentCaptor.forClass(Consumer.class);
+		verify(tokenStream, timeout(5000)).onCompleteResponse(onCompleteResponse.capture());
+		verify(tokenStream, timeout(5000)).start();
+		assertThat(governor.activeQuestions()).isEqualTo(1);
+		assertThat(controller.streamWebSearchAgent("another question", null).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+		onCompleteResponse.getValue().accept(ChatResponse.builder().aiMessage(AiMessage.from("answer")).build());
+
+		awaitNoActiveQuestions();
+		assertThat(governor.activeQuestions()).isZero();
+	}
+
+	private void awaitNoActiveQuestions() throws InterruptedException {
+		long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+		while (governor.activeQuestions() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+}
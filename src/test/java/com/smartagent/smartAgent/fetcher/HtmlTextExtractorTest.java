@@ -0,0 +1,94 @@
+package com.smartagent.smartAgent.fetcher;
+
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HtmlTextExtractorTest {
+
+	private static final String PARAGRAPH = "Solar capacity grew again this year, driven by utility-scale projects, "
+			+ "rooftop installations and falling module prices across most markets.";
+
+	@Test
+	void extractsMainContentAsParagraphs() {
+		String html = "<html><head><style>p { color: red; }</style></head><body>"
+				+ "<nav><a href='/'>Home</a> <a href='/news'>News</a></nav>"
+				+ "<div class='cookie-banner'>We use cookies.</div>"
+				+ "<div id='story'><h1>Energy report</h1>"
+				+ "<p>" + PARAGRAPH + "</p><p>" + PARAGRAPH + "</p><p>" + PARAGRAPH + "</p></div>"
+				+ "<div class='sidebar'><p>Related: ten other articles you might like, maybe.</p></div>"
+				+ "<footer>Copyright</footer><script>track();</script></body></html>";
+
+		String text = HtmlTextExtractor.extractMainText(Jsoup.parse(html));
+
+		assertThat(text).isEqualTo("Energy report\n\n" + PARAGRAPH + "\n\n" + PARAGRAPH + "\n\n" + PARAGRAPH);
+	}
+
+	@Test
+	void keepsTheHeaderOfAnArticleButNotThatOfThePage() {
+		String html = "<body><header><a href='/'>Daily News</a> Subscribe today</header>"
+				+ "<article><header><h1>Energy report</h1><p class='byline'>By the energy desk</p></header>"
+				+ "<p>" + PARAGRAPH + "</p><p>" + PARAGRAPH + "</p><footer>Filed under energy</footer></article>"
+				+ "<footer>Copyright Daily News</footer></body>";
+
+		String text = HtmlTextExtractor.extractMainText(Jsoup.parse(html));
+
+		assertThat(text).isEqualTo("Energy report\n\nBy the energy desk\n\n" + PARAGRAPH + "\n\n" + PARAGRAPH
+				+ "\n\nFiled under energy");
+	}
+
+	@Test
+	void fallsBackToWholeBodyWhenMainContentIsTooShort() {
+		String html = "<body><article>Short teaser.</article><div><ul><li>" + PARAGRAPH + "</li><li>"
+				+ PARAGRAPH + "</li></ul></div></body>";
+
+		String text = HtmlTextExtractor.extractMainText(Jsoup.parse(html));
+
+		assertThat(text).isEqualTo("Short teaser.\n\n- " + PARAGRAPH + "\n\n- " + PARAGRAPH);
+	}
+
+	@Test
+	void keepsContentWrappedInAFormButDropsItsControls() {
+		String html = "<body><form id='aspnetForm' action='/page.aspx'><input type='hidden' name='__VIEWSTATE' value='abc'>"
+				+ "<div class='content'><p>" + PARAGRAPH + "</p><p>" + PARAGRAPH + "</p></div>"
+				+ "<select><option>English</option></select><button>Search</button></form></body>";
+
+		String text = HtmlTextExtractor.extractMainText(Jsoup.parse(html));
+
+		assertThat(text).isEqualTo(PARAGRAPH + "\n\n" + PARAGRAPH);
+	}
+
+	@Test
+	void keepsEveryPostOfAThread() {
+		StringBuilder html = new StringBuilder("<body><div class='site-header'>Forum</div><div id='thread'>");
+		for (int i = 0; i < 5; i++) {
+			html.append("<div class='post'><div class='post-meta'>member").append(i).append("</div>")
+					.append("<div class='post-body'><p>Post ").append(i).append(": ").append(PARAGRAPH).append("</p></div>")
+					.append("<div class='share-buttons'><a href='#'>Share</a></div></div>");
+		}
+		html.append("</div></body>");
+
+		String text = HtmlTextExtractor.extractMainText(Jsoup.parse(html.toString()));
+
+		for (int i = 0; i < 5; i++) {
+			assertThat(text).contains("Post " + i + ": " + PARAGRAPH);
+		}
+		assertThat(text).doesNotContain("Share");
+	}
+
+	@Test
+	void matchesBoilerplateNamesAsWholeWordsOnly() {
+		String html = "<body><div class='content'>"
+				+ "<div class='shareholders'><p>Shareholders: " + PARAGRAPH + "</p></div>"
+				+ "<div class='commentary-body'><p>Commentary: " + PARAGRAPH + "</p></div>"
+				+ "<div class='navigational_aid'><p>Aid: " + PARAGRAPH + "</p></div>"
+				+ "<div class='social-share'><p>Share this article with your friends and followers.</p></div>"
+				+ "<div id='comments_section'><p>First comment: great article, thanks for writing it.</p></div>"
+				+ "</div></body>";
+
+		String text = HtmlTextExtractor.extractMainText(Jsoup.parse(html));
+
+		assertThat(text).isEqualTo("Shareholders: " + PARAGRAPH + "\n\nCommentary: " + PARAGRAPH + "\n\nAid: " + PARAGRAPH);
+	}
+}
@@ -0,0 +1,166 @@
+package com.smartagent.smartAgent.fetcher;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebPageCacheTest {
+
+	private static final String URL = "https://example.com/page";
+
+	private final WebPageFetcher fetcher = mock(WebPageFetcher.class);
+	private final CountDownLatch fetchStarted = new CountDownLatch(1);
+	private final CountDownLatch releaseFetch = new CountDownLatch(1);
+	private ExecutorService executor;
+	private WebPageCache cache;
+
+	@BeforeEach
+	void createCache() {
+		executor = Executors.newVirtualThreadPerTaskExecutor();
+		cache = new WebPageCache();
+		ReflectionTestUtils.setField(cache, "maxEntries", 100L);
+		ReflectionTestUtils.setField(cache, "ttlMinutes", 10L);
+		ReflectionTestUtils.setField(cache, "maxAgeMinutes", 60L);
+		ReflectionTestUtils.setField(cache, "fetchTimeoutMillis", 5000L);
+		ReflectionTestUtils.setField(cache, "webPageFetcher", fetcher);
+		ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(cache, "observationRegistry", ObservationRegistry.NOOP);
+		cache.initCache();
+	}
+
+	@AfterEach
+	void stopExecutor() {
+		releaseFetch.countDown();
+		executor.close();
+	}
+
+	@Test
+	void concurrentRequestsShareOneFetch() throws Exception {
+		when(fetcher.fetch(anyString(), anyMap())).thenAnswer(invocation -> {
+			fetchStarted.countDown();
+			releaseFetch.await();
+			return page("<html><body><p>Shared page text.</p></body></html>");
+		});
+
+		Future<String> leader = executor.submit(() -> cache.getPageText(URL));
+		fetchStarted.await();
+		List<Future<String>> followers = List.of(executor.submit(() -> cache.getPageText(URL)), executor.submit(() -> cache.getPageText(URL + "#section")));
+		Thread.sleep(50);
+		releaseFetch.countDown();
+
+		assertThat(leader.get(5, TimeUnit.SECONDS)).contains("Shared page text.");
+		for (Future<String> follower : followers) {
+			assertThat(follower.get(5, TimeUnit.SECONDS)).contains("Shared page text.");
+		}
+		assertThat(cache.getPageText(URL)).contains("Shared page text.");
+		verify(fetcher, times(1)).fetch(anyString(), anyMap());
+	}
+
+	@Test
+	void followerStopsWaitingForAStuckFetchAfterTheUrlTimeout() throws Exception {
+		ReflectionTestUtils.setField(cache, "fetchTimeoutMillis", 100L);
+		when(fetcher.fetch(anyString(), anyMap())).thenAnswer(invocation -> {
+			fetchStarted.countDown();
+			releaseFetch.await();
+			return page("<html><body><p>Too late.</p></body></html>");
+		});
+		executor.submit(() -> cache.getPageText(URL));
+		fetchStarted.await();
+
+		assertThatThrownBy(() -> cache.getPageText(URL)).isInstanceOf(SocketTimeoutException.class);
+	}
+
+	@Test
+	void followersSeeTheErrorOfTheLeader() throws Exception {
+		when(fetcher.fetch(anyString(), any())).thenAnswer(invocation -> {
+			fetchStarted.countDown();
+			releaseFetch.await();
+			throw new OutOfMemoryError("page too large");
+		});
+
+		Future<String> leader = executor.submit(() -> cache.getPageText(URL));
+		fetchStarted.await();
+		Future<String> follower = executor.submit(() -> cache.getPageText(URL));
+		Thread.sleep(50);
+		releaseFetch.countDown();
+
+		assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(OutOfMemoryError.class);
+		assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(OutOfMemoryError.class);
+	}
+
+	@Test
+	void followersFailWhenTheFetchOfTheLeaderTimesOut() throws Exception {
+		when(fetcher.fetch(anyString(), anyMap())).thenAnswer(invocation -> {
+			fetchStarted.countDown();
+			releaseFetch.await();
+			throw new SocketTimeoutException("Read timed out");
+		});
+
+		Future<String> leader = executor.submit(() -> cache.getPageText(URL));
+		fetchStarted.await();
+		Future<String> follower = executor.submit(() -> cache.getPageText(URL));
+		Thread.sleep(50);
+		releaseFetch.countDown();
+
+		assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(SocketTimeoutException.class);
+		assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(SocketTimeoutException.class);
+		verify(fetcher, times(1)).fetch(anyString(), anyMap());
+	}
+
+	@Test
+	void followersFetchAgainWhenTheLeaderIsInterrupted() throws Exception {
+		AtomicInteger fetches = new AtomicInteger();
+		when(fetcher.fetch(anyString(), anyMap())).thenAnswer(invocation -> {
+			if (fetches.incrementAndGet() == 1) {
+				fetchStarted.countDown();
+				try {
+					releaseFetch.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Fetch cancelled");
+				}
+			}
+			return page("<html><body><p>Fetched again.</p></body></html>");
+		});
+
+		Future<String> leader = executor.submit(() -> cache.getPageText(URL));
+		fetchStarted.await();
+		Future<String> follower = executor.submit(() -> cache.getPageText(URL));
+		Thread.sleep(50);
+		leader.cancel(true);
+
+		assertThat(follower.get(5, TimeUnit.SECONDS)).contains("Fetched again.");
+		verify(fetcher, times(2)).fetch(anyString(), anyMap());
+	}
+
+	private static WebPageResponse page(String html) {
+		HttpHeaders headers = HttpHeaders.of(Map.of("Content-Type", List.of("text/html; charset=utf-8")), (name, value) -> true);
+		return new WebPageResponse(URL, 200, headers, html.getBytes(StandardCharsets.UTF_8), false);
+	}
+}
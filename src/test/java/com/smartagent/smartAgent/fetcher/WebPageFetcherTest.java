@@ -0,0 +1,126 @@
+package com.smartagent.smartAgent.fetcher;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebPageFetcherTest {
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private HttpClient httpClient;
+	private String baseUrl;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		executor = Executors.newVirtualThreadPerTaskExecutor();
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.setExecutor(executor);
+		server.start();
+		baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+		httpClient = HttpClient.newBuilder().executor(executor).build();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+		httpClient.close();
+		executor.close();
+	}
+
+	@Test
+	void decodesGzipBodyAndSendsRequestHeaders() throws IOException {
+		byte[] html = "<html><body><p>Hello, compressed world.</p></body></html>".getBytes(StandardCharsets.UTF_8);
+		server.createContext("/gzip", exchange -> {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+			try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+				gzip.write(html);
+			}
+			exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+			exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+			exchange.getResponseHeaders().add("ETag", exchange.getRequestHeaders().getFirst("If-None-Match") + "-next");
+			exchange.sendResponseHeaders(200, compressed.size());
+			try (OutputStream body = exchange.getResponseBody()) {
+				compressed.writeTo(body);
+			}
+		});
+
+		WebPageResponse response = fetcher(1024, 2).fetch(baseUrl + "/gzip", Map.of("If-None-Match", "\"v1\""));
+
+		assertThat(response.statusCode()).isEqualTo(200);
+		assertThat(response.body()).isEqualTo(html);
+		assertThat(response.truncated()).isFalse();
+		assertThat(response.header("ETag")).contains("\"v1\"-next");
+		assertThat(response.parse().text()).isEqualTo("Hello, compressed world.");
+	}
+
+	@Test
+	void cutsOffBodyAtMaxSize() throws IOException {
+		server.createContext("/large", exchange -> {
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream body = exchange.getResponseBody()) {
+				for (int i = 0; i < 1024; i++) {
+					body.write(new byte[1024]);
+				}
+			} catch (IOException e) {
+				// the client stops reading once it has enough
+			}
+		});
+
+		WebPageResponse response = fetcher(10_000, 2).fetch(baseUrl + "/large", Map.of());
+
+		assertThat(response.body()).hasSize(10_000);
+		assertThat(response.truncated()).isTrue();
+	}
+
+	@Test
+	void limitsConcurrentRequestsPerHost() {
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		server.createContext("/slow", exchange -> {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			inFlight.decrementAndGet();
+			exchange.sendResponseHeaders(204, -1);
+			exchange.close();
+		});
+
+		WebPageFetcher fetcher = fetcher(1024, 2);
+		List<CompletableFuture<WebPageResponse>> responses = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			responses.add(fetcher.fetchAsync(baseUrl + "/slow", Map.of()));
+		}
+
+		assertThat(responses).allSatisfy(response -> assertThat(response.join().statusCode()).isEqualTo(204));
+		assertThat(maxInFlight.get()).isEqualTo(2);
+	}
+
+	private WebPageFetcher fetcher(int maxBodyBytes, int perHostConcurrency) {
+		return new WebPageFetcher(httpClient, executor, "test-agent", Duration.ofSeconds(5), Duration.ofSeconds(10),
+				maxBodyBytes, perHostConcurrency);
+	}
+}
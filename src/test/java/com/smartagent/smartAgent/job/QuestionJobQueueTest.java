@@ -0,0 +1,147 @@
+package com.smartagent.smartAgent.job;
+
+import com.smartagent.smartAgent.concurrency.AgentConcurrencyGovernor;
+import com.smartagent.smartAgent.record.domain.QuestionJob;
+import com.smartagent.smartAgent.record.domain.QuestionJobStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QuestionJobQueueTest {
+
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final AgentConcurrencyGovernor governor = new AgentConcurrencyGovernor(4, Duration.ofMillis(50), executor);
+
+	@AfterEach
+	void closeExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void answersQuestionsAndNotifiesTheListener() throws Exception {
+		CopyOnWriteArrayList<QuestionJob> completedJobs = new CopyOnWriteArrayList<>();
+		try (QuestionJobQueue queue = new QuestionJobQueue((question, conversationId) -> "answer to " + question,
+				governor, 2, 10, Duration.ofMinutes(1), Duration.ofMinutes(1), 100, completedJobs::add)) {
+			QuestionJob job = queue.submit("question", null, null);
+			assertThat(job.status()).isEqualTo(QuestionJobStatus.QUEUED);
+
+			QuestionJob completedJob = queue.completion(job.id()).orElseThrow().get(5, TimeUnit.SECONDS);
+			assertThat(completedJob.status()).isEqualTo(QuestionJobStatus.SUCCEEDED);
+			assertThat(completedJob.answer()).isEqualTo("answer to question");
+			assertThat(completedJob.completedAt()).isNotNull();
+			assertThat(queue.get(job.id())).contains(completedJob);
+			assertThat(queue.get("unknown")).isEmpty();
+		}
+		assertThat(completedJobs).extracting(QuestionJob::status).containsExactly(QuestionJobStatus.SUCCEEDED);
+	}
+
+	@Test
+	void marksAJobAsFailedWhenAnsweringThrows() throws Exception {
+		try (QuestionJobQueue queue = new QuestionJobQueue((question, conversationId) -> {
+			throw new IllegalStateException("search engine down");
+		}, governor, 1, 10, Duration.ofMinutes(1), Duration.ofMinutes(1), 100, job -> {
+		})) {
+			QuestionJob job = queue.submit("question", "conversation", null);
+
+			QuestionJob completedJob = queue.completion(job.id()).orElseThrow().get(5, TimeUnit.SECONDS);
+			assertThat(completedJob.status()).isEqualTo(QuestionJobStatus.FAILED);
+			assertThat(completedJob.error()).isEqualTo("search engine down");
+		}
+	}
+
+	@Test
+	void marksAJobAsFailedWhenAnsweringThrowsAnError() throws Exception {
+		try (QuestionJobQueue queue = new QuestionJobQueue((question, conversationId) -> {
+			throw new StackOverflowError();
+		}, governor, 1, 10, Duration.ofMinutes(1), Duration.ofMinutes(1), 100, job -> {
+		})) {
+			QuestionJob job = queue.submit("question", null, null);
+
+			QuestionJob completedJob = queue.completion(job.id()).orElseThrow().get(5, TimeUnit.SECONDS);
+			assertThat(completedJob.status()).isEqualTo(QuestionJobStatus.FAILED);
+			assertThat(completedJob.error()).isEqualTo("StackOverflowError");
+		}
+	}
+
+	@Test
+	void cancelsAQuestionThatExceedsTheAnswerTimeout() throws Exception {
+		CountDownLatch interrupted = new CountDownLatch(1);
+		try (QuestionJobQueue queue = new QuestionJobQueue((question, conversationId) -> {
+			try {
+				Thread.sleep(Duration.ofMinutes(1));
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return "too late";
+		}, governor, 1, 10, Duration.ofMillis(100), Duration.ofMinutes(1), 100, job -> {
+		})) {
+			QuestionJob job = queue.submit("question", null, null);
+
+			QuestionJob completedJob = queue.completion(job.id()).orElseThrow().get(5, TimeUnit.SECONDS);
+			assertThat(completedJob.status()).isEqualTo(QuestionJobStatus.FAILED);
+			assertThat(completedJob.error()).isEqualTo("The question exceeded the timeout of 100 ms");
+			assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+		}
+	}
+
+	@Test
+	void rejectsQuestionsWhenEveryWorkerIsBusyAndTheQueueIsFull() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		try (QuestionJobQueue queue = new QuestionJobQueue((question, conversationId) -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return question;
+		}, governor, 1, 1, Duration.ofMinutes(1), Duration.ofMinutes(1), 100, job -> {
+		})) {
+			QuestionJob running = queue.submit("first", null, null);
+			QuestionJob queued = queue.submit("second", null, null);
+
+			assertThatThrownBy(() -> queue.submit("third", null, null)).isInstanceOf(RejectedExecutionException.class);
+			assertThat(queue.rejectedJobs()).isEqualTo(1);
+
+			release.countDown();
+			assertThat(queue.completion(running.id()).orElseThrow().get(5, TimeUnit.SECONDS).answer()).isEqualTo("first");
+			assertThat(queue.completion(queued.id()).orElseThrow().get(5, TimeUnit.SECONDS).answer()).isEqualTo("second");
+		}
+	}
+
+	@Test
+	void answersJobsInTheSlotsOfTheGovernor() throws Exception {
+		AgentConcurrencyGovernor singleSlotGovernor = new AgentConcurrencyGovernor(1, Duration.ofMillis(50), executor);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<String> synchronousQuestion = singleSlotGovernor.submit(() -> {
+			release.await();
+			return "synchronous";
+		});
+		try (QuestionJobQueue queue = new QuestionJobQueue((question, conversationId) -> {
+			assertThat(singleSlotGovernor.activeQuestions()).isEqualTo(1);
+			return "answer to " + question;
+		}, singleSlotGovernor, 2, 10, Duration.ofSeconds(5), Duration.ofMinutes(1), 100, job -> {
+		})) {
+			QuestionJob job = queue.submit("question", null, null);
+			Thread.sleep(100);
+			assertThat(queue.get(job.id()).orElseThrow().status()).isEqualTo(QuestionJobStatus.RUNNING);
+			assertThat(singleSlotGovernor.waitingQuestions()).isEqualTo(1);
+
+			release.countDown();
+			assertThat(synchronousQuestion.get(5, TimeUnit.SECONDS)).isEqualTo("synchronous");
+			QuestionJob completedJob = queue.completion(job.id()).orElseThrow().get(5, TimeUnit.SECONDS);
+			assertThat(completedJob.answer()).isEqualTo("answer to question");
+		}
+		assertThat(singleSlotGovernor.activeQuestions()).isZero();
+	}
+}
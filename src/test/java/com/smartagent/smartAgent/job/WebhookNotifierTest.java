@@ -0,0 +1,80 @@
+package com.smartagent.smartAgent.job;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebhookNotifierTest {
+
+	private static final URI WEBHOOK = URI.create("http://localhost:8081/jobs");
+
+	private final HttpClient httpClient = mock(HttpClient.class);
+	private final WebhookNotifier notifier = new WebhookNotifier(httpClient, new ObjectMapper(), Set.of(" LocalHost", "[::1]"),
+			Duration.ofSeconds(1), Duration.ofMillis(1));
+
+	@Test
+	void acceptsHttpUrlsOnAllowedHostsOnly() {
+		assertThatNoException().isThrownBy(() -> notifier.validate(WEBHOOK));
+		assertThatNoException().isThrownBy(() -> notifier.validate(URI.create("HTTPS://LOCALHOST/jobs")));
+		assertThatNoException().isThrownBy(() -> notifier.validate(URI.create("http://[::1]:8081/jobs")));
+
+		assertThatThrownBy(() -> notifier.validate(URI.create("http://169.254.169.254/latest/meta-data")))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("not allowed");
+		assertThatThrownBy(() -> notifier.validate(URI.create("http://localhost.attacker.example/jobs")))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> notifier.validate(URI.create("file:///etc/passwd")))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("http or https");
+		assertThatThrownBy(() -> notifier.validate(URI.create("jobs")))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void retriesAFailedDeliveryUntilItIsAccepted() throws Exception {
+		HttpResponse<Void> unavailable = response(503);
+		HttpResponse<Void> accepted = response(204);
+		when(httpClient.sendAsync(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<Void>>any()))
+				.thenReturn(CompletableFuture.failedFuture(new IOException("connection refused")))
+				.thenReturn(CompletableFuture.completedFuture(unavailable))
+				.thenReturn(CompletableFuture.completedFuture(accepted));
+
+		assertThat(notifier.deliver(WEBHOOK, Map.of("id", "job")).get(5, TimeUnit.SECONDS)).isTrue();
+		verify(httpClient, times(3)).sendAsync(any(HttpRequest.class), any());
+	}
+
+	@Test
+	void givesUpAfterTheLastAttempt() throws Exception {
+		HttpResponse<Void> failed = response(500);
+		when(httpClient.sendAsync(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<Void>>any()))
+				.thenReturn(CompletableFuture.completedFuture(failed));
+
+		assertThat(notifier.deliver(WEBHOOK, Map.of("id", "job")).get(5, TimeUnit.SECONDS)).isFalse();
+		verify(httpClient, times(WebhookNotifier.MAX_ATTEMPTS)).sendAsync(any(HttpRequest.class), any());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static HttpResponse<Void> response(int statusCode) {
+		HttpResponse<Void> response = mock(HttpResponse.class);
+		when(response.statusCode()).thenReturn(statusCode);
+		return response;
+	}
+}
@@ -0,0 +1,300 @@
+package com.smartagent.smartAgent.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-ins for every service the agent calls, served by one in-process {@link HttpServer}:
+ * <ul>
+ *     <li>{@code /v1/chat/completions}: an OpenAI-compatible chat model. A request offering tools is
+ *     answered with a call to the first tool, passing the user's question as its first argument; a
+ *     request carrying the tool results is answered with a final answer; a request with a JSON schema
+ *     response format is answered with a JSON object filling the schema's first property;</li>
+ *     <li>{@code /v1/embeddings}: a Mistral-compatible embedding model returning deterministic vectors;</li>
+ *     <li>{@code /search}: a SearXNG instance returning the static pages below in JSON format;</li>
+ *     <li>{@code /pages/}: the synthetic HTML pages of {@code src/test/resources/benchmark/pages}.</li>
+ * </ul>
+ * Every endpoint waits for its configured latency, plus or minus the jitter, before answering. The
+ * server runs on virtual threads, so waiting requests cost no platform thread.
+ */
+final class StubBackends implements AutoCloseable {
+
+    static final int EMBEDDING_DIMENSION = 1024;
+
+    private static final List<String> PAGES = List.of("news-article.html", "documentation.html", "forum-thread.html");
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /**
+     * The latency of each stand-in.
+     *
+     * @param chat      the latency of a chat completion.
+     * @param embedding the latency of an embedding request.
+     * @param search    the latency of a search.
+     * @param page      the latency of a page download.
+     * @param jitter    the random variation of every latency, as a fraction of it.
+     */
+    record Latencies(Duration chat, Duration embedding, Duration search, Duration page, double jitter) {
+    }
+
+    private final Latencies latencies;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpServer server;
+    private final Map<String, byte[]> pages = new LinkedHashMap<>();
+    private final AtomicLong chatCompletions = new AtomicLong();
+    private final AtomicLong embeddingInputs = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong pageDownloads = new AtomicLong();
+
+    StubBackends(Latencies latencies) throws IOException {
+        this.latencies = latencies;
+        for (String page : PAGES) {
+            pages.put(page, loadPage(page));
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", handler(latencies.chat(), this::chatCompletion));
+        server.createContext("/v1/embeddings", handler(latencies.embedding(), this::embeddings));
+        server.createContext("/search", handler(latencies.search(), this::search));
+        server.createContext("/pages/", handler(latencies.page(), this::page));
+        server.start();
+    }
+
+    /**
+     * @return the base URL of the stand-ins, without a trailing slash.
+     */
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return the number of calls each stand-in received so far.
+     */
+    Map<String, Long> callCounts() {
+        return Map.of(
+                "chat completions", chatCompletions.get(),
+                "embedded texts", embeddingInputs.get(),
+                "searches", searches.get(),
+                "page downloads", pageDownloads.get());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    private HttpHandler handler(Duration latency, Endpoint endpoint) {
+        return exchange -> {
+            Response response;
+            try {
+                sleep(latency);
+                response = endpoint.handle(exchange);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exchange.close();
+                return;
+            } catch (IOException | RuntimeException e) {
+                response = new Response(500, "text/plain", String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Content-Type", response.contentType());
+            exchange.sendResponseHeaders(response.status(), response.body().length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(response.body());
+            }
+        };
+    }
+
+    private void sleep(Duration latency) throws InterruptedException {
+        long millis = latency.toMillis();
+        if (millis > 0) {
+            double jitter = latencies.jitter() * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+            Thread.sleep(Math.round(millis * (1 + jitter)));
+        }
+    }
+
+    private Response chatCompletion(HttpExchange exchange) throws IOException {
+        chatCompletions.incrementAndGet();
+        JsonNode request = JSON.readTree(exchange.getRequestBody());
+        JsonNode messages = request.path("messages");
+        JsonNode lastMessage = messages.get(messages.size() - 1);
+
+        ObjectNode message = JSON.createObjectNode().put("role", "assistant");
+        String finishReason = "stop";
+        JsonNode tools = request.path("tools");
+        JsonNode schema = request.path("response_format").path("json_schema").path("schema");
+        if (tools.size() > 0 && !"tool".equals(lastMessage.path("role").asText())) {
+            JsonNode function = tools.get(0).path("function");
+            Iterator<String> parameters = function.path("parameters").path("properties").fieldNames();
+            ObjectNode arguments = JSON.createObjectNode();
+            if (parameters.hasNext()) {
+                arguments.put(parameters.next(), lastMessage.path("content").asText());
+            }
+            message.putNull("content");
+            message.putArray("tool_calls").addObject()
+                    .put("id", "call_" + chatCompletions.get())
+                    .put("type", "function")
+                    .putObject("function")
+                    .put("name", function.path("name").asText())
+                    .put("arguments", arguments.toString());
+            finishReason = "tool_calls";
+        } else if (!schema.isMissingNode()) {
+            Iterator<String> properties = schema.path("properties").fieldNames();
+            ObjectNode answer = JSON.createObjectNode();
+            if (properties.hasNext()) {
+                String data = lastMessage.path("content").asText();
+                answer.put(properties.next(), data.substring(0, Math.min(600, data.length())));
+            }
+            message.put("content", answer.toString());
+        } else {
+            String toolResult = lastMessage.path("content").asText();
+            message.put("content", "Based on the search results: " + toolResult.substring(0, Math.min(400, toolResult.length())));
+        }
+
+        ObjectNode response = JSON.createObjectNode()
+                .put("id", "chatcmpl-" + chatCompletions.get())
+                .put("object", "chat.completion")
+                .put("created", System.currentTimeMillis() / 1000)
+                .put("model", request.path("model").asText());
+        response.putArray("choices").addObject()
+                .put("index", 0)
+                .put("finish_reason", finishReason)
+                .set("message", message);
+        int promptTokens = messages.toString().length() / 4;
+        int completionTokens = message.toString().length() / 4;
+        response.putObject("usage")
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", promptTokens + completionTokens);
+        return Response.json(response);
+    }
+
+    private Response embeddings(HttpExchange exchange) throws IOException {
+        JsonNode request = JSON.readTree(exchange.getRequestBody());
+        ObjectNode response = JSON.createObjectNode()
+                .put("id", "embd-" + embeddingInputs.get())
+                .put("object", "list")
+                .put("model", request.path("model").asText());
+        ArrayNode data = response.putArray("data");
+        int tokens = 0;
+        for (JsonNode input : request.path("input")) {
+            embeddingInputs.incrementAndGet();
+            String text = input.asText();
+            tokens += text.length() / 4;
+            ArrayNode vector = data.addObject()
+                    .put("object", "embedding")
+                    .put("index", data.size() - 1)
+                    .putArray("embedding");
+            SplittableRandom random = new SplittableRandom(text.hashCode());
+            for (int i = 0; i < EMBEDDING_DIMENSION; i++) {
+                vector.add((float) (random.nextDouble() - 0.5));
+            }
+        }
+        response.putObject("usage")
+                .put("prompt_tokens", tokens)
+                .put("completion_tokens", 0)
+                .put("total_tokens", tokens);
+        return Response.json(response);
+    }
+
+    /**
+     * Returns every static page as a result. The query is appended to the page URLs, so that
+     * different questions lead to different URLs and do not hit the page cache.
+     */
+    private Response search(HttpExchange exchange) throws IOException {
+        searches.incrementAndGet();
+        String query = queryParameter(exchange, "q");
+        ObjectNode response = JSON.createObjectNode().put("query", query).put("number_of_results", pages.size());
+        ArrayNode results = response.putArray("results");
+        int position = 1;
+        for (String page : pages.keySet()) {
+            String url = baseUrl() + "/pages/" + page + "?q=" + Integer.toHexString(query.hashCode());
+            ObjectNode result = results.addObject()
+                    .put("url", url)
+                    .put("title", page + " about " + query)
+                    .put("content", "A page about " + query)
+                    .put("engine", "stub")
+                    .put("template", "default.html")
+                    .put("category", "general")
+                    .put("score", 1.0 / position);
+            result.putArray("engines").add("stub");
+            result.putArray("positions").add(position++);
+            result.putArray("parsed_url").add("http").add(server.getAddress().getHostString()).add("/pages/" + page);
+        }
+        response.putArray("answers");
+        response.putArray("corrections");
+        response.putArray("infoboxes");
+        response.putArray("suggestions");
+        response.putArray("unresponsive_engines");
+        return Response.json(response);
+    }
+
+    private Response page(HttpExchange exchange) {
+        pageDownloads.incrementAndGet();
+        String name = exchange.getRequestURI().getPath().substring("/pages/".length());
+        byte[] page = pages.get(name);
+        if (page == null) {
+            return new Response(404, "text/plain", ("No page " + name).getBytes(StandardCharsets.UTF_8));
+        }
+        return new Response(200, "text/html; charset=utf-8", page);
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                String[] nameAndValue = parameter.split("=", 2);
+                if (nameAndValue.length == 2 && nameAndValue[0].equals(name)) {
+                    return URLDecoder.decode(nameAndValue[1], StandardCharsets.UTF_8);
+                }
+            }
+        }
+        return "";
+    }
+
+    private static byte[] loadPage(String name) {
+        try (InputStream page = StubBackends.class.getResourceAsStream("/benchmark/pages/" + name)) {
+            if (page == null) {
+                throw new IllegalArgumentException("No page named " + name);
+            }
+            return page.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Endpoint {
+        Response handle(HttpExchange exchange) throws IOException;
+    }
+
+    private record Response(int status, String contentType, byte[] body) {
+
+        static Response json(JsonNode body) throws IOException {
+            return new Response(200, "application/json", JSON.writeValueAsBytes(body));
+        }
+    }
+}
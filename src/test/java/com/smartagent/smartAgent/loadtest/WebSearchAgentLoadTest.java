@@ -0,0 +1,237 @@
+package com.smartagent.smartAgent.loadtest;
+
+import com.smartagent.smartAgent.SmartAgentApplication;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of {@code /web-search-agent}, with the application running against {@link StubBackends}
+ * instead of the live chat, embedding and search services.
+ * <p>
+ * For every concurrency level, that many clients send questions back to back, first for a warm-up
+ * period whose results are discarded and then for the measured period. Each question is different,
+ * so the search, page and data filter caches miss as they would for real traffic; the three stub
+ * pages are the same every time though, so their sentence windows are served by the embedding cache
+ * after the first request. The report gives the throughput, the latency percentiles, and the garbage
+ * collections, allocations and CPU time per request. The full latency distribution of each level is
+ * written as an HdrHistogram percentile file, which can be plotted or compared between runs.
+ * </p>
+ * <p>
+ * The clients run in the same JVM as the application, so the allocation and CPU figures include the
+ * load generator; it is small next to the request pipeline, but compare runs rather than reading the
+ * numbers as absolute. Clients wait for each answer before sending the next question, so latency
+ * above the stub latencies shows up as lower throughput rather than as queueing.
+ * </p>
+ * <p>
+ * Run it with {@code mvn -Ploadtest test-compile exec:exec}. The {@code loadtest.*} system
+ * properties are set from the Maven properties of the same name, and application properties can be
+ * overridden with {@code -Dloadtest.args="--search-cache-max-entries=0 --embedding-cache-max-bytes=0"}.
+ * </p>
+ */
+public final class WebSearchAgentLoadTest {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+
+    /**
+     * Numbers the questions across all levels, so that no question is asked twice.
+     */
+    private static final AtomicLong QUESTIONS = new AtomicLong();
+
+    private WebSearchAgentLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] concurrencyLevels = Arrays.stream(System.getProperty("loadtest.concurrency", "1,8,32").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        Duration warmup = Duration.ofSeconds(Long.getLong("loadtest.warmup-seconds", 10));
+        Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 30));
+        Path outputDirectory = Path.of(System.getProperty("loadtest.output-directory", "target/loadtest"));
+        StubBackends.Latencies latencies = new StubBackends.Latencies(
+                Duration.ofMillis(Long.getLong("loadtest.chat-latency-ms", 400)),
+                Duration.ofMillis(Long.getLong("loadtest.embedding-latency-ms", 40)),
+                Duration.ofMillis(Long.getLong("loadtest.search-latency-ms", 150)),
+                Duration.ofMillis(Long.getLong("loadtest.page-latency-ms", 80)),
+                Double.parseDouble(System.getProperty("loadtest.latency-jitter", "0.25")));
+
+        Files.createDirectories(outputDirectory);
+        try (StubBackends stubs = new StubBackends(latencies);
+             ConfigurableApplicationContext application = startApplication(stubs.baseUrl(), args);
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient httpClient = HttpClient.newBuilder().executor(clients).build()) {
+            int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+            URI endpoint = URI.create("http://127.0.0.1:" + port + "/web-search-agent");
+            System.out.printf("%nStub latencies: %s%n", latencies);
+
+            for (int concurrency : concurrencyLevels) {
+                run(httpClient, clients, endpoint, concurrency, warmup);
+                Result result = run(httpClient, clients, endpoint, concurrency, duration);
+                result.print(System.out);
+                Path histogramFile = outputDirectory.resolve("concurrency-" + concurrency + ".hgrm");
+                try (PrintStream histogramOutput = new PrintStream(Files.newOutputStream(histogramFile))) {
+                    result.latencies().outputPercentileDistribution(histogramOutput, 1000.0);
+                }
+                System.out.printf("  latency distribution (ms): %s%n", histogramFile.toAbsolutePath());
+            }
+            System.out.printf("%nStub calls: %s%n", stubs.callCounts());
+        }
+    }
+
+    /**
+     * Starts the application on a random port against the stubs. Command line arguments are passed on
+     * last, so they can override any property.
+     */
+    private static ConfigurableApplicationContext startApplication(String stubUrl, String[] args) {
+        List<String> properties = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--model-url=" + stubUrl + "/v1",
+                "--model-api-key=stub",
+                "--model-name=stub-chat",
+                "--tool-model-name=stub-tool",
+                "--embedding-model-url=" + stubUrl + "/v1",
+                "--embedding-api-key=stub",
+                "--embedding-model-name=mistral-embed",
+                "--search-engine-url=" + stubUrl,
+                "--search-engine-urls=" + stubUrl,
+                "--semantic-cache-enabled=false",
+                "--logging.level.dev.langchain4j=WARN",
+                "--logging.level.dev.ai4j.openai4j=WARN"));
+        properties.addAll(Arrays.asList(args));
+        return new SpringApplicationBuilder(SmartAgentApplication.class).run(properties.toArray(String[]::new));
+    }
+
+    private static Result run(HttpClient httpClient, ExecutorService clients, URI endpoint, int concurrency, Duration duration)
+            throws InterruptedException {
+        Recorder recorder = new Recorder(TimeUnit.MINUTES.toMicros(10), 3);
+        AtomicLong errors = new AtomicLong();
+        Snapshot before = Snapshot.take();
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(clients.submit(() -> {
+                while (System.nanoTime() < end) {
+                    String question = "What changed in grid battery storage policy, report " + QUESTIONS.incrementAndGet() + "?";
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(endpoint + "?question=" + URLEncoder.encode(question, StandardCharsets.UTF_8)))
+                            .timeout(REQUEST_TIMEOUT)
+                            .GET()
+                            .build();
+                    long requestStart = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - requestStart));
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Load test client failed", e.getCause());
+            }
+        }
+
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        return new Result(concurrency, elapsed, recorder.getIntervalHistogram(), errors.get(), Snapshot.take().minus(before));
+    }
+
+    /**
+     * The outcome of one concurrency level.
+     *
+     * @param concurrency the number of concurrent clients.
+     * @param elapsed     the measured time, until the last answer arrived.
+     * @param latencies   the request latencies, in microseconds.
+     * @param errors      the number of failed requests.
+     * @param resources   the garbage collections, allocations and CPU time during the level.
+     */
+    private record Result(int concurrency, Duration elapsed, Histogram latencies, long errors, Snapshot resources) {
+
+        void print(PrintStream out) {
+            long requests = latencies.getTotalCount();
+            double seconds = elapsed.toNanos() / 1e9;
+            out.printf("%nConcurrency %d: %d requests (%d failed) in %.1f s, %.2f requests/s%n",
+                    concurrency, requests, errors, seconds, requests / seconds);
+            out.printf("  latency ms: p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                    percentileMillis(50), percentileMillis(90), percentileMillis(99), percentileMillis(99.9),
+                    latencies.getMaxValue() / 1000.0);
+            long perRequest = Math.max(1, requests);
+            out.printf("  allocated: %.1f MB/request, %.1f MB/s%n",
+                    resources.allocatedBytes() / 1e6 / perRequest, resources.allocatedBytes() / 1e6 / seconds);
+            out.printf("  CPU: %.1f ms/request%n", resources.cpuNanos() / 1e6 / perRequest);
+            resources.collections().forEach((collector, collections) -> out.printf("  GC %s: %d collections, %d ms%n",
+                    collector, collections[0], collections[1]));
+        }
+
+        private double percentileMillis(double percentile) {
+            return latencies.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+
+    /**
+     * Cumulative resource usage of the JVM.
+     *
+     * @param allocatedBytes the bytes allocated by all threads.
+     * @param cpuNanos       the CPU time of the process.
+     * @param collections    the collection count and time in milliseconds, per collector.
+     */
+    private record Snapshot(long allocatedBytes, long cpuNanos, Map<String, long[]> collections) {
+
+        static Snapshot take() {
+            Map<String, long[]> collections = new LinkedHashMap<>();
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                collections.put(collector.getName(), new long[]{collector.getCollectionCount(), collector.getCollectionTime()});
+            }
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            com.sun.management.OperatingSystemMXBean os = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            return new Snapshot(threads.getTotalThreadAllocatedBytes(), os.getProcessCpuTime(), collections);
+        }
+
+        Snapshot minus(Snapshot earlier) {
+            Map<String, long[]> collectionDeltas = new LinkedHashMap<>();
+            collections.forEach((collector, counts) -> {
+                long[] earlierCounts = earlier.collections().getOrDefault(collector, new long[2]);
+                collectionDeltas.put(collector, new long[]{counts[0] - earlierCounts[0], counts[1] - earlierCounts[1]});
+            });
+            return new Snapshot(allocatedBytes - earlier.allocatedBytes(), cpuNanos - earlier.cpuNanos(), collectionDeltas);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.smartagent.smartAgent.model;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartagent.smartAgent.store.EmbeddingFileCache;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingEmbeddingModelTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void embedsEachTextOnceAndServesRepeatsFromMemory() {
+		CountingEmbeddingModel delegate = new CountingEmbeddingModel();
+		CachingEmbeddingModel model = new CachingEmbeddingModel(delegate, "model", newCache(), null);
+
+		List<Embedding> first = model.embedAll(segments("a", "b", "a")).content();
+		List<Embedding> second = model.embedAll(segments("b", "c")).content();
+
+		assertThat(delegate.embeddedTexts).containsExactly("a", "b", "c");
+		assertThat(first.get(0).vector()).containsExactly(first.get(2).vector());
+		assertThat(second.get(0).vector()).containsExactly(first.get(1).vector());
+	}
+
+	@Test
+	void servesVectorsFromDiskAfterARestart() {
+		CountingEmbeddingModel delegate = new CountingEmbeddingModel();
+		new CachingEmbeddingModel(delegate, "model", newCache(), newFileCache()).embedAll(segments("a"));
+
+		CachingEmbeddingModel restarted = new CachingEmbeddingModel(delegate, "model", newCache(), newFileCache());
+		List<Embedding> embeddings = restarted.embedAll(segments("a", "b")).content();
+
+		assertThat(delegate.embeddedTexts).containsExactly("a", "b");
+		assertThat(embeddings.getFirst().vector()).containsExactly(CountingEmbeddingModel.vectorOf("a"));
+	}
+
+	@Test
+	void embedsAgainWhenTheFileOnDiskIsCorrupt() throws IOException {
+		CountingEmbeddingModel delegate = new CountingEmbeddingModel();
+		new CachingEmbeddingModel(delegate, "model", newCache(), newFileCache()).embedAll(segments("a"));
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : files.toList()) {
+				Files.write(file, new byte[]{1, 2, 3});
+			}
+		}
+
+		CachingEmbeddingModel restarted = new CachingEmbeddingModel(delegate, "model", newCache(), newFileCache());
+		List<Embedding> embeddings = restarted.embedAll(segments("a")).content();
+
+		assertThat(delegate.embeddedTexts).containsExactly("a", "a");
+		assertThat(embeddings.getFirst().vector()).containsExactly(CountingEmbeddingModel.vectorOf("a"));
+	}
+
+	@Test
+	void keepsTheVectorsOfEachModelApart() {
+		CountingEmbeddingModel delegate = new CountingEmbeddingModel();
+		Cache<String, float[]> cache = newCache();
+		EmbeddingFileCache fileCache = newFileCache();
+
+		new CachingEmbeddingModel(delegate, "small", cache, fileCache).embedAll(segments("a"));
+		new CachingEmbeddingModel(delegate, "large", cache, fileCache).embedAll(segments("a"));
+
+		assertThat(delegate.embeddedTexts).containsExactly("a", "a");
+	}
+
+	private EmbeddingFileCache newFileCache() {
+		return new EmbeddingFileCache(directory, 1024 * 1024, Duration.ofHours(1));
+	}
+
+	private static Cache<String, float[]> newCache() {
+		return Caffeine.newBuilder().maximumSize(100).build();
+	}
+
+	private static List<TextSegment> segments(String... texts) {
+		return Stream.of(texts).map(TextSegment::from).toList();
+	}
+
+	private static class CountingEmbeddingModel implements EmbeddingModel {
+
+		final List<String> embeddedTexts = new CopyOnWriteArrayList<>();
+
+		static float[] vectorOf(String text) {
+			return new float[]{text.hashCode(), text.length(), 1};
+		}
+
+		@Override
+		public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+			textSegments.forEach(segment -> embeddedTexts.add(segment.text()));
+			return Response.from(textSegments.stream().map(segment -> Embedding.from(vectorOf(segment.text()))).toList());
+		}
+
+		@Override
+		public int dimension() {
+			return 3;
+		}
+	}
+}
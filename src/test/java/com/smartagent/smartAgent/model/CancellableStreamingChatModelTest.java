@@ -0,0 +1,94 @@
+package com.smartagent.smartAgent.model;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CancellableStreamingChatModelTest {
+
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+	private final AtomicInteger requests = new AtomicInteger();
+	private final List<String> events = new ArrayList<>();
+	private boolean cancelAfterFirstToken;
+
+	private final StreamingChatLanguageModel delegate = new StreamingChatLanguageModel() {
+		@Override
+		public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+			requests.incrementAndGet();
+			handler.onPartialResponse("first");
+			if (cancelAfterFirstToken) {
+				cancelled.set(true);
+			}
+			handler.onPartialResponse("second");
+			handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("first second")).build());
+		}
+
+		@Override
+		public void generate(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+			throw new UnsupportedOperationException();
+		}
+	};
+
+	@Test
+	void forwardsTheWholeAnswerWhileNotCancelled() {
+		new CancellableStreamingChatModel(delegate, cancelled::get).chat(request(), recordingHandler());
+
+		assertThat(events).containsExactly("first", "second", "complete: first second");
+	}
+
+	@Test
+	void dropsTheRestOfTheAnswerOnceCancelled() {
+		cancelAfterFirstToken = true;
+
+		new CancellableStreamingChatModel(delegate, cancelled::get).chat(request(), recordingHandler());
+
+		assertThat(events).containsExactly("first");
+	}
+
+	@Test
+	void failsNewRequestsWithoutSendingThemOnceCancelled() {
+		cancelled.set(true);
+
+		new CancellableStreamingChatModel(delegate, cancelled::get).chat(request(), recordingHandler());
+
+		assertThat(events).containsExactly("error: " + CancellationException.class.getSimpleName());
+		assertThat(requests).hasValue(0);
+	}
+
+	private static ChatRequest request() {
+		return ChatRequest.builder().messages(List.of(UserMessage.from("question"))).build();
+	}
+
+	private StreamingChatResponseHandler recordingHandler() {
+		return new StreamingChatResponseHandler() {
+			@Override
+			public void onPartialResponse(String partialResponse) {
+				events.add(partialResponse);
+			}
+
+			@Override
+			public void onCompleteResponse(ChatResponse completeResponse) {
+				events.add("complete: " + completeResponse.aiMessage().text());
+			}
+
+			@Override
+			public void onError(Throwable error) {
+				events.add("error: " + error.getClass().getSimpleName());
+			}
+		};
+	}
+}
@@ -0,0 +1,105 @@
+package com.smartagent.smartAgent.retriever;
+
+import com.smartagent.smartAgent.utility.CommonUtility;
+import com.smartagent.smartAgent.utility.TokenAccountant;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.openai.OpenAiChatModelName;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.WebSearchContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PreprocessingContentRetrieverTest {
+
+	@Test
+	void observesTheQueryLengthButNotTheQueryText() {
+		List<Observation.Context> stopped = new CopyOnWriteArrayList<>();
+		ObservationRegistry observationRegistry = ObservationRegistry.create();
+		observationRegistry.observationConfig().observationHandler(new ObservationHandler<>() {
+			@Override
+			public boolean supportsContext(Observation.Context context) {
+				return true;
+			}
+
+			@Override
+			public void onStop(Observation.Context context) {
+				stopped.add(context);
+			}
+		});
+		WebSearchContentRetriever webSearchContentRetriever = mock(WebSearchContentRetriever.class);
+		when(webSearchContentRetriever.retrieve(any(Query.class))).thenReturn(List.of());
+		PreprocessingContentRetriever retriever = new PreprocessingContentRetriever();
+		ReflectionTestUtils.setField(retriever, "webSearchContentRetriever", webSearchContentRetriever);
+		ReflectionTestUtils.setField(retriever, "commonUtility", mock(CommonUtility.class));
+		ReflectionTestUtils.setField(retriever, "observationRegistry", observationRegistry);
+		ReflectionTestUtils.setField(retriever, "totalTimeoutMillis", 1000L);
+
+		assertThat(retriever.retrieve(Query.from("my private question"))).isEmpty();
+
+		Observation.Context retrieve = stopped.stream().filter(context -> "agent.pipeline.retrieve".equals(context.getName())).findFirst().orElseThrow();
+		assertThat(retrieve.getHighCardinalityKeyValue("query.length")).isEqualTo(KeyValue.of("query.length", "19"));
+		assertThat(stopped).flatMap(context -> context.getAllKeyValues().stream().map(KeyValue::getValue).toList())
+				.noneMatch(value -> value.contains("private"));
+	}
+
+	@Test
+	void releasesTheFetchPermitBeforeFilteringThePage() throws Exception {
+		Content first = hit("https://a.example/");
+		Content second = hit("https://b.example/");
+		WebSearchContentRetriever webSearchContentRetriever = mock(WebSearchContentRetriever.class);
+		when(webSearchContentRetriever.retrieve(any(Query.class))).thenReturn(List.of(first, second));
+		CountDownLatch secondFetched = new CountDownLatch(1);
+		CommonUtility commonUtility = mock(CommonUtility.class);
+		when(commonUtility.extractWebPageContentFromUrl(any(Content.class))).thenAnswer(invocation -> {
+			Content content = invocation.getArgument(0);
+			if (content == second) {
+				secondFetched.countDown();
+			}
+			return content;
+		});
+		when(commonUtility.filterRelevantData(any(Query.class), any(Content.class))).thenAnswer(invocation -> {
+			Content content = invocation.getArgument(1);
+			if (content == first && !secondFetched.await(5, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("The second page was not fetched while the first was filtered");
+			}
+			return content;
+		});
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			PreprocessingContentRetriever retriever = new PreprocessingContentRetriever();
+			ReflectionTestUtils.setField(retriever, "webSearchContentRetriever", webSearchContentRetriever);
+			ReflectionTestUtils.setField(retriever, "commonUtility", commonUtility);
+			ReflectionTestUtils.setField(retriever, "tokenAccountant", new TokenAccountant(OpenAiChatModelName.GPT_4_O));
+			ReflectionTestUtils.setField(retriever, "webContentExecutor", executor);
+			ReflectionTestUtils.setField(retriever, "observationRegistry", ObservationRegistry.NOOP);
+			ReflectionTestUtils.setField(retriever, "webFetchConcurrency", 1);
+			ReflectionTestUtils.setField(retriever, "urlTimeoutMillis", 10_000L);
+			ReflectionTestUtils.setField(retriever, "totalTimeoutMillis", 10_000L);
+
+			assertThat(retriever.retrieve(Query.from("question"))).containsExactly(first, second);
+			// The limit belongs to the call, so a second question gets its own permits.
+			assertThat(retriever.retrieve(Query.from("question"))).containsExactly(first, second);
+		}
+	}
+
+	private static Content hit(String url) {
+		return Content.from(TextSegment.from("Page at " + url, Metadata.from("url", url)));
+	}
+}
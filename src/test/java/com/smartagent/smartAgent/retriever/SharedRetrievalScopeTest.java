@@ -0,0 +1,132 @@
+package com.smartagent.smartAgent.retriever;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SharedRetrievalScopeTest {
+
+	@Test
+	void sharesPagesAcrossTasksStartedInsideTheScope() throws Exception {
+		AtomicInteger downloads = new AtomicInteger();
+		CountDownLatch allStarted = new CountDownLatch(4);
+		try (ExecutorService executor = ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor(),
+				ContextSnapshotFactory.builder().build());
+			 SharedRetrievalScope scope = SharedRetrievalScope.open()) {
+			List<Future<String>> pages = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				pages.add(executor.submit(() -> {
+					allStarted.countDown();
+					allStarted.await();
+					return SharedRetrievalScope.current().pageText("HTTPS://Example.com:443/page#top", () -> {
+						downloads.incrementAndGet();
+						Thread.sleep(50);
+						return "page text";
+					});
+				}));
+			}
+			for (Future<String> page : pages) {
+				assertThat(page.get(5, TimeUnit.SECONDS)).isEqualTo("page text");
+			}
+			assertThat(SharedRetrievalScope.current().pageText("https://example.com/page", () -> "downloaded again")).isEqualTo("page text");
+		}
+		assertThat(downloads).hasValue(1);
+		assertThat(SharedRetrievalScope.current()).isSameAs(SharedRetrievalScope.NONE);
+	}
+
+	@Test
+	void embedsOnlyTextsNotEmbeddedInTheScopeYet() {
+		List<List<String>> embeddedBatches = new CopyOnWriteArrayList<>();
+		try (SharedRetrievalScope scope = SharedRetrievalScope.open()) {
+			scope.embeddings(segments("question one", "a", "b"), batch -> embed(batch, embeddedBatches));
+			List<Embedding> embeddings = scope.embeddings(segments("question two", "b", "a", "question two"), batch -> embed(batch, embeddedBatches));
+
+			assertThat(embeddings).extracting(embedding -> embedding.vector()[0])
+					.containsExactly((float) "question two".length(), 1f, 1f, (float) "question two".length());
+		}
+		assertThat(embeddedBatches).containsExactly(List.of("question one", "a", "b"), List.of("question two"));
+	}
+
+	@Test
+	void sharesAnErrorWithTheWaitingQuestions() throws Exception {
+		CountDownLatch loadStarted = new CountDownLatch(1);
+		CountDownLatch releaseLoad = new CountDownLatch(1);
+		try (ExecutorService executor = ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor(),
+				ContextSnapshotFactory.builder().build());
+			 SharedRetrievalScope scope = SharedRetrievalScope.open()) {
+			Future<String> loading = executor.submit(() -> SharedRetrievalScope.current().pageText("https://example.com/page", () -> {
+				loadStarted.countDown();
+				releaseLoad.await();
+				throw new OutOfMemoryError("page too large");
+			}));
+			loadStarted.await();
+			Future<String> waiting = executor.submit(() -> SharedRetrievalScope.current().pageText("https://example.com/page", () -> "unused"));
+			Thread.sleep(50);
+			releaseLoad.countDown();
+
+			assertThatThrownBy(() -> loading.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(OutOfMemoryError.class);
+			assertThatThrownBy(() -> waiting.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(OutOfMemoryError.class);
+		}
+	}
+
+	@Test
+	void waitingQuestionsLoadAgainWhenTheLoadingQuestionIsCancelled() throws Exception {
+		CountDownLatch loadStarted = new CountDownLatch(1);
+		try (ExecutorService executor = ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor(),
+				ContextSnapshotFactory.builder().build());
+			 SharedRetrievalScope scope = SharedRetrievalScope.open()) {
+			Future<String> cancelled = executor.submit(() -> SharedRetrievalScope.current().pageText("https://example.com/page", () -> {
+				loadStarted.countDown();
+				Thread.sleep(Duration.ofMinutes(1));
+				return "unused";
+			}));
+			loadStarted.await();
+			Future<String> waiting = executor.submit(() -> SharedRetrievalScope.current().pageText("https://example.com/page", () -> "loaded again"));
+			Thread.sleep(50);
+			cancelled.cancel(true);
+
+			assertThat(waiting.get(5, TimeUnit.SECONDS)).isEqualTo("loaded again");
+			assertThat(scope.pageText("https://example.com/page", () -> "unused")).isEqualTo("loaded again");
+		}
+	}
+
+	@Test
+	void sharesNothingOutsideOfAScope() {
+		AtomicInteger searches = new AtomicInteger();
+		SharedRetrievalScope.current().searchResults("query", () -> {
+			searches.incrementAndGet();
+			return List.of();
+		});
+		SharedRetrievalScope.current().searchResults("query", () -> {
+			searches.incrementAndGet();
+			return List.of();
+		});
+		assertThat(searches).hasValue(2);
+	}
+
+	private static List<TextSegment> segments(String... texts) {
+		return Arrays.stream(texts).map(TextSegment::from).toList();
+	}
+
+	private static List<Embedding> embed(List<TextSegment> batch, List<List<String>> embeddedBatches) {
+		embeddedBatches.add(batch.stream().map(TextSegment::text).toList());
+		return batch.stream().map(segment -> Embedding.from(new float[]{segment.text().length()})).toList();
+	}
+}
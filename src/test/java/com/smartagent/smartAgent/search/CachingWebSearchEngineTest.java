@@ -0,0 +1,78 @@
+package com.smartagent.smartAgent.search;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.web.search.WebSearchEngine;
+import dev.langchain4j.web.search.WebSearchInformationResult;
+import dev.langchain4j.web.search.WebSearchOrganicResult;
+import dev.langchain4j.web.search.WebSearchRequest;
+import dev.langchain4j.web.search.WebSearchResults;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingWebSearchEngineTest {
+
+	private final AtomicInteger searches = new AtomicInteger();
+
+	@Test
+	void nearIdenticalQueriesShareOneSearch() {
+		CachingWebSearchEngine engine = new CachingWebSearchEngine(countingEngine(1), Caffeine.newBuilder().buildAsync());
+
+		engine.search(WebSearchRequest.from("Solar capacity 2024", 3));
+		engine.search(WebSearchRequest.from("  \"solar   capacity 2024?\" ", 3));
+		engine.search(WebSearchRequest.from("solar capacity 2024", 5));
+
+		assertThat(searches).hasValue(2);
+	}
+
+	@Test
+	void normalizesOnlyCaseWhitespaceQuotesAndSentenceFinalPunctuation() {
+		assertThat(CachingWebSearchEngine.normalizeQuery("  What is   SOLAR capacity?! ")).isEqualTo("what is solar capacity");
+		assertThat(CachingWebSearchEngine.normalizeQuery("“solar capacity.”")).isEqualTo("solar capacity");
+		assertThat(CachingWebSearchEngine.normalizeQuery("'solar capacity'")).isEqualTo("solar capacity");
+		assertThat(CachingWebSearchEngine.normalizeQuery("C++")).isEqualTo("c++");
+		assertThat(CachingWebSearchEngine.normalizeQuery("C#")).isEqualTo("c#");
+		assertThat(CachingWebSearchEngine.normalizeQuery("C")).isEqualTo("c");
+		assertThat(CachingWebSearchEngine.normalizeQuery("#hashtag search")).isEqualTo("#hashtag search");
+		assertThat(CachingWebSearchEngine.normalizeQuery("(parenthesized)")).isEqualTo("(parenthesized)");
+	}
+
+	@Test
+	void languagesWithPunctuationInTheirNameAreDifferentSearches() {
+		CachingWebSearchEngine engine = new CachingWebSearchEngine(countingEngine(1), Caffeine.newBuilder().buildAsync());
+
+		engine.search(WebSearchRequest.from("C++ tutorial", 3));
+		engine.search(WebSearchRequest.from("C# tutorial", 3));
+		engine.search(WebSearchRequest.from("C tutorial", 3));
+		engine.search(WebSearchRequest.from("C++", 3));
+		engine.search(WebSearchRequest.from("C#", 3));
+		engine.search(WebSearchRequest.from("C", 3));
+
+		assertThat(searches).hasValue(6);
+	}
+
+	@Test
+	void searchesWithoutResultsAreNotCached() {
+		CachingWebSearchEngine engine = new CachingWebSearchEngine(countingEngine(0), Caffeine.newBuilder().buildAsync());
+
+		assertThat(engine.search(WebSearchRequest.from("solar capacity", 3)).results()).isEmpty();
+		assertThat(engine.search(WebSearchRequest.from("solar capacity", 3)).results()).isEmpty();
+
+		assertThat(searches).hasValue(2);
+	}
+
+	private WebSearchEngine countingEngine(int resultCount) {
+		return request -> {
+			int search = searches.incrementAndGet();
+			List<WebSearchOrganicResult> results = IntStream.range(0, resultCount)
+					.mapToObj(i -> WebSearchOrganicResult.from("result", URI.create("https://example.com/" + search + "/" + i), "snippet", null))
+					.toList();
+			return WebSearchResults.from(WebSearchInformationResult.from((long) resultCount), results);
+		};
+	}
+}
@@ -0,0 +1,114 @@
+package com.smartagent.smartAgent.search;
+
+import dev.langchain4j.web.search.WebSearchEngine;
+import dev.langchain4j.web.search.WebSearchInformationResult;
+import dev.langchain4j.web.search.WebSearchOrganicResult;
+import dev.langchain4j.web.search.WebSearchRequest;
+import dev.langchain4j.web.search.WebSearchResults;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompositeWebSearchEngineTest {
+
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	@AfterEach
+	void closeExecutor() {
+		executor.close();
+	}
+
+	@Test
+	void mergeDeduplicatesUrlsAndRanksByReciprocalRankFusion() {
+		WebSearchEngine first = stubEngine(0, "https://a.example/", "https://b.example/", "https://c.example/");
+		WebSearchEngine second = stubEngine(0, "https://C.example:443/#top", "https://d.example/");
+		CompositeWebSearchEngine engine = new CompositeWebSearchEngine(List.of(first, second),
+				CompositeWebSearchEngine.Mode.MERGE, executor, Duration.ofSeconds(2), 0.95, Duration.ofMillis(100));
+
+		WebSearchResults results = engine.search(WebSearchRequest.from("query", 3));
+
+		assertThat(results.results()).extracting(result -> result.url().toString())
+				.containsExactly("https://c.example/", "https://a.example/", "https://b.example/");
+	}
+
+	@Test
+	void hedgedSearchReturnsFirstAnswerWhenPrimaryIsSlow() {
+		WebSearchEngine slow = stubEngine(5_000, "https://slow.example/");
+		WebSearchEngine fast = stubEngine(0, "https://fast.example/");
+		CompositeWebSearchEngine engine = new CompositeWebSearchEngine(List.of(slow, fast),
+				CompositeWebSearchEngine.Mode.HEDGED, executor, Duration.ofSeconds(2), 0.95, Duration.ofMillis(50));
+
+		long start = System.nanoTime();
+		WebSearchResults results = engine.search(WebSearchRequest.from("query", 3));
+
+		assertThat(results.results()).extracting(result -> result.url().toString()).containsExactly("https://fast.example/");
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+	}
+
+	@Test
+	void hedgedSearchFailsOverAndRethrowsWhenAllEnginesFail() {
+		WebSearchEngine failing = request -> {
+			throw new IllegalStateException("engine down");
+		};
+		WebSearchEngine fast = stubEngine(0, "https://fast.example/");
+
+		CompositeWebSearchEngine failover = new CompositeWebSearchEngine(List.of(failing, fast),
+				CompositeWebSearchEngine.Mode.HEDGED, executor, Duration.ofSeconds(2), 0.95, Duration.ofSeconds(1));
+		CompositeWebSearchEngine allFailing = new CompositeWebSearchEngine(List.of(failing, failing),
+				CompositeWebSearchEngine.Mode.HEDGED, executor, Duration.ofSeconds(2), 0.95, Duration.ofSeconds(1));
+
+		assertThat(failover.search(WebSearchRequest.from("query", 3)).results()).hasSize(1);
+		assertThatThrownBy(() -> allFailing.search(WebSearchRequest.from("query", 3)))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("engine down");
+	}
+
+	@Test
+	void cancelledSearchesRecordTheirElapsedTimeAsLatency() throws Exception {
+		WebSearchEngine slow = stubEngine(5_000, "https://slow.example/");
+		WebSearchEngine fast = stubEngine(0, "https://fast.example/");
+		CompositeWebSearchEngine engine = new CompositeWebSearchEngine(List.of(slow, fast),
+				CompositeWebSearchEngine.Mode.MERGE, executor, Duration.ofMillis(100), 0.5, Duration.ZERO);
+
+		for (int i = 0; i < 8; i++) {
+			assertThat(engine.search(WebSearchRequest.from("query", 3)).results()).hasSize(1);
+		}
+
+		long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+		while (medianLatency(engine, 0) == 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(Duration.ofNanos(medianLatency(engine, 0))).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+	}
+
+	private static long medianLatency(CompositeWebSearchEngine engine, int index) {
+		List<?> latencies = (List<?>) ReflectionTestUtils.getField(engine, "latencies");
+		Long median = ReflectionTestUtils.invokeMethod(latencies.get(index), "percentileNanos", 0.5, Duration.ZERO);
+		return median;
+	}
+
+	private static WebSearchEngine stubEngine(long delayMillis, String... urls) {
+		return request -> {
+			try {
+				Thread.sleep(delayMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+			List<WebSearchOrganicResult> results = Arrays.stream(urls)
+					.map(url -> WebSearchOrganicResult.from(url, URI.create(url), "snippet", null))
+					.toList();
+			return WebSearchResults.from(WebSearchInformationResult.from((long) results.size()), results);
+		};
+	}
+}
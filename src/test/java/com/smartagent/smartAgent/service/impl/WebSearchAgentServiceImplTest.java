@@ -0,0 +1,51 @@
+package com.smartagent.smartAgent.service.impl;
+
+import com.smartagent.smartAgent.assistant.WebSearchAssistant;
+import com.smartagent.smartAgent.cache.SemanticAnswerCache;
+import com.smartagent.smartAgent.memory.ConversationChatMemoryProvider;
+import com.smartagent.smartAgent.record.domain.WebSearchResult;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class WebSearchAgentServiceImplTest {
+
+	private final WebSearchAssistant webSearchAssistant = mock(WebSearchAssistant.class);
+	private final SemanticAnswerCache semanticAnswerCache = mock(SemanticAnswerCache.class);
+	private final WebSearchAgentServiceImpl service = new WebSearchAgentServiceImpl();
+
+	WebSearchAgentServiceImplTest() {
+		ReflectionTestUtils.setField(service, "webSearchAssistant", webSearchAssistant);
+		ReflectionTestUtils.setField(service, "semanticAnswerCache", semanticAnswerCache);
+		ReflectionTestUtils.setField(service, "conversationChatMemoryProvider", mock(ConversationChatMemoryProvider.class));
+		ReflectionTestUtils.setField(service, "observationRegistry", ObservationRegistry.NOOP);
+	}
+
+	@Test
+	void bypassesTheSemanticCacheInAConversation() {
+		when(webSearchAssistant.answer("conversation", "question")).thenReturn("answer");
+
+		assertThat(service.agentReplyWithWebSearchData("question", "conversation").result()).isEqualTo("answer");
+		verifyNoInteractions(semanticAnswerCache);
+	}
+
+	@Test
+	void answersAOneOffQuestionThroughTheSemanticCache() {
+		when(semanticAnswerCache.getOrAnswer(eq("question"), any())).thenAnswer(invocation -> invocation.<Supplier<WebSearchResult>>getArgument(1).get());
+		when(webSearchAssistant.answer(anyString(), eq("question"))).thenReturn("answer");
+
+		assertThat(service.agentReplyWithWebSearchData("question", null).result()).isEqualTo("answer");
+		verify(semanticAnswerCache).getOrAnswer(eq("question"), any());
+	}
+}
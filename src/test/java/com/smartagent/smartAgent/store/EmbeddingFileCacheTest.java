@@ -0,0 +1,81 @@
+package com.smartagent.smartAgent.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmbeddingFileCacheTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void returnsAStoredVectorAndMissesAnUnknownKey() {
+		EmbeddingFileCache cache = new EmbeddingFileCache(directory, 1024, Duration.ofHours(1));
+
+		cache.put("a", new float[]{1, 2, 3});
+
+		assertThat(cache.get("a", 3)).containsExactly(1, 2, 3);
+		assertThat(cache.get("b", 3)).isNull();
+	}
+
+	@Test
+	void deletesAVectorOfTheWrongDimension() throws IOException {
+		EmbeddingFileCache cache = new EmbeddingFileCache(directory, 1024, Duration.ofHours(1));
+		cache.put("a", new float[]{1, 2, 3});
+		Files.write(directory.resolve("b.f32"), new byte[]{1, 2, 3, 4, 5});
+
+		assertThat(cache.get("a", 4)).isNull();
+		assertThat(cache.get("b", 1)).isNull();
+		assertThat(directory.resolve("a.f32")).doesNotExist();
+		assertThat(directory.resolve("b.f32")).doesNotExist();
+	}
+
+	@Test
+	void deletesAnExpiredVector() throws IOException {
+		EmbeddingFileCache cache = new EmbeddingFileCache(directory, 1024, Duration.ofHours(1));
+		cache.put("a", new float[]{1, 2, 3});
+		Files.setLastModifiedTime(directory.resolve("a.f32"), FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+
+		assertThat(cache.get("a", 3)).isNull();
+		assertThat(directory.resolve("a.f32")).doesNotExist();
+	}
+
+	@Test
+	void evictsTheOldestVectorsWhenOverTheBound() throws IOException {
+		EmbeddingFileCache cache = new EmbeddingFileCache(directory, 40, Duration.ofHours(1));
+		Instant now = Instant.now();
+		for (int i = 0; i < 4; i++) {
+			cache.put("v" + i, new float[]{i, i});
+			Files.setLastModifiedTime(directory.resolve("v" + i + ".f32"), FileTime.from(now.minusSeconds(10 - i)));
+		}
+
+		cache.put("v4", new float[]{4, 4});
+		cache.put("v5", new float[]{5, 5});
+
+		assertThat(cache.get("v0", 2)).isNull();
+		assertThat(cache.get("v1", 2)).isNull();
+		assertThat(cache.get("v2", 2)).containsExactly(2, 2);
+		assertThat(cache.get("v5", 2)).containsExactly(5, 5);
+	}
+
+	@Test
+	void boundsTheVectorsLeftByAPreviousRun() {
+		EmbeddingFileCache previousRun = new EmbeddingFileCache(directory, 1024, Duration.ofHours(1));
+		for (int i = 0; i < 8; i++) {
+			previousRun.put("v" + i, new float[]{i, i});
+		}
+
+		new EmbeddingFileCache(directory, 40, Duration.ofHours(1));
+
+		assertThat(directory.toFile().list()).hasSizeLessThanOrEqualTo(4);
+	}
+}
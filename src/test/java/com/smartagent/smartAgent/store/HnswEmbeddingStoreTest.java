@@ -0,0 +1,209 @@
+package com.smartagent.smartAgent.store;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.filter.MetadataFilterBuilder;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswEmbeddingStoreTest {
+
+	private static final int DIMENSION = 32;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void findsNearlyAllOfTheExactNearestNeighbours() {
+		Random random = new Random(7);
+		HnswEmbeddingStore hnswStore = new HnswEmbeddingStore(16, 200, 64, null);
+		InMemoryEmbeddingStore<TextSegment> exactStore = new InMemoryEmbeddingStore<>();
+		for (int i = 0; i < 5000; i++) {
+			Embedding embedding = randomEmbedding(random);
+			hnswStore.add(String.valueOf(i), embedding);
+			exactStore.add(String.valueOf(i), embedding);
+		}
+
+		int found = 0;
+		for (int i = 0; i < 100; i++) {
+			Embedding query = randomEmbedding(random);
+			Set<String> expected = ids(exactStore.search(request(query, 10)).matches());
+			Set<String> actual = ids(hnswStore.search(request(query, 10)).matches());
+			actual.retainAll(expected);
+			found += actual.size();
+		}
+
+		assertThat(found / 1000.0).isGreaterThan(0.9);
+	}
+
+	@Test
+	void searchesWhileEmbeddingsAreAddedConcurrently() throws Exception {
+		HnswEmbeddingStore store = new HnswEmbeddingStore(8, 64, 32, null);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> tasks = IntStream.range(0, 8)
+					.mapToObj(thread -> executor.submit(() -> {
+						Random random = new Random(thread);
+						for (int i = 0; i < 500; i++) {
+							Embedding embedding = randomEmbedding(random);
+							store.add(thread + "-" + i, embedding);
+							assertThat(store.search(request(embedding, 1)).matches()).isNotEmpty();
+						}
+					}))
+					.collect(Collectors.toList());
+			for (Future<?> task : tasks) {
+				task.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertThat(store.size()).isEqualTo(4000);
+		Embedding query = randomEmbedding(new Random(100));
+		store.add("query", query);
+		assertThat(store.search(request(query, 1)).matches()).extracting(EmbeddingMatch::embeddingId).containsExactly("query");
+	}
+
+	@Test
+	void findsTheSameSegmentsAfterSavingAndLoading() {
+		Path file = directory.resolve("hnsw.index");
+		Random random = new Random(11);
+		try (HnswEmbeddingStore store = new HnswEmbeddingStore(8, 64, 32, file)) {
+			store.addAll(List.of("x", "y"),
+					List.of(Embedding.from(new float[]{1, 0, 0}), Embedding.from(new float[]{0, 1, 0})),
+					List.of(TextSegment.from("x axis", Metadata.from("source", "a").put("page", 3)), TextSegment.from("y axis")));
+			for (int i = 0; i < 200; i++) {
+				store.add(Embedding.from(new float[]{random.nextFloat(), random.nextFloat(), -1}));
+			}
+			store.remove("y");
+		}
+
+		try (HnswEmbeddingStore store = new HnswEmbeddingStore(8, 64, 32, file)) {
+			assertThat(store.size()).isEqualTo(201);
+			List<EmbeddingMatch<TextSegment>> matches = store.search(request(Embedding.from(new float[]{0.9f, 0.1f, 0}), 2)).matches();
+
+			assertThat(matches.getFirst().embedded().text()).isEqualTo("x axis");
+			assertThat(matches.getFirst().embedded().metadata().getString("source")).isEqualTo("a");
+			assertThat(matches.getFirst().embedded().metadata().getInteger("page")).isEqualTo(3);
+			assertThat(matches).extracting(EmbeddingMatch::embeddingId).doesNotContain("y");
+		}
+	}
+
+	@Test
+	void startsEmptyFromACorruptIndexAndKeepsItAside() throws Exception {
+		Path file = directory.resolve("hnsw.index");
+		try (HnswEmbeddingStore store = new HnswEmbeddingStore(8, 64, 32, file)) {
+			store.add("x", Embedding.from(new float[]{1, 0, 0}));
+			store.add("y", Embedding.from(new float[]{0, 1, 0}));
+		}
+		byte[] saved = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(saved, saved.length - 5));
+
+		try (HnswEmbeddingStore store = new HnswEmbeddingStore(8, 64, 32, file)) {
+			assertThat(store.size()).isZero();
+			store.add("z", Embedding.from(new float[]{0, 0, 1}));
+		}
+
+		assertThat(directory.resolve("hnsw.index.corrupt")).exists();
+		try (HnswEmbeddingStore store = new HnswEmbeddingStore(8, 64, 32, file)) {
+			assertThat(store.search(request(Embedding.from(new float[]{0, 0, 1}), 5)).matches())
+					.extracting(EmbeddingMatch::embeddingId).containsExactly("z");
+		}
+	}
+
+	@Test
+	void savesWhileEmbeddingsAreAddedAndSearched() throws Exception {
+		Path file = directory.resolve("hnsw.index");
+		HnswEmbeddingStore store = new HnswEmbeddingStore(8, 64, 32, file);
+		Random random = new Random(3);
+		for (int i = 0; i < 1000; i++) {
+			store.add(String.valueOf(i), randomEmbedding(random));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<?> writer = executor.submit(() -> {
+				Random writerRandom = new Random(4);
+				for (int i = 0; i < 2000; i++) {
+					Embedding embedding = randomEmbedding(writerRandom);
+					store.add(String.valueOf(i % 1500), embedding);
+					assertThat(store.search(request(embedding, 1)).matches()).isNotEmpty();
+				}
+			});
+			for (int i = 0; i < 5; i++) {
+				store.save();
+			}
+			writer.get();
+		} finally {
+			executor.shutdown();
+		}
+
+		try (HnswEmbeddingStore loaded = new HnswEmbeddingStore(8, 64, 32, file)) {
+			Set<String> ids = ids(loaded.search(request(randomEmbedding(random), 2000)).matches());
+			assertThat(loaded.size()).isEqualTo(ids.size()).isGreaterThanOrEqualTo(1000);
+		}
+	}
+
+	@Test
+	void skipsDeletedAndFilteredOutEmbeddings() {
+		HnswEmbeddingStore store = new HnswEmbeddingStore(4, 32, 8, null);
+		Random random = new Random(5);
+		for (int i = 0; i < 300; i++) {
+			store.add(Embedding.from(new float[]{random.nextFloat(), random.nextFloat()}), TextSegment.from("segment " + i, Metadata.from("lang", i == 150 ? "de" : "en")));
+		}
+		store.add("replaced", Embedding.from(new float[]{1, 0}));
+		store.add("replaced", Embedding.from(new float[]{0, 1}));
+
+		List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+				.queryEmbedding(Embedding.from(new float[]{-1, -1}))
+				.maxResults(5)
+				.filter(MetadataFilterBuilder.metadataKey("lang").isEqualTo("de"))
+				.build()).matches();
+		assertThat(matches).extracting(match -> match.embedded().text()).containsExactly("segment 150");
+
+		assertThat(store.search(request(Embedding.from(new float[]{0, 1}), 1)).matches())
+				.extracting(EmbeddingMatch::embeddingId).containsExactly("replaced");
+		assertThat(store.search(request(Embedding.from(new float[]{1, 0}), 400)).matches())
+				.extracting(EmbeddingMatch::embeddingId).containsOnlyOnce("replaced");
+
+		store.removeAll(MetadataFilterBuilder.metadataKey("lang").isEqualTo("en"));
+		assertThat(store.size()).isEqualTo(2);
+	}
+
+	private static Embedding randomEmbedding(Random random) {
+		float[] vector = new float[DIMENSION];
+		for (int i = 0; i < vector.length; i++) {
+			vector[i] = (float) random.nextGaussian();
+		}
+		return Embedding.from(vector);
+	}
+
+	private static EmbeddingSearchRequest request(Embedding query, int maxResults) {
+		return EmbeddingSearchRequest.builder()
+				.queryEmbedding(query)
+				.maxResults(maxResults)
+				.build();
+	}
+
+	private static Set<String> ids(List<EmbeddingMatch<TextSegment>> matches) {
+		return matches.stream().map(EmbeddingMatch::embeddingId).collect(Collectors.toCollection(HashSet::new));
+	}
+}
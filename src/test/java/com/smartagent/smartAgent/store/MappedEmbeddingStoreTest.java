@@ -0,0 +1,167 @@
+package com.smartagent.smartAgent.store;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.filter.MetadataFilterBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedEmbeddingStoreTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void findsTheNearestSegmentsAgainAfterReopening() {
+		try (MappedEmbeddingStore store = open()) {
+			store.add(Embedding.from(new float[]{1, 0, 0}), TextSegment.from("x axis", Metadata.from("source", "a").put("page", 3)));
+			store.add(Embedding.from(new float[]{0, 2, 0}), TextSegment.from("y axis"));
+			store.add("z", Embedding.from(new float[]{0, 0, 3}));
+		}
+
+		try (MappedEmbeddingStore store = open()) {
+			assertThat(store.size()).isEqualTo(3);
+			List<EmbeddingMatch<TextSegment>> matches = search(store, new float[]{0.9f, 0.1f, 0}, 2);
+
+			assertThat(matches).extracting(match -> match.embedded().text()).containsExactly("x axis", "y axis");
+			assertThat(matches.getFirst().embedded().metadata().getString("source")).isEqualTo("a");
+			assertThat(matches.getFirst().embedded().metadata().getInteger("page")).isEqualTo(3);
+			assertThat(search(store, new float[]{0, 0, 1}, 1)).extracting(EmbeddingMatch::embeddingId).containsExactly("z");
+		}
+	}
+
+	@Test
+	void dropsATornRecordAtTheEndOfTheLogWhenReopening() throws IOException {
+		try (MappedEmbeddingStore store = open()) {
+			store.add(Embedding.from(new float[]{1, 0}), TextSegment.from("first"));
+			store.add(Embedding.from(new float[]{0, 1}), TextSegment.from("second"));
+		}
+		Path log = storeFile("segments-");
+		Files.write(log, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+		try (MappedEmbeddingStore store = open()) {
+			assertThat(store.size()).isEqualTo(2);
+			store.add(Embedding.from(new float[]{1, 1}), TextSegment.from("third"));
+		}
+		try (MappedEmbeddingStore store = open()) {
+			assertThat(search(store, new float[]{1, 1}, 1)).extracting(match -> match.embedded().text()).containsExactly("third");
+		}
+	}
+
+	@Test
+	void compactsDeletedAndReplacedEmbeddingsAway() throws IOException {
+		List<String> ids = new ArrayList<>();
+		try (MappedEmbeddingStore store = open()) {
+			for (int i = 0; i < 10; i++) {
+				ids.add(store.add(Embedding.from(new float[]{1, i}), TextSegment.from("segment " + i)));
+			}
+			store.removeAll(ids.subList(0, 5));
+			store.add(ids.get(9), Embedding.from(new float[]{-1, 0}));
+			long logSizeBefore = Files.size(storeFile("segments-"));
+
+			store.compact();
+
+			assertThat(store.size()).isEqualTo(5);
+			assertThat(Files.size(storeFile("segments-"))).isLessThan(logSizeBefore);
+			assertThat(search(store, new float[]{1, 5}, 10)).extracting(EmbeddingMatch::embeddingId)
+					.containsExactlyInAnyOrderElementsOf(ids.subList(5, 10));
+		}
+		try (MappedEmbeddingStore store = open()) {
+			assertThat(store.size()).isEqualTo(5);
+			assertThat(search(store, new float[]{-1, 0}, 1)).extracting(EmbeddingMatch::embeddingId).containsExactly(ids.get(9));
+		}
+	}
+
+	@Test
+	void opensTheNewestValidGenerationWhenCurrentIsUnreadable() throws IOException {
+		List<String> ids = new ArrayList<>();
+		try (MappedEmbeddingStore store = open()) {
+			for (int i = 0; i < 4; i++) {
+				ids.add(store.add(Embedding.from(new float[]{1, i}), TextSegment.from("segment " + i)));
+			}
+			store.remove(ids.getFirst());
+			store.compact();
+		}
+		Files.writeString(directory.resolve("CURRENT"), "not a generation");
+		// A compaction that crashed before writing the header of its vector file.
+		Files.write(directory.resolve("vectors-9.f32"), new byte[64]);
+		Files.write(directory.resolve("segments-9.log"), new byte[]{0, 0, 0, 42});
+
+		try (MappedEmbeddingStore store = open()) {
+			assertThat(store.size()).isEqualTo(3);
+			assertThat(search(store, new float[]{1, 3}, 3)).extracting(EmbeddingMatch::embeddingId)
+					.containsExactlyInAnyOrderElementsOf(ids.subList(1, 4));
+		}
+		assertThat(directory.resolve("vectors-9.f32")).doesNotExist();
+	}
+
+	@Test
+	void staysUsableAfterAnInterruptClosedItsFiles() {
+		try (MappedEmbeddingStore store = open()) {
+			store.add(Embedding.from(new float[]{1, 0}), TextSegment.from("first"));
+
+			Thread.currentThread().interrupt();
+			try {
+				assertThatThrownBy(() -> search(store, new float[]{1, 0}, 1)).isInstanceOf(UncheckedIOException.class);
+			} finally {
+				Thread.interrupted();
+			}
+
+			store.add(Embedding.from(new float[]{0, 1}), TextSegment.from("second"));
+			assertThat(search(store, new float[]{1, 0}, 1)).extracting(match -> match.embedded().text()).containsExactly("first");
+		}
+		try (MappedEmbeddingStore store = open()) {
+			assertThat(store.size()).isEqualTo(2);
+		}
+	}
+
+	@Test
+	void appliesMetadataFilters() {
+		try (MappedEmbeddingStore store = open()) {
+			store.add(Embedding.from(new float[]{1, 0}), TextSegment.from("a", Metadata.from("lang", "en")));
+			store.add(Embedding.from(new float[]{0.9f, 0.1f}), TextSegment.from("b", Metadata.from("lang", "de")));
+
+			List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+					.queryEmbedding(Embedding.from(new float[]{1, 0}))
+					.maxResults(5)
+					.filter(MetadataFilterBuilder.metadataKey("lang").isEqualTo("de"))
+					.build()).matches();
+
+			assertThat(matches).extracting(match -> match.embedded().text()).containsExactly("b");
+			store.removeAll(MetadataFilterBuilder.metadataKey("lang").isEqualTo("en"));
+			assertThat(store.size()).isEqualTo(1);
+		}
+	}
+
+	private MappedEmbeddingStore open() {
+		return new MappedEmbeddingStore(directory, 0.3, Runnable::run);
+	}
+
+	private Path storeFile(String prefix) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().startsWith(prefix)).findFirst().orElseThrow();
+		}
+	}
+
+	private static List<EmbeddingMatch<TextSegment>> search(MappedEmbeddingStore store, float[] query, int maxResults) {
+		return store.search(EmbeddingSearchRequest.builder()
+				.queryEmbedding(Embedding.from(query))
+				.maxResults(maxResults)
+				.build()).matches();
+	}
+}
@@ -0,0 +1,36 @@
+package com.smartagent.smartAgent.store;
+
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RequestScopedVectorIndexTest {
+
+	@Test
+	void searchReturnsBestMatchesFirst() {
+		RequestScopedVectorIndex index = new RequestScopedVectorIndex(2);
+		index.add(new float[]{1f, 0f, 0f}, TextSegment.from("x"));
+		index.add(new float[]{0f, 2f, 0f}, TextSegment.from("y"));
+		index.add(new float[]{3f, 3f, 0f}, TextSegment.from("xy"));
+
+		List<RequestScopedVectorIndex.Match> matches = index.search(new float[]{0f, 5f, 0f}, 2, 0.0);
+
+		assertThat(matches).extracting(match -> match.segment().text()).containsExactly("y", "xy");
+		assertThat(matches.get(0).score()).isEqualTo(1.0, within(1e-6));
+	}
+
+	@Test
+	void searchSkipsMatchesBelowMinScore() {
+		RequestScopedVectorIndex index = new RequestScopedVectorIndex();
+		index.add(new float[]{1f, 0f}, TextSegment.from("same"));
+		index.add(new float[]{-1f, 0f}, TextSegment.from("opposite"));
+
+		List<RequestScopedVectorIndex.Match> matches = index.search(new float[]{1f, 0f}, 5, 0.85);
+
+		assertThat(matches).extracting(match -> match.segment().text()).containsExactly("same");
+	}
+}
@@ -0,0 +1,254 @@
+package com.smartagent.smartAgent.tooluse;
+
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolMemoryId;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.MemoryId;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.UserMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrentToolCallsTest {
+
+	private static final long SEARCH_MILLIS = 300;
+
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	@AfterEach
+	void closeExecutor() {
+		executor.close();
+	}
+
+	interface Assistant {
+		String answer(String question);
+	}
+
+	interface ConversationAssistant {
+		String answer(@MemoryId String conversationId, @UserMessage String question);
+	}
+
+	interface StreamingAssistant {
+		TokenStream answer(String question);
+	}
+
+	static class MemoryIdRecordingTool {
+
+		final List<Object> memoryIds = new CopyOnWriteArrayList<>();
+
+		@Tool("Searches the web")
+		String search(@ToolMemoryId String conversationId, String query) {
+			memoryIds.add(conversationId);
+			return "results for " + query;
+		}
+	}
+
+	static class SlowSearchTool {
+
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final AtomicInteger calls = new AtomicInteger();
+
+		@Tool("Searches the web")
+		String search(String query) throws InterruptedException {
+			calls.incrementAndGet();
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(SEARCH_MILLIS);
+				return "results for " + query;
+			} finally {
+				running.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Requests one search per query in its first answer, then answers with the tool results it was given.
+	 */
+	static class SearchingModel implements ChatLanguageModel {
+
+		final List<String> queries;
+		final List<String> toolResults = new ArrayList<>();
+
+		SearchingModel(List<String> queries) {
+			this.queries = queries;
+		}
+
+		@Override
+		public Response<AiMessage> generate(List<ChatMessage> messages) {
+			return generate(messages, List.of());
+		}
+
+		@Override
+		public Response<AiMessage> generate(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications) {
+			if (messages.getLast() instanceof ToolExecutionResultMessage) {
+				messages.stream()
+						.filter(ToolExecutionResultMessage.class::isInstance)
+						.map(message -> ((ToolExecutionResultMessage) message).text())
+						.forEach(toolResults::add);
+				return Response.from(AiMessage.from(String.join(", ", toolResults)));
+			}
+			String parameterName = toolSpecifications.getFirst().parameters().properties().keySet().iterator().next();
+			List<ToolExecutionRequest> requests = new ArrayList<>();
+			for (int i = 0; i < queries.size(); i++) {
+				requests.add(ToolExecutionRequest.builder()
+						.id("call-" + i)
+						.name("search")
+						.arguments("{\"" + parameterName + "\": \"" + queries.get(i) + "\"}")
+						.build());
+			}
+			return Response.from(AiMessage.from(requests));
+		}
+	}
+
+	@Test
+	void runsToolCallsOfOneTurnConcurrentlyAndKeepsTheirOrder() {
+		SlowSearchTool tool = new SlowSearchTool();
+		SearchingModel model = new SearchingModel(List.of("first", "second", "third", "fourth"));
+		ConcurrentToolCalls concurrentToolCalls = new ConcurrentToolCalls(List.of(tool), executor, 2);
+		Assistant assistant = AiServices.builder(Assistant.class)
+				.chatLanguageModel(concurrentToolCalls.decorate(model))
+				.tools(concurrentToolCalls.tools())
+				.chatMemory(MessageWindowChatMemory.withMaxMessages(20))
+				.build();
+
+		long start = System.nanoTime();
+		String answer = assistant.answer("Four questions in one");
+		long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+		assertThat(model.toolResults).containsExactly(
+				"results for first", "results for second", "results for third", "results for fourth");
+		assertThat(answer).isEqualTo("results for first, results for second, results for third, results for fourth");
+		assertThat(tool.calls).hasValue(4);
+		assertThat(tool.maxRunning).hasValue(2);
+		assertThat(elapsedMillis).isLessThan(4 * SEARCH_MILLIS);
+	}
+
+	@Test
+	void concurrentQuestionsReusingToolCallIdsGetTheirOwnResults() throws Exception {
+		SlowSearchTool tool = new SlowSearchTool();
+		ConcurrentToolCalls concurrentToolCalls = new ConcurrentToolCalls(List.of(tool), executor, 4);
+		Assistant cats = assistant(concurrentToolCalls, new SearchingModel(List.of("cats", "kittens")));
+		Assistant dogs = assistant(concurrentToolCalls, new SearchingModel(List.of("dogs", "puppies")));
+
+		Future<String> catsAnswer = executor.submit(() -> cats.answer("Cats?"));
+		Future<String> dogsAnswer = executor.submit(() -> dogs.answer("Dogs?"));
+
+		assertThat(catsAnswer.get(5, TimeUnit.SECONDS)).isEqualTo("results for cats, results for kittens");
+		assertThat(dogsAnswer.get(5, TimeUnit.SECONDS)).isEqualTo("results for dogs, results for puppies");
+		assertThat(tool.calls).hasValue(4);
+	}
+
+	@Test
+	void runsASingleToolCallOnTheCallingThread() {
+		SlowSearchTool tool = new SlowSearchTool();
+		SearchingModel model = new SearchingModel(List.of("only"));
+		ConcurrentToolCalls concurrentToolCalls = new ConcurrentToolCalls(List.of(tool), executor, 2);
+		Assistant assistant = AiServices.builder(Assistant.class)
+				.chatLanguageModel(concurrentToolCalls.decorate(model))
+				.tools(concurrentToolCalls.tools())
+				.chatMemory(MessageWindowChatMemory.withMaxMessages(20))
+				.build();
+
+		assertThat(assistant.answer("One question")).isEqualTo("results for only");
+		assertThat(tool.calls).hasValue(1);
+	}
+
+	@Test
+	void passesTheMemoryIdOfTheQuestionToConcurrentCalls() {
+		MemoryIdRecordingTool tool = new MemoryIdRecordingTool();
+		ConcurrentToolCalls concurrentToolCalls = new ConcurrentToolCalls(List.of(tool), executor, 2);
+		ConversationAssistant assistant = AiServices.builder(ConversationAssistant.class)
+				.chatLanguageModel(concurrentToolCalls.decorate(new SearchingModel(List.of("first", "second"))))
+				.tools(concurrentToolCalls.tools())
+				.chatMemoryProvider(memoryId -> MessageWindowChatMemory.withMaxMessages(20))
+				.build();
+
+		assertThat(assistant.answer("conversation-1", "Two questions")).isEqualTo("results for first, results for second");
+		assertThat(tool.memoryIds).containsExactly("conversation-1", "conversation-1");
+	}
+
+	@Test
+	void runsToolCallsOfAStreamedTurnConcurrently() throws Exception {
+		SlowSearchTool tool = new SlowSearchTool();
+		SearchingModel model = new SearchingModel(List.of("first", "second", "third", "fourth"));
+		ConcurrentToolCalls concurrentToolCalls = new ConcurrentToolCalls(List.of(tool), executor, 4);
+		StreamingAssistant assistant = AiServices.builder(StreamingAssistant.class)
+				.streamingChatLanguageModel(concurrentToolCalls.decorate(new StreamingSearchingModel(model)))
+				.tools(concurrentToolCalls.tools())
+				.chatMemory(MessageWindowChatMemory.withMaxMessages(20))
+				.build();
+
+		CompletableFuture<String> answer = new CompletableFuture<>();
+		long start = System.nanoTime();
+		assistant.answer("Four questions in one")
+				.onPartialResponse(partialResponse -> {
+				})
+				.onCompleteResponse(response -> answer.complete(response.aiMessage().text()))
+				.onError(answer::completeExceptionally)
+				.start();
+
+		assertThat(answer.get(5, TimeUnit.SECONDS))
+				.isEqualTo("results for first, results for second, results for third, results for fourth");
+		assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(4 * SEARCH_MILLIS);
+		assertThat(tool.maxRunning.get()).isGreaterThan(1);
+	}
+
+	/**
+	 * Streams the answers of a {@link SearchingModel} on a thread of its own, as a real model would.
+	 */
+	private class StreamingSearchingModel implements StreamingChatLanguageModel {
+
+		private final SearchingModel model;
+
+		private StreamingSearchingModel(SearchingModel model) {
+			this.model = model;
+		}
+
+		@Override
+		public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+			executor.execute(() -> {
+				AiMessage aiMessage = model.generate(chatRequest.messages(), chatRequest.toolSpecifications()).content();
+				handler.onCompleteResponse(ChatResponse.builder().aiMessage(aiMessage).build());
+			});
+		}
+
+		@Override
+		public void generate(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private static Assistant assistant(ConcurrentToolCalls concurrentToolCalls, ChatLanguageModel model) {
+		return AiServices.builder(Assistant.class)
+				.chatLanguageModel(concurrentToolCalls.decorate(model))
+				.tools(concurrentToolCalls.tools())
+				.chatMemory(MessageWindowChatMemory.withMaxMessages(20))
+				.build();
+	}
+}
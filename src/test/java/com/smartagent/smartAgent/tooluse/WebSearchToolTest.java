@@ -0,0 +1,58 @@
+package com.smartagent.smartAgent.tooluse;
+
+import com.smartagent.smartAgent.retriever.PipelineProgressListener;
+import com.smartagent.smartAgent.retriever.PreprocessingContentRetriever;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.query.Query;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class WebSearchToolTest {
+
+	private final PreprocessingContentRetriever retriever = mock(PreprocessingContentRetriever.class);
+	private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+
+	WebSearchToolTest() {
+		observationRegistry.observationConfig().observationHandler(context -> true);
+	}
+
+	@Test
+	void searchesInTheScopeOfTheAnswerFromAnyThread() throws Exception {
+		AtomicReference<Observation> currentDuringSearch = new AtomicReference<>();
+		when(retriever.retrieve(any(Query.class), any(PipelineProgressListener.class))).thenAnswer(invocation -> {
+			currentDuringSearch.set(observationRegistry.getCurrentObservation());
+			return List.of(Content.from("result"));
+		});
+		Observation answer = Observation.start("agent.answer", observationRegistry);
+		WebSearchTool tool = new WebSearchTool(retriever).forAnswer(PipelineProgressListener.NONE, () -> false, answer);
+
+		List<String> results;
+		try (ExecutorService modelClientThread = Executors.newSingleThreadExecutor()) {
+			results = modelClientThread.submit(() -> tool.webSearch("solar capacity")).get();
+		}
+		answer.stop();
+
+		assertThat(results).containsExactly("result");
+		assertThat(currentDuringSearch.get()).isSameAs(answer);
+	}
+
+	@Test
+	void returnsNoResultsWithoutSearchingOnceCancelled() {
+		WebSearchTool tool = new WebSearchTool(retriever).forAnswer(PipelineProgressListener.NONE, () -> true, null);
+
+		assertThat(tool.webSearch("solar capacity")).isEmpty();
+		verifyNoInteractions(retriever);
+	}
+}
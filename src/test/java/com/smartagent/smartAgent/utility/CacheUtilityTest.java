@@ -0,0 +1,141 @@
+package com.smartagent.smartAgent.utility;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CacheUtilityTest {
+
+	private final AsyncCache<String, String> cache = Caffeine.newBuilder().buildAsync();
+	private final CountDownLatch loadStarted = new CountDownLatch(1);
+	private final CountDownLatch releaseLoad = new CountDownLatch(1);
+
+	@Test
+	void concurrentCallersShareOneLoad() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<String> leader = executor.submit(() -> CacheUtility.getOrLoad(cache, "key", () -> {
+				loads.incrementAndGet();
+				loadStarted.countDown();
+				awaitRelease();
+				return "value";
+			}));
+			loadStarted.await();
+			Future<String> follower = executor.submit(() -> CacheUtility.getOrLoad(cache, "key", () -> {
+				loads.incrementAndGet();
+				return "other value";
+			}));
+			releaseLoad.countDown();
+
+			assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+			assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+		}
+		assertThat(loads).hasValue(1);
+	}
+
+	@Test
+	void failedLoadFailsItsWaitersAndIsRetried() throws Exception {
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<String> leader = executor.submit(() -> CacheUtility.getOrLoad(cache, "key", () -> {
+				loadStarted.countDown();
+				awaitRelease();
+				throw new IllegalStateException("search failed");
+			}));
+			loadStarted.await();
+			Future<String> follower = executor.submit(() -> CacheUtility.getOrLoad(cache, "key", () -> "unused"));
+			Thread.sleep(50);
+			releaseLoad.countDown();
+
+			assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).cause()
+					.isInstanceOf(CompletionException.class).hasCauseInstanceOf(IllegalStateException.class);
+			assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).cause()
+					.isInstanceOf(CompletionException.class).hasCauseInstanceOf(IllegalStateException.class);
+		}
+		assertThat(CacheUtility.getOrLoad(cache, "key", () -> "retried")).isEqualTo("retried");
+	}
+
+	@Test
+	void timedOutLoadFailsItsWaitersInsteadOfLoadingAgain() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<String> leader = executor.submit(() -> CacheUtility.getOrLoad(cache, "key", () -> {
+				loads.incrementAndGet();
+				loadStarted.countDown();
+				awaitRelease();
+				throw new UncheckedIOException(new SocketTimeoutException("Read timed out"));
+			}));
+			loadStarted.await();
+			Future<String> follower = executor.submit(() -> CacheUtility.getOrLoad(cache, "key", () -> {
+				loads.incrementAndGet();
+				return "loaded again";
+			}));
+			Thread.sleep(50);
+			releaseLoad.countDown();
+
+			assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).rootCause().isInstanceOf(SocketTimeoutException.class);
+			assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).rootCause().isInstanceOf(SocketTimeoutException.class);
+		}
+		assertThat(loads).hasValue(1);
+	}
+
+	@Test
+	void loadFailingWithAnErrorDoesNotLeaveWaitersHanging() {
+		assertThatThrownBy(() -> CacheUtility.getOrLoad(cache, "key", () -> {
+			throw new StackOverflowError();
+		})).isInstanceOf(CompletionException.class).hasCauseInstanceOf(StackOverflowError.class);
+
+		assertThat(CacheUtility.getOrLoad(cache, "key", () -> "retried")).isEqualTo("retried");
+	}
+
+	@Test
+	void waitersLoadAgainWhenTheLoadingCallerIsInterrupted() throws Exception {
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<String> leader = executor.submit(() -> CacheUtility.getOrLoad(cache, "key", () -> {
+				loadStarted.countDown();
+				awaitRelease();
+				return "unused";
+			}));
+			loadStarted.await();
+			Future<String> follower = executor.submit(() -> CacheUtility.getOrLoad(cache, "key", () -> "loaded again"));
+			Thread.sleep(50);
+			leader.cancel(true);
+
+			assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("loaded again");
+		}
+		assertThat(CacheUtility.getOrLoad(cache, "key", () -> "unused")).isEqualTo("loaded again");
+	}
+
+	@Test
+	void resultOfAnInterruptedLoadIsNotCached() {
+		Thread.currentThread().interrupt();
+		try {
+			assertThat(CacheUtility.getOrLoad(cache, "key", () -> "partial")).isEqualTo("partial");
+		} finally {
+			Thread.interrupted();
+		}
+
+		assertThat(CacheUtility.getOrLoad(cache, "key", () -> "complete")).isEqualTo("complete");
+	}
+
+	private void awaitRelease() {
+		try {
+			releaseLoad.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package com.smartagent.smartAgent.utility;
+
+import com.smartagent.smartAgent.assistant.DataFilterAssistant;
+import com.smartagent.smartAgent.record.llmresponse.DataFilterAssistantResponse;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.openai.OpenAiChatModelName;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.query.Query;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CommonUtilityTest {
+
+	private final TokenAccountant tokenAccountant = new TokenAccountant(OpenAiChatModelName.GPT_4_O);
+	private final DataFilterAssistant dataFilterAssistant = mock(DataFilterAssistant.class);
+	private CommonUtility commonUtility;
+
+	@BeforeEach
+	void createUtility() {
+		commonUtility = new CommonUtility();
+		ReflectionTestUtils.setField(commonUtility, "tokenAccountant", tokenAccountant);
+		ReflectionTestUtils.setField(commonUtility, "dataFilterAssistant", dataFilterAssistant);
+		ReflectionTestUtils.setField(commonUtility, "observationRegistry", ObservationRegistry.NOOP);
+		ReflectionTestUtils.setField(commonUtility, "filterTokenBudget", 8000);
+	}
+
+	@Test
+	void ranksScoredContentsByScore() {
+		List<Content> contents = List.of(scored("low", 0.2), scored("high", 0.9), scored("middle", 0.5));
+
+		List<Content> packed = commonUtility.packContentsUnderTokenBudget(contents, 1000);
+
+		assertThat(packed).extracting(content -> content.textSegment().text()).containsExactly("high", "middle", "low");
+	}
+
+	@Test
+	void ranksScoredContentsBeforeUnscoredOnesInRetrievalOrder() {
+		List<Content> contents = List.of(Content.from("first"), scored("second", 0.1), Content.from("third"), scored("fourth", 0.9));
+
+		List<Content> packed = commonUtility.packContentsUnderTokenBudget(contents, 1000);
+
+		assertThat(packed).extracting(content -> content.textSegment().text()).containsExactly("fourth", "second", "first", "third");
+	}
+
+	@Test
+	void dropsUnscoredContentsFirstWhenOverBudget() {
+		Content unscored = Content.from(words("unscored", 300));
+		Content best = scored(words("best", 300), 0.9);
+		Content worst = scored(words("worst", 300), 0.2);
+		int budget = commonUtility.calculateTokenCount(List.of(best, worst)) + 50;
+
+		List<Content> packed = commonUtility.packContentsUnderTokenBudget(List.of(unscored, worst, best), budget);
+
+		assertThat(packed).containsExactly(best, worst);
+	}
+
+	@Test
+	void neverExceedsTheTokenBudget() {
+		List<Content> contents = IntStream.range(0, 20)
+				.mapToObj(i -> scored(words("page" + i + " text, with punctuation; and numbers " + i * 7919 + ".", 40 + i * 13), i % 7 / 7.0))
+				.toList();
+
+		for (int budget : List.of(150, 333, 1000, 2500)) {
+			List<Content> packed = commonUtility.packContentsUnderTokenBudget(contents, budget);
+
+			assertThat(commonUtility.calculateTokenCount(packed)).isLessThanOrEqualTo(budget);
+			assertThat(packed).isNotEmpty();
+		}
+	}
+
+	@Test
+	void dropsATruncatedPartThatCannotBeMadeToFit() {
+		Content whole = scored(words("fits", 50), 0.9);
+		Content unsplittable = scored("x".repeat(5000), 0.5);
+		int budget = commonUtility.calculateTokenCount(whole) + 200;
+
+		List<Content> packed = commonUtility.packContentsUnderTokenBudget(List.of(whole, unsplittable), budget);
+
+		assertThat(packed).containsExactly(whole);
+	}
+
+	@Test
+	void keepsTheLeadingPartOfAContentThatDoesNotFit() {
+		Content whole = scored(words("fits", 50), 0.9);
+		Content truncated = scored(words("truncated", 500), 0.5);
+		int budget = commonUtility.calculateTokenCount(whole) + 200;
+
+		List<Content> packed = commonUtility.packContentsUnderTokenBudget(List.of(whole, truncated), budget);
+
+		assertThat(packed).hasSize(2);
+		assertThat(truncated.textSegment().text()).startsWith(packed.get(1).textSegment().text());
+		assertThat(packed.get(1).metadata()).containsEntry(ContentMetadata.SCORE, 0.5);
+		assertThat(commonUtility.calculateTokenCount(packed)).isLessThanOrEqualTo(budget);
+	}
+
+	@Test
+	void filteringKeepsTheScoreAndTheSegmentMetadata() {
+		when(dataFilterAssistant.answer(anyString(), anyString())).thenReturn(new DataFilterAssistantResponse("extracted"));
+		Content content = Content.from(TextSegment.from("page text", Metadata.from("url", "https://example.com")), Map.of(ContentMetadata.SCORE, 0.7));
+
+		Content filtered = commonUtility.filterRelevantData(Query.from("question"), content);
+
+		assertThat(filtered.textSegment().text()).isEqualTo("extracted");
+		assertThat(filtered.textSegment().metadata().getString("url")).isEqualTo("https://example.com");
+		assertThat(filtered.metadata()).containsEntry(ContentMetadata.SCORE, 0.7);
+	}
+
+	private static Content scored(String text, double score) {
+		return Content.from(TextSegment.from(text), Map.of(ContentMetadata.SCORE, score));
+	}
+
+	private static String words(String word, int count) {
+		return IntStream.range(0, count).mapToObj(i -> word).collect(Collectors.joining(" "));
+	}
+}
@@ -0,0 +1,38 @@
+package com.smartagent.smartAgent.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SentenceSegmenterTest {
+
+	@Test
+	void sentenceRangesSplitAtTerminatorsAndBlankLines() {
+		String text = "  Prices rose 3.5% in May. Why? \"Demand,\" they said!\n\nEnergy report\nSecond line";
+
+		int[] ranges = SentenceSegmenter.sentenceRanges(text);
+
+		List<String> sentences = new ArrayList<>();
+		for (int i = 0; i < ranges.length; i += 2) {
+			sentences.add(text.substring(ranges[i], ranges[i + 1]));
+		}
+		assertThat(sentences).containsExactly("Prices rose 3.5% in May.", "Why?", "\"Demand,\" they said!",
+				"Energy report\nSecond line");
+	}
+
+	@Test
+	void windowsDropShortSentencesAndRespectLimits() {
+		String text = "First long sentence. Ok. Second long sentence. Third long sentence. Fourth long sentence.";
+
+		List<String> bySentences = SentenceSegmenter.windows(text, 10, 2, Integer.MAX_VALUE, (start, end) -> 1);
+		List<String> byTokens = SentenceSegmenter.windows(text, 10, 10, 5, (start, end) -> end - start > 20 ? 4 : 2);
+
+		assertThat(bySentences).containsExactly("First long sentence. Second long sentence.",
+				"Third long sentence. Fourth long sentence.");
+		assertThat(byTokens).containsExactly("First long sentence.", "Second long sentence.",
+				"Third long sentence.", "Fourth long sentence.");
+	}
+}
@@ -0,0 +1,78 @@
+package com.smartagent.smartAgent.utility;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import dev.langchain4j.model.openai.OpenAiChatModelName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenAccountantTest {
+
+	private static final List<String> TEXTS = List.of(
+			"",
+			"Hello, world!",
+			"  leading and trailing whitespace\n\n",
+			"Zürich, São Paulo and Kraków are cities; 東京 is too. 🚀 Emoji and 𝔘𝔫𝔦𝔠𝔬𝔡𝔢 take surrogate pairs.",
+			"C++ and C# aren't C. https://example.com/path?query=1&other=two#fragment",
+			"word ".repeat(2000));
+
+	private final TokenAccountant tokenAccountant = new TokenAccountant(OpenAiChatModelName.GPT_4_O);
+	private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncodingForModel(OpenAiChatModelName.GPT_4_O.toString()).orElseThrow();
+
+	@Test
+	void countsLikeJtokkit() {
+		for (String text : TEXTS) {
+			assertThat(tokenAccountant.countTokens(text)).as(text).isEqualTo(encoding.countTokensOrdinary(text));
+			assertThat(tokenAccountant.tokenize(new String(text)).tokenCount()).as(text).isEqualTo(encoding.countTokensOrdinary(text));
+		}
+	}
+
+	@Test
+	void memoizedCountsBelongToTheirOwnText() {
+		String first = new String("The first text is a little longer than the second one.");
+		String second = new String("The second text.");
+
+		int firstCount = tokenAccountant.countTokens(first);
+		int secondCount = tokenAccountant.countTokens(second);
+
+		assertThat(tokenAccountant.countTokens(first)).isEqualTo(firstCount).isEqualTo(encoding.countTokensOrdinary(first));
+		assertThat(tokenAccountant.countTokens(second)).isEqualTo(secondCount).isEqualTo(encoding.countTokensOrdinary(second));
+		assertThat(firstCount).isNotEqualTo(secondCount);
+		assertThat(tokenAccountant.countTokens(new String(first))).isEqualTo(firstCount);
+	}
+
+	@Test
+	void tokenizingRecordsTheCountForLaterCalls() {
+		String text = new String(TEXTS.get(3));
+
+		int tokenized = tokenAccountant.tokenize(text).tokenCount();
+
+		assertThat(tokenAccountant.countTokens(text)).isEqualTo(tokenized);
+	}
+
+	@Test
+	void countsTokensWithinACharacterRange() {
+		String text = "alpha beta gamma delta";
+		TokenAccountant.TokenizedText tokenizedText = tokenAccountant.tokenize(text);
+
+		assertThat(tokenizedText.tokenCountBetween(0, text.length())).isEqualTo(tokenizedText.tokenCount());
+		assertThat(tokenizedText.tokenCountBetween(0, "alpha beta".length())).isEqualTo(encoding.countTokensOrdinary("alpha beta"));
+		assertThat(tokenizedText.tokenCountBetween(3, 3)).isZero();
+	}
+
+	@Test
+	void splitsIntoPartsUnderTheLimit() {
+		String text = TEXTS.get(3).repeat(50);
+
+		List<String> parts = tokenAccountant.tokenize(text).splitAtWhitespace(100);
+
+		assertThat(parts).hasSizeGreaterThan(1);
+		assertThat(String.join(" ", parts)).isEqualTo(text.trim().replaceAll("\\s+", " "));
+		for (String part : parts) {
+			assertThat(encoding.countTokensOrdinary(part)).isLessThanOrEqualTo(100);
+		}
+	}
+}